@@ -24,10 +24,18 @@ import lucene.store.*;
 import lucene.util.BytesRef;
 import lucene.util.IOUtils;
 import lucene.util.StringHelper;
+import lucene.util.ThreadInterruptedException;
 
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.zip.CRC32;
 
 /**
  * Utility class for reading and writing versioned headers.
@@ -504,7 +512,8 @@ public final class CodecUtil {
   }
   
   /** 
-   * Clones the provided input, reads all bytes from the file, and calls {@link #checkFooter} 
+   * Clones the provided input, reads all bytes from the file, and validates the
+   * codec footer like {@link #checkFooter}.
    * <p>
    * Note that this method may be slow, as it must process the entire file.
    * If you just need to extract the checksum value, call {@link #retrieveChecksum}.
@@ -512,13 +521,78 @@ public final class CodecUtil {
   public static long checksumEntireFile(IndexInput input) throws IOException {
     IndexInput clone = input.clone();
     clone.seek(0);
-    ChecksumIndexInput in = new BufferedChecksumIndexInput(clone);
-    assert in.getFilePointer() == 0;
-    if (in.length() < footerLength()) {
-      throw new CorruptIndexException("misplaced codec footer (file truncated?): length=" + in.length() + " but footerLength==" + footerLength(), input);
+    if (clone.length() < footerLength()) {
+      throw new CorruptIndexException("misplaced codec footer (file truncated?): length=" + clone.length() + " but footerLength==" + footerLength(), input);
+    }
+    // The checksum covers all bytes up to the checksum itself, including the
+    // footer magic and algorithm ID; read them in large chunks, or straight from
+    // memory-mapped buffers:
+    final CRC32 crc = new CRC32();
+    clone.updateChecksum(crc, clone.length() - Long.BYTES);
+    final long actualChecksum = crc.getValue();
+    clone.seek(clone.length() - footerLength());
+    validateFooter(clone);
+    final long expectedChecksum = readCRC(clone);
+    if (expectedChecksum != actualChecksum) {
+      throw new CorruptIndexException("checksum failed (hardware problem?) : expected=" + Long.toHexString(expectedChecksum) +
+                                                       " actual=" + Long.toHexString(actualChecksum), input);
+    }
+    return actualChecksum;
+  }
+
+  /**
+   * Verifies the checksums of the given files of a directory like {@link
+   * #checksumEntireFile}, reading many files at once on the given executor, or
+   * in the calling thread if it is {@code null}.  Files are submitted from the
+   * largest to the smallest, so that the largest files don't run last.  The
+   * calling thread verifies the files that the executor hasn't started yet while
+   * it waits, so this may be called from a thread of the executor.  All files
+   * are verified even if some fail; the first failure is thrown, with the
+   * others suppressed.
+   */
+  public static void checksumEntireFiles(Directory dir, Collection<String> files, Executor executor) throws IOException {
+    final List<String> sortedFiles = new ArrayList<>(files);
+    final long[] lengths = new long[sortedFiles.size()];
+    for (int i = 0; i < lengths.length; ++i) {
+      lengths[i] = dir.fileLength(sortedFiles.get(i));
+    }
+    final Integer[] order = new Integer[lengths.length];
+    for (int i = 0; i < order.length; ++i) {
+      order[i] = i;
+    }
+    Arrays.sort(order, (a, b) -> Long.compare(lengths[b], lengths[a]));
+
+    final List<FutureTask<Long>> tasks = new ArrayList<>(order.length);
+    for (int i : order) {
+      final String file = sortedFiles.get(i);
+      final FutureTask<Long> task = new FutureTask<>(() -> {
+        try (IndexInput in = dir.openInput(file, IOContext.READONCE)) {
+          return checksumEntireFile(in);
+        }
+      });
+      tasks.add(task);
+      if (executor == null) {
+        task.run();
+      } else {
+        executor.execute(task);
+      }
+    }
+
+    Throwable th = null;
+    for (FutureTask<Long> task : tasks) {
+      // no-op if the executor already ran or is running this task:
+      task.run();
+      try {
+        task.get();
+      } catch (ExecutionException e) {
+        th = IOUtils.useOrSuppress(th, e.getCause());
+      } catch (InterruptedException e) {
+        throw new ThreadInterruptedException(e);
+      }
+    }
+    if (th != null) {
+      throw IOUtils.rethrowAlways(th);
     }
-    in.seek(in.length() - footerLength());
-    return checkFooter(in);
   }
   
   /**
@@ -39,6 +39,22 @@ public abstract class StoredFieldsReader implements Cloneable, Closeable, Accoun
   /** Visit the stored fields for document <code>docID</code> */
   public abstract void visitDocument(int docID, StoredFieldVisitor visitor) throws IOException;
 
+  /**
+   * Visit the stored fields of several documents: {@code visitors[i]} visits document
+   * {@code docIDs[i]}.  Document IDs must be sorted in increasing order, which allows
+   * implementations to read and decode each block of documents only once.
+   * <p>
+   * The default implementation calls {@link #visitDocument} for each document.
+   */
+  public void visitDocuments(int[] docIDs, StoredFieldVisitor[] visitors) throws IOException {
+    if (docIDs.length != visitors.length) {
+      throw new IllegalArgumentException("docIDs and visitors must have the same length, got " + docIDs.length + " and " + visitors.length);
+    }
+    for (int i = 0; i < docIDs.length; ++i) {
+      visitDocument(docIDs[i], visitors[i]);
+    }
+  }
+
   @Override
   public abstract StoredFieldsReader clone();
   
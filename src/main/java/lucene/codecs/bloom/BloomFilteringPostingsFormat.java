@@ -0,0 +1,339 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package lucene.codecs.bloom;
+
+
+import lucene.codecs.CodecUtil;
+import lucene.codecs.FieldsConsumer;
+import lucene.codecs.FieldsProducer;
+import lucene.codecs.NormsProducer;
+import lucene.codecs.PostingsFormat;
+import lucene.index.CorruptIndexException;
+import lucene.index.FieldInfo;
+import lucene.index.Fields;
+import lucene.index.FilterLeafReader.FilterTerms;
+import lucene.index.FilterLeafReader.FilterTermsEnum;
+import lucene.index.IndexFileNames;
+import lucene.index.SegmentReadState;
+import lucene.index.SegmentWriteState;
+import lucene.index.Terms;
+import lucene.index.TermsEnum;
+import lucene.store.ChecksumIndexInput;
+import lucene.store.IndexOutput;
+import lucene.util.Accountable;
+import lucene.util.Accountables;
+import lucene.util.BytesRef;
+import lucene.util.IOUtils;
+import lucene.util.RamUsageEstimator;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A {@link PostingsFormat} that wraps another postings format and records,
+ * for each field and segment, a {@link FuzzySet bloom filter} of the terms of
+ * the field.  {@link TermsEnum#seekExact(BytesRef)} consults the filter before
+ * touching the terms dictionary of the delegate, so lookups of terms that are
+ * absent from a segment, the common case when resolving
+ * {@link lucene.index.IndexWriter#updateDocument} by a primary key against
+ * many segments, usually return without any I/O.
+ * <p>
+ * Only use this format for fields with (mostly) unique terms, such as primary
+ * keys, typically through {@link lucene.codecs.perfield.PerFieldPostingsFormat}.
+ * As any postings format that is referenced by name in the index, it must be
+ * registered with Java's SPI mechanism for segments to be readable.
+ * <p>
+ * File format: the filters are stored in a <tt>.blm</tt> file next to the files
+ * of the delegate postings format:
+ * <ul>
+ *   <li>BloomFilter (.blm) --&gt; Header, DelegatePostingsFormatName, NumFields,
+ *       &lt;FieldNumber, FuzzySet&gt;<sup>NumFields</sup>, Footer</li>
+ *   <li>Header --&gt; {@link CodecUtil#writeIndexHeader IndexHeader}</li>
+ *   <li>DelegatePostingsFormatName --&gt; {@link lucene.store.DataOutput#writeString String}</li>
+ *   <li>NumFields, FieldNumber --&gt; {@link lucene.store.DataOutput#writeVInt VInt}</li>
+ *   <li>FuzzySet --&gt; NumBits as {@link lucene.store.DataOutput#writeVInt VInt},
+ *       followed by NumBits/64 {@link lucene.store.DataOutput#writeLong Longs}</li>
+ *   <li>Footer --&gt; {@link CodecUtil#writeFooter CodecFooter}</li>
+ * </ul>
+ *
+ * @lucene.experimental
+ */
+public final class BloomFilteringPostingsFormat extends PostingsFormat {
+
+  /** Name of this postings format. */
+  public static final String BLOOM_CODEC_NAME = "BloomFilter";
+  static final int VERSION_START = 0;
+  static final int VERSION_CURRENT = VERSION_START;
+
+  /** Extension of bloom filters file */
+  static final String BLOOM_EXTENSION = "blm";
+
+  /** Default number of bits per term that a filter is sized for, before it is downsized. */
+  public static final int DEFAULT_BITS_PER_VALUE = 10;
+
+  /** Default saturation that filters are downsized to, roughly the rate of false positives. */
+  public static final float DEFAULT_TARGET_SATURATION = 0.1f;
+
+  private final PostingsFormat delegatePostingsFormat;
+  private final int bitsPerValue;
+  private final float targetSaturation;
+
+  /**
+   * Creates a bloom filtering postings format with default settings.
+   * @param delegatePostingsFormat the postings format that actually stores the postings
+   */
+  public BloomFilteringPostingsFormat(PostingsFormat delegatePostingsFormat) {
+    this(delegatePostingsFormat, DEFAULT_BITS_PER_VALUE, DEFAULT_TARGET_SATURATION);
+  }
+
+  /**
+   * Creates a bloom filtering postings format.
+   * @param delegatePostingsFormat the postings format that actually stores the postings
+   * @param bitsPerValue number of bits per unique term that filters are initially sized for
+   * @param targetSaturation saturation that filters are downsized to before they are written
+   */
+  public BloomFilteringPostingsFormat(PostingsFormat delegatePostingsFormat, int bitsPerValue, float targetSaturation) {
+    super(BLOOM_CODEC_NAME);
+    if (delegatePostingsFormat == null) {
+      throw new NullPointerException("delegatePostingsFormat must not be null");
+    }
+    if (bitsPerValue <= 0) {
+      throw new IllegalArgumentException("bitsPerValue must be > 0, got " + bitsPerValue);
+    }
+    if (targetSaturation <= 0f || targetSaturation >= 1f) {
+      throw new IllegalArgumentException("targetSaturation must be > 0 and < 1, got " + targetSaturation);
+    }
+    this.delegatePostingsFormat = delegatePostingsFormat;
+    this.bitsPerValue = bitsPerValue;
+    this.targetSaturation = targetSaturation;
+  }
+
+  /** Used only by core Lucene at read-time via Service Provider instantiation:
+   *  do not use at write-time in application code. */
+  public BloomFilteringPostingsFormat() {
+    super(BLOOM_CODEC_NAME);
+    this.delegatePostingsFormat = null;
+    this.bitsPerValue = DEFAULT_BITS_PER_VALUE;
+    this.targetSaturation = DEFAULT_TARGET_SATURATION;
+  }
+
+  @Override
+  public FieldsConsumer fieldsConsumer(SegmentWriteState state) throws IOException {
+    if (delegatePostingsFormat == null) {
+      throw new UnsupportedOperationException("Error - " + getClass().getName()
+          + " has been constructed without a choice of PostingsFormat");
+    }
+    return new BloomFilteredFieldsConsumer(delegatePostingsFormat.fieldsConsumer(state), state);
+  }
+
+  @Override
+  public FieldsProducer fieldsProducer(SegmentReadState state) throws IOException {
+    return new BloomFilteredFieldsProducer(state);
+  }
+
+  @Override
+  public String toString() {
+    return "BloomFilteringPostingsFormat(" + delegatePostingsFormat + ")";
+  }
+
+  private final class BloomFilteredFieldsConsumer extends FieldsConsumer {
+    private final FieldsConsumer delegateFieldsConsumer;
+    private final SegmentWriteState state;
+
+    BloomFilteredFieldsConsumer(FieldsConsumer delegateFieldsConsumer, SegmentWriteState state) {
+      this.delegateFieldsConsumer = delegateFieldsConsumer;
+      this.state = state;
+    }
+
+    @Override
+    public void write(Fields fields, NormsProducer norms) throws IOException {
+      delegateFieldsConsumer.write(fields, norms);
+
+      final List<FieldInfo> fieldInfos = new ArrayList<>();
+      final List<FuzzySet> filters = new ArrayList<>();
+      for (String field : fields) {
+        final Terms terms = fields.terms(field);
+        if (terms == null) {
+          continue;
+        }
+        // Terms#size is unsupported at flush time and -1 when merging, so count
+        // the terms first to size the filter:
+        long numTerms = 0;
+        TermsEnum termsEnum = terms.iterator();
+        while (termsEnum.next() != null) {
+          numTerms++;
+        }
+        FuzzySet filter = FuzzySet.create((int) Math.min(Integer.MAX_VALUE, numTerms), bitsPerValue);
+        termsEnum = terms.iterator();
+        BytesRef term;
+        while ((term = termsEnum.next()) != null) {
+          filter.addValue(term);
+        }
+        filters.add(filter.downsize(targetSaturation));
+        fieldInfos.add(state.fieldInfos.fieldInfo(field));
+      }
+
+      final String fileName = IndexFileNames.segmentFileName(state.segmentInfo.name, state.segmentSuffix, BLOOM_EXTENSION);
+      try (IndexOutput out = state.directory.createOutput(fileName, state.context)) {
+        CodecUtil.writeIndexHeader(out, BLOOM_CODEC_NAME, VERSION_CURRENT, state.segmentInfo.getId(), state.segmentSuffix);
+        out.writeString(delegatePostingsFormat.getName());
+        out.writeVInt(filters.size());
+        for (int i = 0; i < filters.size(); i++) {
+          out.writeVInt(fieldInfos.get(i).number);
+          filters.get(i).serialize(out);
+        }
+        CodecUtil.writeFooter(out);
+      }
+    }
+
+    @Override
+    public void close() throws IOException {
+      delegateFieldsConsumer.close();
+    }
+  }
+
+  private static final class BloomFilteredFieldsProducer extends FieldsProducer {
+    private static final long BASE_RAM_BYTES_USED = RamUsageEstimator.shallowSizeOfInstance(BloomFilteredFieldsProducer.class);
+
+    private final FieldsProducer delegateFieldsProducer;
+    private final Map<String, FuzzySet> bloomsByFieldName = new HashMap<>();
+
+    BloomFilteredFieldsProducer(SegmentReadState state) throws IOException {
+      final String fileName = IndexFileNames.segmentFileName(state.segmentInfo.name, state.segmentSuffix, BLOOM_EXTENSION);
+      String delegateName = null;
+      try (ChecksumIndexInput in = state.directory.openChecksumInput(fileName, state.context)) {
+        Throwable priorE = null;
+        try {
+          CodecUtil.checkIndexHeader(in, BLOOM_CODEC_NAME, VERSION_START, VERSION_CURRENT,
+                                     state.segmentInfo.getId(), state.segmentSuffix);
+          delegateName = in.readString();
+          final int numFields = in.readVInt();
+          for (int i = 0; i < numFields; i++) {
+            final int fieldNumber = in.readVInt();
+            final FieldInfo fieldInfo = state.fieldInfos.fieldInfo(fieldNumber);
+            if (fieldInfo == null) {
+              throw new CorruptIndexException("invalid field number: " + fieldNumber, in);
+            }
+            bloomsByFieldName.put(fieldInfo.name, FuzzySet.deserialize(in));
+          }
+        } catch (Throwable exception) {
+          priorE = exception;
+        } finally {
+          CodecUtil.checkFooter(in, priorE);
+        }
+      }
+
+      delegateFieldsProducer = PostingsFormat.forName(delegateName).fieldsProducer(state);
+    }
+
+    @Override
+    public Iterator<String> iterator() {
+      return delegateFieldsProducer.iterator();
+    }
+
+    @Override
+    public Terms terms(String field) throws IOException {
+      final Terms terms = delegateFieldsProducer.terms(field);
+      final FuzzySet filter = bloomsByFieldName.get(field);
+      if (terms == null || filter == null) {
+        return terms;
+      }
+      return new BloomFilteredTerms(terms, filter);
+    }
+
+    @Override
+    public int size() {
+      return delegateFieldsProducer.size();
+    }
+
+    @Override
+    public void close() throws IOException {
+      IOUtils.close(delegateFieldsProducer);
+    }
+
+    @Override
+    public void checkIntegrity() throws IOException {
+      // the bloom filters file is fully verified when it is opened
+      delegateFieldsProducer.checkIntegrity();
+    }
+
+    @Override
+    public long ramBytesUsed() {
+      long size = BASE_RAM_BYTES_USED + delegateFieldsProducer.ramBytesUsed();
+      for (FuzzySet filter : bloomsByFieldName.values()) {
+        size += filter.ramBytesUsed();
+      }
+      return size;
+    }
+
+    @Override
+    public Collection<Accountable> getChildResources() {
+      final List<Accountable> resources = new ArrayList<>(Accountables.namedAccountables("field", bloomsByFieldName));
+      resources.add(Accountables.namedAccountable("delegate", delegateFieldsProducer));
+      return Collections.unmodifiableList(resources);
+    }
+
+    @Override
+    public String toString() {
+      return getClass().getSimpleName() + "(fields=" + bloomsByFieldName.size() + ",delegate=" + delegateFieldsProducer + ")";
+    }
+  }
+
+  /** {@link Terms} of a field that has a bloom filter. */
+  private static final class BloomFilteredTerms extends FilterTerms {
+    private final FuzzySet filter;
+
+    BloomFilteredTerms(Terms in, FuzzySet filter) {
+      super(in);
+      this.filter = filter;
+    }
+
+    @Override
+    public boolean mayContain(BytesRef term) {
+      return filter.contains(term) == FuzzySet.ContainsResult.MAYBE;
+    }
+
+    @Override
+    public TermsEnum iterator() throws IOException {
+      return new BloomFilteredTermsEnum(in.iterator(), filter);
+    }
+  }
+
+  private static final class BloomFilteredTermsEnum extends FilterTermsEnum {
+    private final FuzzySet filter;
+
+    BloomFilteredTermsEnum(TermsEnum in, FuzzySet filter) {
+      super(in);
+      this.filter = filter;
+    }
+
+    @Override
+    public boolean seekExact(BytesRef text) throws IOException {
+      // The filter can only rule out terms: seekCeil and ordinal seeks still go to the delegate
+      if (filter.contains(text) == FuzzySet.ContainsResult.NO) {
+        return false;
+      }
+      return in.seekExact(text);
+    }
+  }
+}
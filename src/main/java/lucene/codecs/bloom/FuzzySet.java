@@ -0,0 +1,183 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package lucene.codecs.bloom;
+
+
+import lucene.index.CorruptIndexException;
+import lucene.store.DataInput;
+import lucene.store.DataOutput;
+import lucene.util.Accountable;
+import lucene.util.BitUtil;
+import lucene.util.BytesRef;
+import lucene.util.RamUsageEstimator;
+import lucene.util.StringHelper;
+
+import java.io.IOException;
+
+/**
+ * A bloom filter: a bit set that answers "definitely not present" or "maybe
+ * present" for {@link BytesRef} values, using a single murmur hash per value.
+ * <p>
+ * The number of bits is always a power of two, which allows a populated set
+ * to be {@link #downsize(float) folded} in halves until it reaches a target
+ * saturation: the set can be sized generously up front, when the number of
+ * unique values is not known yet, and shrunk before it is written.
+ *
+ * @lucene.experimental
+ */
+public final class FuzzySet implements Accountable {
+
+  private static final long BASE_RAM_BYTES_USED = RamUsageEstimator.shallowSizeOfInstance(FuzzySet.class);
+
+  /** Result of {@link #contains(BytesRef)}. */
+  public enum ContainsResult {
+    /** The value may or may not have been added. */
+    MAYBE,
+    /** The value was definitely never added. */
+    NO
+  }
+
+  /** Smallest number of bits of a set. */
+  static final int MIN_NUM_BITS = Long.SIZE;
+
+  /** Largest number of bits of a set. */
+  static final int MAX_NUM_BITS = 1 << 30;
+
+  /** Hash seed; sets are persisted, so it must not change across JVMs. */
+  private static final int HASH_SEED = 0x9747b28c;
+
+  private final long[] bits;
+  private final int numBits;
+  private final int mask;
+
+  private FuzzySet(long[] bits, int numBits) {
+    assert Integer.bitCount(numBits) == 1 && numBits >= MIN_NUM_BITS;
+    assert bits.length == numBits / Long.SIZE;
+    this.bits = bits;
+    this.numBits = numBits;
+    this.mask = numBits - 1;
+  }
+
+  /** Creates an empty set large enough to hold {@code maxNumValues} unique
+   *  values with {@code bitsPerValue} bits each. */
+  public static FuzzySet create(int maxNumValues, int bitsPerValue) {
+    if (bitsPerValue <= 0) {
+      throw new IllegalArgumentException("bitsPerValue must be > 0, got " + bitsPerValue);
+    }
+    final long wantedBits = Math.max((long) MIN_NUM_BITS, (long) maxNumValues * bitsPerValue);
+    final int numBits = (int) Math.min(MAX_NUM_BITS, BitUtil.nextHighestPowerOfTwo(wantedBits));
+    return new FuzzySet(new long[numBits / Long.SIZE], numBits);
+  }
+
+  private static int hash(BytesRef value) {
+    return StringHelper.murmurhash3_x86_32(value, HASH_SEED);
+  }
+
+  /** Records the given value. */
+  public void addValue(BytesRef value) {
+    final int bit = hash(value) & mask;
+    bits[bit >>> 6] |= 1L << bit;
+  }
+
+  /** Returns {@link ContainsResult#NO} if the given value was never added. */
+  public ContainsResult contains(BytesRef value) {
+    final int bit = hash(value) & mask;
+    return (bits[bit >>> 6] & (1L << bit)) == 0 ? ContainsResult.NO : ContainsResult.MAYBE;
+  }
+
+  /** Number of bits of this set. */
+  public int getNumBits() {
+    return numBits;
+  }
+
+  /** Fraction of bits that are set, which is also the probability of a
+   *  false positive for a value that was never added. */
+  public float getSaturation() {
+    return (float) cardinality(bits, bits.length) / numBits;
+  }
+
+  private static long cardinality(long[] bits, int numWords) {
+    long count = 0;
+    for (int i = 0; i < numWords; i++) {
+      count += Long.bitCount(bits[i]);
+    }
+    return count;
+  }
+
+  /** Returns a set that is folded in halves for as long as its saturation
+   *  stays at or below {@code targetSaturation}, or this set if it cannot
+   *  be shrunk. */
+  public FuzzySet downsize(float targetSaturation) {
+    long[] current = bits;
+    int numWords = bits.length;
+    long[] scratch = null;
+    while (numWords > 1) {
+      final int half = numWords >>> 1;
+      if (scratch == null) {
+        scratch = new long[half];
+      }
+      for (int i = 0; i < half; i++) {
+        scratch[i] = current[i] | current[i + half];
+      }
+      if ((float) cardinality(scratch, half) / (half * Long.SIZE) > targetSaturation) {
+        break;
+      }
+      if (current == bits) {
+        current = new long[half];
+      }
+      System.arraycopy(scratch, 0, current, 0, half);
+      numWords = half;
+    }
+    if (numWords == bits.length) {
+      return this;
+    }
+    final long[] folded = new long[numWords];
+    System.arraycopy(current, 0, folded, 0, numWords);
+    return new FuzzySet(folded, numWords * Long.SIZE);
+  }
+
+  /** Writes this set to the given output. */
+  public void serialize(DataOutput out) throws IOException {
+    out.writeVInt(numBits);
+    for (long word : bits) {
+      out.writeLong(word);
+    }
+  }
+
+  /** Reads a set previously written with {@link #serialize(DataOutput)}. */
+  public static FuzzySet deserialize(DataInput in) throws IOException {
+    final int numBits = in.readVInt();
+    if (numBits < MIN_NUM_BITS || numBits > MAX_NUM_BITS || Integer.bitCount(numBits) != 1) {
+      throw new CorruptIndexException("invalid number of bits: " + numBits, in);
+    }
+    final long[] bits = new long[numBits / Long.SIZE];
+    for (int i = 0; i < bits.length; i++) {
+      bits[i] = in.readLong();
+    }
+    return new FuzzySet(bits, numBits);
+  }
+
+  @Override
+  public long ramBytesUsed() {
+    return BASE_RAM_BYTES_USED + RamUsageEstimator.sizeOf(bits);
+  }
+
+  @Override
+  public String toString() {
+    return getClass().getSimpleName() + "(numBits=" + numBits + ")";
+  }
+}
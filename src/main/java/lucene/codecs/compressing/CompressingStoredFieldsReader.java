@@ -53,6 +53,8 @@ public final class CompressingStoredFieldsReader extends StoredFieldsReader {
   private final BlockState state;
   private final long numChunks; // number of compressed blocks written
   private final long numDirtyChunks; // number of incomplete compressed blocks written
+  private final StoredFieldsChunkCache chunkCache; // may be null
+  private final Object chunkCacheKey; // shared by clones
   private boolean closed;
 
   // used by clone
@@ -70,6 +72,8 @@ public final class CompressingStoredFieldsReader extends StoredFieldsReader {
     this.numChunks = reader.numChunks;
     this.numDirtyChunks = reader.numDirtyChunks;
     this.merging = merging;
+    this.chunkCache = reader.chunkCache;
+    this.chunkCacheKey = reader.chunkCacheKey;
     this.state = new BlockState();
     this.closed = false;
   }
@@ -123,6 +127,8 @@ public final class CompressingStoredFieldsReader extends StoredFieldsReader {
       packedIntsVersion = fieldsStream.readVInt();
       decompressor = compressionMode.newDecompressor();
       this.merging = false;
+      this.chunkCache = StoredFieldsChunkCache.getDefault();
+      this.chunkCacheKey = new Object();
       this.state = new BlockState();
 
       fieldsStream.seek(maxPointer);
@@ -161,6 +167,9 @@ public final class CompressingStoredFieldsReader extends StoredFieldsReader {
   @Override
   public void close() throws IOException {
     if (!closed) {
+      if (chunkCache != null) {
+        chunkCache.clearCoreCacheKey(chunkCacheKey);
+      }
       IOUtils.close(fieldsStream);
       closed = true;
     }
@@ -339,6 +348,9 @@ public final class CompressingStoredFieldsReader extends StoredFieldsReader {
     private final BytesRef spare = new BytesRef();
     private final BytesRef bytes = new BytesRef();
 
+    // the whole decompressed block if it comes from or went to the chunk cache, null otherwise
+    private byte[] cachedBytes;
+
     boolean contains(int docID) {
       return docID >= docBase && docID < docBase + chunkDocs;
     }
@@ -364,7 +376,42 @@ public final class CompressingStoredFieldsReader extends StoredFieldsReader {
       }
     }
 
+    /**
+     * Reset this block from a cached, decompressed block.
+     */
+    void reset(StoredFieldsChunkCache.Chunk chunk) {
+      docBase = chunk.docBase;
+      chunkDocs = chunk.chunkDocs;
+      sliced = false;
+      // copy, since we reuse these arrays for the next blocks:
+      offsets = ArrayUtil.grow(offsets, chunkDocs + 1);
+      System.arraycopy(chunk.offsets, 0, offsets, 0, chunkDocs + 1);
+      numStoredFields = ArrayUtil.grow(numStoredFields, chunkDocs);
+      System.arraycopy(chunk.numStoredFields, 0, numStoredFields, 0, chunkDocs);
+      cachedBytes = chunk.bytes;
+    }
+
+    /**
+     * Decompress the whole current block and return it for caching.
+     */
+    StoredFieldsChunkCache.Chunk decompressForCache() throws IOException {
+      assert sliced == false && merging == false;
+      final int totalLength = offsets[chunkDocs];
+      final BytesRef decompressed = new BytesRef();
+      fieldsStream.seek(startPointer);
+      decompressor.decompress(fieldsStream, totalLength, 0, totalLength, decompressed);
+      if (decompressed.length != totalLength) {
+        throw new CorruptIndexException("Corrupted: expected chunk size = " + totalLength + ", got " + decompressed.length, fieldsStream);
+      }
+      cachedBytes = ArrayUtil.copyOfSubArray(decompressed.bytes, decompressed.offset, decompressed.offset + decompressed.length);
+      return new StoredFieldsChunkCache.Chunk(docBase, chunkDocs,
+          ArrayUtil.copyOfSubArray(offsets, 0, chunkDocs + 1),
+          ArrayUtil.copyOfSubArray(numStoredFields, 0, chunkDocs),
+          cachedBytes);
+    }
+
     private void doReset(int docID) throws IOException {
+      cachedBytes = null;
       docBase = fieldsStream.readVInt();
       final int token = fieldsStream.readVInt();
       chunkDocs = token >>> 1;
@@ -471,6 +518,9 @@ public final class CompressingStoredFieldsReader extends StoredFieldsReader {
       if (length == 0) {
         // empty
         documentInput = new ByteArrayDataInput();
+      } else if (cachedBytes != null) {
+        // decompressed by the chunk cache
+        documentInput = new ByteArrayDataInput(cachedBytes, offset, length);
       } else if (merging) {
         // already decompressed
         documentInput = new ByteArrayDataInput(bytes.bytes, bytes.offset + offset, length);
@@ -524,12 +574,66 @@ public final class CompressingStoredFieldsReader extends StoredFieldsReader {
       return new SerializedDocument(documentInput, length, numStoredFields);
     }
 
+    /**
+     * Visit the documents {@code docIDs[from:to]}, which have to be contained in the
+     * current block, sorted, decompressing the block only once.
+     */
+    void visitDocuments(int[] docIDs, StoredFieldVisitor[] visitors, int from, int to) throws IOException {
+      if (merging || sliced || cachedBytes != null || to - from == 1) {
+        // already decompressed, or too large to decompress at once
+        for (int i = from; i < to; ++i) {
+          visitDocument(document(docIDs[i]), visitors[i]);
+        }
+        return;
+      }
+
+      // decompress the prefix of the block that holds all requested documents
+      final int end = offsets[docIDs[to - 1] - docBase + 1];
+      fieldsStream.seek(startPointer);
+      decompressor.decompress(fieldsStream, offsets[chunkDocs], 0, end, bytes);
+      if (bytes.length != end) {
+        throw new CorruptIndexException("Corrupted: expected " + end + " decompressed bytes, got " + bytes.length, fieldsStream);
+      }
+
+      for (int i = from; i < to; ++i) {
+        assert contains(docIDs[i]);
+        final int index = docIDs[i] - docBase;
+        final int offset = offsets[index];
+        final int length = offsets[index + 1] - offset;
+        final DataInput documentInput;
+        if (length == 0) {
+          documentInput = new ByteArrayDataInput();
+        } else {
+          documentInput = new ByteArrayDataInput(bytes.bytes, bytes.offset + offset, length);
+        }
+        visitDocument(new SerializedDocument(documentInput, length, numStoredFields[index]), visitors[i]);
+      }
+    }
+
+  }
+
+  /** Reset the block state to the block that contains the given document, going
+   *  through the chunk cache if there is one. */
+  private void loadBlock(int docID) throws IOException {
+    final long startPointer = indexReader.getStartPointer(docID);
+    final boolean useCache = chunkCache != null && merging == false;
+    if (useCache) {
+      final StoredFieldsChunkCache.Chunk chunk = chunkCache.get(chunkCacheKey, startPointer);
+      if (chunk != null) {
+        state.reset(chunk);
+        return;
+      }
+    }
+    fieldsStream.seek(startPointer);
+    state.reset(docID);
+    if (useCache && state.sliced == false) {
+      chunkCache.put(chunkCacheKey, startPointer, state.decompressForCache());
+    }
   }
 
   SerializedDocument document(int docID) throws IOException {
     if (state.contains(docID) == false) {
-      fieldsStream.seek(indexReader.getStartPointer(docID));
-      state.reset(docID);
+      loadBlock(docID);
     }
     assert state.contains(docID);
     return state.document(docID);
@@ -538,9 +642,46 @@ public final class CompressingStoredFieldsReader extends StoredFieldsReader {
   @Override
   public void visitDocument(int docID, StoredFieldVisitor visitor)
       throws IOException {
+    visitDocument(document(docID), visitor);
+  }
 
-    final SerializedDocument doc = document(docID);
+  @Override
+  public void visitDocuments(int[] docIDs, StoredFieldVisitor[] visitors) throws IOException {
+    // Tell the directory about all the chunks we need up-front, so that their I/O overlaps.
+    // We don't know where chunks end, but they rarely compress to more than chunkSize bytes:
+    long prefetchStart = -1, prefetchEnd = -1;
+    for (int docID : docIDs) {
+      final long start = indexReader.getStartPointer(docID);
+      final long end = Math.min(maxPointer, start + chunkSize);
+      if (start <= prefetchEnd) {
+        prefetchEnd = Math.max(prefetchEnd, end);
+      } else {
+        if (prefetchEnd > prefetchStart) {
+          fieldsStream.prefetch(prefetchStart, prefetchEnd - prefetchStart);
+        }
+        prefetchStart = start;
+        prefetchEnd = end;
+      }
+    }
+    if (prefetchEnd > prefetchStart) {
+      fieldsStream.prefetch(prefetchStart, prefetchEnd - prefetchStart);
+    }
+
+    for (int i = 0; i < docIDs.length; ) {
+      final int docID = docIDs[i];
+      if (state.contains(docID) == false) {
+        loadBlock(docID);
+      }
+      int end = i + 1;
+      while (end < docIDs.length && state.contains(docIDs[end])) {
+        ++end;
+      }
+      state.visitDocuments(docIDs, visitors, i, end);
+      i = end;
+    }
+  }
 
+  private void visitDocument(SerializedDocument doc, StoredFieldVisitor visitor) throws IOException {
     for (int fieldIDX = 0; fieldIDX < doc.numStoredFields; fieldIDX++) {
       final long infoAndBits = doc.in.readVLong();
       final int fieldNumber = (int) (infoAndBits >>> TYPE_BITS);
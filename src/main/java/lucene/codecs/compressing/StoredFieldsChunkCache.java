@@ -0,0 +1,160 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package lucene.codecs.compressing;
+
+
+import lucene.util.Accountable;
+import lucene.util.RamBoundedLRUCache;
+import lucene.util.RamUsageEstimator;
+
+/**
+ * A size-bounded, least-recently-used cache of decompressed blocks of stored
+ * fields, which saves the decompression of documents that are loaded over and
+ * over again.  Blocks are keyed by segment and position in the stored fields
+ * file, and a segment's blocks are evicted when its stored fields reader is
+ * closed, ie. when the segment core is closed.  Blocks that hold very large
+ * documents, and reads for merging, bypass the cache.
+ * <p>
+ * {@link CompressingStoredFieldsReader}s use the {@link #setDefault default
+ * cache} that is set at the time they are opened, if any.
+ * <p>
+ * Blocks are held by a {@link RamBoundedLRUCache}, whose statistics this
+ * cache exposes.
+ *
+ * @lucene.experimental
+ */
+public final class StoredFieldsChunkCache implements Accountable {
+
+  private static volatile StoredFieldsChunkCache defaultCache;
+
+  /** Sets the cache that {@link CompressingStoredFieldsReader}s opened from
+   *  now on use, or {@code null} to not cache anything, the default. */
+  public static void setDefault(StoredFieldsChunkCache cache) {
+    defaultCache = cache;
+  }
+
+  /** Returns the cache that new {@link CompressingStoredFieldsReader}s use, or
+   *  {@code null}.
+   *  @see #setDefault */
+  public static StoredFieldsChunkCache getDefault() {
+    return defaultCache;
+  }
+
+  /** A decompressed block of documents. Instances are shared and must not be modified. */
+  static final class Chunk implements Accountable {
+    final int docBase;
+    final int chunkDocs;
+    final int[] offsets;
+    final int[] numStoredFields;
+    final byte[] bytes;
+
+    Chunk(int docBase, int chunkDocs, int[] offsets, int[] numStoredFields, byte[] bytes) {
+      this.docBase = docBase;
+      this.chunkDocs = chunkDocs;
+      this.offsets = offsets;
+      this.numStoredFields = numStoredFields;
+      this.bytes = bytes;
+    }
+
+    @Override
+    public long ramBytesUsed() {
+      return CHUNK_BASE_RAM_BYTES_USED + RamUsageEstimator.sizeOf(offsets)
+          + RamUsageEstimator.sizeOf(numStoredFields) + RamUsageEstimator.sizeOf(bytes);
+    }
+  }
+
+  private static final long CHUNK_BASE_RAM_BYTES_USED = RamUsageEstimator.shallowSizeOfInstance(Chunk.class);
+
+  // keyed by segment core and start pointer of the block
+  private final RamBoundedLRUCache<Chunk> chunks;
+
+  /** Create a new instance that will use at most {@code maxRamBytesUsed} bytes
+   *  of memory for cached blocks. */
+  public StoredFieldsChunkCache(long maxRamBytesUsed) {
+    chunks = new RamBoundedLRUCache<>(maxRamBytesUsed);
+  }
+
+  /** Returns the cached block that starts at the given position of the segment
+   *  with the given core key, or {@code null}. */
+  Chunk get(Object coreKey, long startPointer) {
+    return chunks.get(coreKey, startPointer);
+  }
+
+  /** Caches a block, evicting the least recently used blocks if needed. */
+  void put(Object coreKey, long startPointer, Chunk chunk) {
+    chunks.put(coreKey, startPointer, chunk, chunk.ramBytesUsed());
+  }
+
+  /** Removes all blocks of the segment with the given core key, in time that is
+   *  linear with the number of blocks of that segment. */
+  public void clearCoreCacheKey(Object coreKey) {
+    chunks.clear(coreKey);
+  }
+
+  /** Removes all cached blocks. */
+  public void clear() {
+    chunks.clear();
+  }
+
+  @Override
+  public long ramBytesUsed() {
+    return chunks.ramBytesUsed();
+  }
+
+  /** Return the number of times that a block has been looked up in this cache.
+   *  @see RamBoundedLRUCache#getTotalCount() */
+  public long getTotalCount() {
+    return chunks.getTotalCount();
+  }
+
+  /** Return the number of lookups that found a cached block, which saved reading
+   *  and decompressing it.
+   *  @see RamBoundedLRUCache#getHitCount() */
+  public long getHitCount() {
+    return chunks.getHitCount();
+  }
+
+  /** Return the number of lookups that did not find a cached block.
+   *  @see RamBoundedLRUCache#getMissCount() */
+  public long getMissCount() {
+    return chunks.getMissCount();
+  }
+
+  /** Return the number of blocks which are currently stored in the cache.
+   *  @see RamBoundedLRUCache#getCacheSize() */
+  public long getCacheSize() {
+    return chunks.getCacheSize();
+  }
+
+  /** Return the total number of blocks that have ever been put in the cache.
+   *  @see RamBoundedLRUCache#getCacheCount() */
+  public long getCacheCount() {
+    return chunks.getCacheCount();
+  }
+
+  /** Return the number of blocks that have been removed from the cache, either
+   *  to stay under the maximum ram usage, or because a segment has been closed.
+   *  @see RamBoundedLRUCache#getEvictionCount() */
+  public long getEvictionCount() {
+    return chunks.getEvictionCount();
+  }
+
+  @Override
+  public String toString() {
+    return getClass().getSimpleName() + "(maxRamBytesUsed=" + chunks.getMaxRamBytesUsed() + ")";
+  }
+}
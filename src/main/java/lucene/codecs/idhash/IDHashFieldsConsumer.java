@@ -0,0 +1,186 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package lucene.codecs.idhash;
+
+
+import lucene.codecs.CodecUtil;
+import lucene.codecs.FieldsConsumer;
+import lucene.codecs.NormsProducer;
+import lucene.codecs.PostingsFormat;
+import lucene.index.FieldInfo;
+import lucene.index.Fields;
+import lucene.index.IndexFileNames;
+import lucene.index.IndexOptions;
+import lucene.index.PostingsEnum;
+import lucene.index.SegmentWriteState;
+import lucene.index.Terms;
+import lucene.index.TermsEnum;
+import lucene.search.DocIdSetIterator;
+import lucene.store.IndexOutput;
+import lucene.util.ArrayUtil;
+import lucene.util.BitUtil;
+import lucene.util.BytesRef;
+import lucene.util.IOUtils;
+
+import java.io.IOException;
+
+import static lucene.codecs.idhash.IDHashPostingsFormat.BYTES_PER_SLOT;
+import static lucene.codecs.idhash.IDHashPostingsFormat.MULTIPLE_DOCS;
+
+/**
+ * Writer for {@link IDHashPostingsFormat}
+ */
+final class IDHashFieldsConsumer extends FieldsConsumer {
+
+  /** Tables larger than this are not written; such fields are only served by the delegate. */
+  static final int MAX_NUM_SLOTS = 1 << 28;
+
+  private final FieldsConsumer delegateFieldsConsumer;
+  private final SegmentWriteState state;
+  private IndexOutput meta, data;
+
+  IDHashFieldsConsumer(PostingsFormat delegatePostingsFormat, SegmentWriteState state) throws IOException {
+    this.state = state;
+    boolean success = false;
+    try {
+      delegateFieldsConsumer = delegatePostingsFormat.fieldsConsumer(state);
+      String metaName = IndexFileNames.segmentFileName(state.segmentInfo.name, state.segmentSuffix, IDHashPostingsFormat.META_EXTENSION);
+      meta = state.directory.createOutput(metaName, state.context);
+      CodecUtil.writeIndexHeader(meta, IDHashPostingsFormat.META_CODEC, IDHashPostingsFormat.VERSION_CURRENT,
+                                 state.segmentInfo.getId(), state.segmentSuffix);
+      meta.writeString(delegatePostingsFormat.getName());
+      String dataName = IndexFileNames.segmentFileName(state.segmentInfo.name, state.segmentSuffix, IDHashPostingsFormat.DATA_EXTENSION);
+      data = state.directory.createOutput(dataName, state.context);
+      CodecUtil.writeIndexHeader(data, IDHashPostingsFormat.DATA_CODEC, IDHashPostingsFormat.VERSION_CURRENT,
+                                 state.segmentInfo.getId(), state.segmentSuffix);
+      success = true;
+    } finally {
+      if (!success) {
+        IOUtils.closeWhileHandlingException(this);
+      }
+    }
+  }
+
+  @Override
+  public void write(Fields fields, NormsProducer norms) throws IOException {
+    delegateFieldsConsumer.write(fields, norms);
+
+    for (String field : fields) {
+      final FieldInfo fieldInfo = state.fieldInfos.fieldInfo(field);
+      if (fieldInfo.getIndexOptions() != IndexOptions.DOCS) {
+        continue;
+      }
+      final Terms terms = fields.terms(field);
+      if (terms != null) {
+        writeTable(fieldInfo, terms);
+      }
+    }
+  }
+
+  private void writeTable(FieldInfo fieldInfo, Terms terms) throws IOException {
+    // Write term records and collect one entry per term:
+    long[] pointers = new long[16];
+    int[] docs = new int[16];
+    int[] hashes = new int[16];
+    int count = 0;
+
+    final TermsEnum termsEnum = terms.iterator();
+    PostingsEnum postingsEnum = null;
+    BytesRef term;
+    while ((term = termsEnum.next()) != null) {
+      postingsEnum = termsEnum.postings(postingsEnum, PostingsEnum.NONE);
+      final int firstDoc = postingsEnum.nextDoc();
+      if (firstDoc == DocIdSetIterator.NO_MORE_DOCS) {
+        // all docs of this term were deleted while merging
+        continue;
+      }
+      final int doc = postingsEnum.nextDoc() == DocIdSetIterator.NO_MORE_DOCS ? firstDoc : MULTIPLE_DOCS;
+
+      if (count == pointers.length) {
+        pointers = ArrayUtil.grow(pointers, count + 1);
+        docs = ArrayUtil.growExact(docs, pointers.length);
+        hashes = ArrayUtil.growExact(hashes, pointers.length);
+      }
+      pointers[count] = data.getFilePointer();
+      docs[count] = doc;
+      hashes[count] = IDHashPostingsFormat.hash(term);
+      count++;
+
+      data.writeVInt(term.length);
+      data.writeBytes(term.bytes, term.offset, term.length);
+    }
+
+    // Load factor between 3/8 and 3/4:
+    final long wantedSlots = BitUtil.nextHighestPowerOfTwo(Math.max(2L, (long) count * 4 / 3 + 1));
+    if (count == 0 || wantedSlots > MAX_NUM_SLOTS) {
+      return;
+    }
+    final int numSlots = (int) wantedSlots;
+    final int mask = numSlots - 1;
+
+    // Slot -> entry + 1, 0 means empty; linear probing:
+    final int[] slots = new int[numSlots];
+    for (int i = 0; i < count; i++) {
+      int slot = hashes[i] & mask;
+      while (slots[slot] != 0) {
+        slot = (slot + 1) & mask;
+      }
+      slots[slot] = i + 1;
+    }
+
+    final long tableOffset = data.getFilePointer();
+    for (int slot = 0; slot < numSlots; slot++) {
+      final int entry = slots[slot] - 1;
+      if (entry == -1) {
+        data.writeLong(0L);
+        data.writeInt(0);
+        data.writeInt(0);
+      } else {
+        data.writeLong(pointers[entry]);
+        data.writeInt(docs[entry]);
+        data.writeInt(hashes[entry]);
+      }
+    }
+    assert data.getFilePointer() - tableOffset == (long) numSlots * BYTES_PER_SLOT;
+
+    meta.writeInt(fieldInfo.number);
+    meta.writeInt(numSlots);
+    meta.writeLong(tableOffset);
+  }
+
+  @Override
+  public void close() throws IOException {
+    boolean success = false;
+    try {
+      if (meta != null) {
+        meta.writeInt(-1); // write EOF marker
+        CodecUtil.writeFooter(meta); // write checksum
+      }
+      if (data != null) {
+        CodecUtil.writeFooter(data); // write checksum
+      }
+      success = true;
+    } finally {
+      if (success) {
+        IOUtils.close(data, meta, delegateFieldsConsumer);
+      } else {
+        IOUtils.closeWhileHandlingException(data, meta, delegateFieldsConsumer);
+      }
+      meta = data = null;
+    }
+  }
+}
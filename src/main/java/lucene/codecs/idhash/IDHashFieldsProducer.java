@@ -0,0 +1,402 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package lucene.codecs.idhash;
+
+
+import lucene.codecs.CodecUtil;
+import lucene.codecs.FieldsProducer;
+import lucene.codecs.PostingsFormat;
+import lucene.index.BaseTermsEnum;
+import lucene.index.CorruptIndexException;
+import lucene.index.FieldInfo;
+import lucene.index.FilterLeafReader.FilterTerms;
+import lucene.index.ImpactsEnum;
+import lucene.index.IndexFileNames;
+import lucene.index.PostingsEnum;
+import lucene.index.SegmentReadState;
+import lucene.index.TermState;
+import lucene.index.Terms;
+import lucene.index.TermsEnum;
+import lucene.store.ChecksumIndexInput;
+import lucene.store.IndexInput;
+import lucene.store.RandomAccessInput;
+import lucene.util.BytesRef;
+import lucene.util.BytesRefBuilder;
+import lucene.util.FutureArrays;
+import lucene.util.IOUtils;
+import lucene.util.RamUsageEstimator;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+import static lucene.codecs.idhash.IDHashPostingsFormat.BYTES_PER_SLOT;
+import static lucene.codecs.idhash.IDHashPostingsFormat.MULTIPLE_DOCS;
+
+/**
+ * Reader for {@link IDHashPostingsFormat}
+ */
+final class IDHashFieldsProducer extends FieldsProducer {
+
+  private static final long BASE_RAM_BYTES_USED = RamUsageEstimator.shallowSizeOfInstance(IDHashFieldsProducer.class);
+
+  /** Returned by {@link HashTable#lookup} for absent terms. */
+  static final int ABSENT = -2;
+
+  private final FieldsProducer delegateFieldsProducer;
+  private final Map<String,TableEntry> tables = new HashMap<>();
+  private final IndexInput data;
+
+  IDHashFieldsProducer(SegmentReadState state) throws IOException {
+    String metaName = IndexFileNames.segmentFileName(state.segmentInfo.name, state.segmentSuffix, IDHashPostingsFormat.META_EXTENSION);
+    String delegateName = null;
+    int version = -1;
+
+    // read in the entries from the metadata file.
+    try (ChecksumIndexInput in = state.directory.openChecksumInput(metaName, state.context)) {
+      Throwable priorE = null;
+      try {
+        version = CodecUtil.checkIndexHeader(in, IDHashPostingsFormat.META_CODEC, IDHashPostingsFormat.VERSION_START,
+                                             IDHashPostingsFormat.VERSION_CURRENT, state.segmentInfo.getId(), state.segmentSuffix);
+        delegateName = in.readString();
+        for (int fieldNumber = in.readInt(); fieldNumber != -1; fieldNumber = in.readInt()) {
+          final FieldInfo fieldInfo = state.fieldInfos.fieldInfo(fieldNumber);
+          if (fieldInfo == null) {
+            throw new CorruptIndexException("invalid field number: " + fieldNumber, in);
+          }
+          final TableEntry entry = new TableEntry();
+          entry.numSlots = in.readInt();
+          if (entry.numSlots <= 0 || Integer.bitCount(entry.numSlots) != 1) {
+            throw new CorruptIndexException("invalid number of slots: " + entry.numSlots, in);
+          }
+          entry.tableOffset = in.readLong();
+          tables.put(fieldInfo.name, entry);
+        }
+      } catch (Throwable exception) {
+        priorE = exception;
+      } finally {
+        CodecUtil.checkFooter(in, priorE);
+      }
+    }
+
+    String dataName = IndexFileNames.segmentFileName(state.segmentInfo.name, state.segmentSuffix, IDHashPostingsFormat.DATA_EXTENSION);
+    IndexInput data = null;
+    FieldsProducer delegateFieldsProducer = null;
+    boolean success = false;
+    try {
+      data = state.directory.openInput(dataName, state.context);
+      final int version2 = CodecUtil.checkIndexHeader(data, IDHashPostingsFormat.DATA_CODEC, IDHashPostingsFormat.VERSION_START,
+                                                      IDHashPostingsFormat.VERSION_CURRENT, state.segmentInfo.getId(), state.segmentSuffix);
+      if (version != version2) {
+        throw new CorruptIndexException("Format versions mismatch: meta=" + version + ",data=" + version2, data);
+      }
+
+      // NOTE: data file is too costly to verify checksum against all the bytes on open,
+      // but for now we at least verify proper structure of the checksum footer: which looks
+      // for FOOTER_MAGIC + algorithmID. This is cheap and can detect some forms of corruption
+      // such as file truncation.
+      CodecUtil.retrieveChecksum(data);
+
+      delegateFieldsProducer = PostingsFormat.forName(delegateName).fieldsProducer(state);
+      success = true;
+    } finally {
+      if (!success) {
+        IOUtils.closeWhileHandlingException(data, delegateFieldsProducer);
+      }
+    }
+    this.data = data;
+    this.delegateFieldsProducer = delegateFieldsProducer;
+  }
+
+  private static class TableEntry {
+    int numSlots;
+    long tableOffset;
+  }
+
+  @Override
+  public Iterator<String> iterator() {
+    return delegateFieldsProducer.iterator();
+  }
+
+  @Override
+  public Terms terms(String field) throws IOException {
+    final Terms terms = delegateFieldsProducer.terms(field);
+    final TableEntry entry = tables.get(field);
+    if (terms == null || entry == null) {
+      return terms;
+    }
+    return new IDHashTerms(terms, entry, data);
+  }
+
+  @Override
+  public int size() {
+    return delegateFieldsProducer.size();
+  }
+
+  @Override
+  public void close() throws IOException {
+    IOUtils.close(data, delegateFieldsProducer);
+  }
+
+  @Override
+  public void checkIntegrity() throws IOException {
+    CodecUtil.checksumEntireFile(data);
+    delegateFieldsProducer.checkIntegrity();
+  }
+
+  @Override
+  public long ramBytesUsed() {
+    return BASE_RAM_BYTES_USED + tables.size() * 64L + delegateFieldsProducer.ramBytesUsed();
+  }
+
+  @Override
+  public String toString() {
+    return getClass().getSimpleName() + "(fields=" + tables.size() + ",delegate=" + delegateFieldsProducer + ")";
+  }
+
+  /** Probes the hash table of a field.  Not thread-safe: each {@link TermsEnum} has its own. */
+  private static final class HashTable {
+    private final RandomAccessInput table;
+    private final IndexInput termsIn;
+    private final int mask;
+    private final BytesRefBuilder scratch = new BytesRefBuilder();
+
+    HashTable(TableEntry entry, IndexInput data) throws IOException {
+      table = data.randomAccessSlice(entry.tableOffset, (long) entry.numSlots * BYTES_PER_SLOT);
+      termsIn = data.clone();
+      mask = entry.numSlots - 1;
+    }
+
+    /** Returns the only doc of the term, {@link IDHashPostingsFormat#MULTIPLE_DOCS} if
+     *  it matches several docs, or {@link #ABSENT} if it does not exist. */
+    int lookup(BytesRef term) throws IOException {
+      final int hash = IDHashPostingsFormat.hash(term);
+      int slot = hash & mask;
+      while (true) {
+        final long pos = (long) slot * BYTES_PER_SLOT;
+        final long termPointer = table.readLong(pos);
+        if (termPointer == 0) {
+          return ABSENT;
+        }
+        if (table.readInt(pos + Long.BYTES + Integer.BYTES) == hash && termEquals(termPointer, term)) {
+          return table.readInt(pos + Long.BYTES);
+        }
+        slot = (slot + 1) & mask;
+      }
+    }
+
+    private boolean termEquals(long termPointer, BytesRef term) throws IOException {
+      termsIn.seek(termPointer);
+      final int length = termsIn.readVInt();
+      if (length != term.length) {
+        return false;
+      }
+      scratch.grow(length);
+      termsIn.readBytes(scratch.bytes(), 0, length);
+      return FutureArrays.equals(scratch.bytes(), 0, length, term.bytes, term.offset, term.offset + length);
+    }
+  }
+
+  private static final class IDHashTerms extends FilterTerms {
+    private final TableEntry entry;
+    private final IndexInput data;
+
+    IDHashTerms(Terms in, TableEntry entry, IndexInput data) {
+      super(in);
+      this.entry = entry;
+      this.data = data;
+    }
+
+    @Override
+    public TermsEnum iterator() throws IOException {
+      return new IDHashTermsEnum(in, new HashTable(entry, data));
+    }
+  }
+
+  /**
+   * Answers {@link #seekExact(BytesRef)} from the hash table and only positions
+   * the delegate, lazily, when a method needs more than the term and its doc.
+   */
+  private static final class IDHashTermsEnum extends BaseTermsEnum {
+    private final Terms terms;
+    private final HashTable hashTable;
+    private final BytesRefBuilder term = new BytesRefBuilder();
+    private TermsEnum in;
+    // true if positioned by the hash table, and the delegate isn't:
+    private boolean pulsed;
+    private int doc;
+
+    IDHashTermsEnum(Terms terms, HashTable hashTable) {
+      this.terms = terms;
+      this.hashTable = hashTable;
+    }
+
+    private TermsEnum in() throws IOException {
+      if (in == null) {
+        in = terms.iterator();
+      }
+      return in;
+    }
+
+    /** Positions the delegate on the term found in the hash table. */
+    private TermsEnum positionedIn() throws IOException {
+      if (pulsed) {
+        final boolean found = in().seekExact(term.get());
+        assert found : "term in hash table but not in terms dictionary: " + term.get();
+        pulsed = false;
+      }
+      return in();
+    }
+
+    @Override
+    public boolean seekExact(BytesRef text) throws IOException {
+      final int result = hashTable.lookup(text);
+      if (result == ABSENT) {
+        pulsed = false;
+        return false;
+      } else if (result == MULTIPLE_DOCS) {
+        pulsed = false;
+        return in().seekExact(text);
+      } else {
+        term.copyBytes(text);
+        doc = result;
+        pulsed = true;
+        return true;
+      }
+    }
+
+    @Override
+    public SeekStatus seekCeil(BytesRef text) throws IOException {
+      pulsed = false;
+      return in().seekCeil(text);
+    }
+
+    @Override
+    public void seekExact(long ord) throws IOException {
+      pulsed = false;
+      in().seekExact(ord);
+    }
+
+    @Override
+    public void seekExact(BytesRef term, TermState state) throws IOException {
+      pulsed = false;
+      in().seekExact(term, state);
+    }
+
+    @Override
+    public BytesRef next() throws IOException {
+      return positionedIn().next();
+    }
+
+    @Override
+    public BytesRef term() throws IOException {
+      return pulsed ? term.get() : in().term();
+    }
+
+    @Override
+    public long ord() throws IOException {
+      return positionedIn().ord();
+    }
+
+    @Override
+    public int docFreq() throws IOException {
+      return pulsed ? 1 : in().docFreq();
+    }
+
+    @Override
+    public long totalTermFreq() throws IOException {
+      return pulsed ? 1 : in().totalTermFreq();
+    }
+
+    @Override
+    public PostingsEnum postings(PostingsEnum reuse, int flags) throws IOException {
+      if (pulsed && PostingsEnum.featureRequested(flags, PostingsEnum.POSITIONS) == false) {
+        final SingleDocPostingsEnum postings = reuse instanceof SingleDocPostingsEnum ? (SingleDocPostingsEnum) reuse : new SingleDocPostingsEnum();
+        postings.reset(doc);
+        return postings;
+      }
+      return positionedIn().postings(reuse instanceof SingleDocPostingsEnum ? null : reuse, flags);
+    }
+
+    @Override
+    public ImpactsEnum impacts(int flags) throws IOException {
+      return positionedIn().impacts(flags);
+    }
+
+    @Override
+    public TermState termState() throws IOException {
+      return positionedIn().termState();
+    }
+  }
+
+  /** Postings of a term that matches a single doc, with a frequency of 1. */
+  private static final class SingleDocPostingsEnum extends PostingsEnum {
+    private int singleDoc;
+    private int doc;
+
+    void reset(int singleDoc) {
+      this.singleDoc = singleDoc;
+      this.doc = -1;
+    }
+
+    @Override
+    public int docID() {
+      return doc;
+    }
+
+    @Override
+    public int nextDoc() {
+      return advance(doc + 1);
+    }
+
+    @Override
+    public int advance(int target) {
+      return doc = target <= singleDoc && doc < singleDoc ? singleDoc : NO_MORE_DOCS;
+    }
+
+    @Override
+    public long cost() {
+      return 1;
+    }
+
+    @Override
+    public int freq() {
+      return 1;
+    }
+
+    @Override
+    public int nextPosition() {
+      return -1;
+    }
+
+    @Override
+    public int startOffset() {
+      return -1;
+    }
+
+    @Override
+    public int endOffset() {
+      return -1;
+    }
+
+    @Override
+    public BytesRef getPayload() {
+      return null;
+    }
+  }
+}
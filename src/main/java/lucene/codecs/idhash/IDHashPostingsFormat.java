@@ -0,0 +1,137 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package lucene.codecs.idhash;
+
+
+import lucene.codecs.CodecUtil;
+import lucene.codecs.FieldsConsumer;
+import lucene.codecs.FieldsProducer;
+import lucene.codecs.PostingsFormat;
+import lucene.index.IndexOptions;
+import lucene.index.SegmentReadState;
+import lucene.index.SegmentWriteState;
+import lucene.store.DataOutput;
+import lucene.util.BytesRef;
+import lucene.util.StringHelper;
+
+import java.io.IOException;
+
+/**
+ * A {@link PostingsFormat} for primary key fields, that wraps another postings
+ * format and adds, for every field indexed with {@link IndexOptions#DOCS}, an
+ * on-disk open-addressing hash table from term to postings.  Postings of terms
+ * that match a single document are inlined in the table, so that
+ * {@link lucene.index.TermsEnum#seekExact(BytesRef)} followed by
+ * {@link lucene.index.TermsEnum#postings} on a primary key, as done by version
+ * checks and realtime get-by-ID, costs a couple of reads at computed offsets of
+ * the (typically memory-mapped) table, instead of walking the terms index FST
+ * and decoding a terms block of the delegate.  Absent terms are rejected
+ * exactly by the same probe.
+ * <p>
+ * Terms that match several documents (e.g. an ID that was updated within the
+ * segment and whose old document is deleted) and all other operations, such
+ * as {@link lucene.index.TermsEnum#seekCeil(BytesRef)} or iteration, are
+ * served by the delegate.  As any postings format that is referenced by name
+ * in the index, it must be registered with Java's SPI mechanism for segments
+ * to be readable.
+ * <p>
+ * The writer holds the table of a field in heap while it is built, about 24
+ * bytes per unique term, so this format is meant for primary key fields of
+ * segments of up to a few tens of millions of documents.
+ * <p>
+ * Files:
+ * <ul>
+ *   <li>Meta (.idm) --&gt; Header, DelegatePostingsFormatName,
+ *       &lt;FieldNumber, NumSlots, TableOffset&gt;<sup>NumFields</sup>, -1, Footer</li>
+ *   <li>Data (.idd) --&gt; Header, &lt;TermRecord<sup>NumTerms</sup>, Slot<sup>NumSlots</sup>&gt;<sup>NumFields</sup>, Footer</li>
+ *   <li>TermRecord --&gt; TermLength as {@link DataOutput#writeVInt VInt}, TermBytes</li>
+ *   <li>Slot --&gt; TermRecordPointer as {@link DataOutput#writeLong Long} (0 for an empty slot),
+ *       DocID as {@link DataOutput#writeInt Int} (-1 if the term matches several documents),
+ *       Hash as {@link DataOutput#writeInt Int}</li>
+ *   <li>NumSlots, FieldNumber --&gt; {@link DataOutput#writeInt Int}, NumSlots is a power of two</li>
+ *   <li>TableOffset --&gt; {@link DataOutput#writeLong Long}</li>
+ *   <li>Header --&gt; {@link CodecUtil#writeIndexHeader IndexHeader}</li>
+ *   <li>Footer --&gt; {@link CodecUtil#writeFooter CodecFooter}</li>
+ * </ul>
+ *
+ * @lucene.experimental
+ */
+public final class IDHashPostingsFormat extends PostingsFormat {
+
+  /** Name of this postings format. */
+  public static final String NAME = "IDHash";
+
+  static final String META_CODEC = "IDHashMeta";
+  static final String DATA_CODEC = "IDHashData";
+  static final String META_EXTENSION = "idm";
+  static final String DATA_EXTENSION = "idd";
+  static final int VERSION_START = 0;
+  static final int VERSION_CURRENT = VERSION_START;
+
+  /** Size of a slot of the hash table, in bytes. */
+  static final int BYTES_PER_SLOT = Long.BYTES + Integer.BYTES + Integer.BYTES;
+
+  /** DocID of a slot whose term matches several documents. */
+  static final int MULTIPLE_DOCS = -1;
+
+  /** Hash seed; tables are persisted, so it must not change across JVMs. */
+  private static final int HASH_SEED = 0x5bd1e995;
+
+  private final PostingsFormat delegatePostingsFormat;
+
+  /**
+   * Creates an ID hash postings format.
+   * @param delegatePostingsFormat the postings format that actually stores the terms dictionary and postings
+   */
+  public IDHashPostingsFormat(PostingsFormat delegatePostingsFormat) {
+    super(NAME);
+    if (delegatePostingsFormat == null) {
+      throw new NullPointerException("delegatePostingsFormat must not be null");
+    }
+    this.delegatePostingsFormat = delegatePostingsFormat;
+  }
+
+  /** Used only by core Lucene at read-time via Service Provider instantiation:
+   *  do not use at write-time in application code. */
+  public IDHashPostingsFormat() {
+    super(NAME);
+    this.delegatePostingsFormat = null;
+  }
+
+  static int hash(BytesRef term) {
+    return StringHelper.murmurhash3_x86_32(term, HASH_SEED);
+  }
+
+  @Override
+  public FieldsConsumer fieldsConsumer(SegmentWriteState state) throws IOException {
+    if (delegatePostingsFormat == null) {
+      throw new UnsupportedOperationException("Error - " + getClass().getName()
+          + " has been constructed without a choice of PostingsFormat");
+    }
+    return new IDHashFieldsConsumer(delegatePostingsFormat, state);
+  }
+
+  @Override
+  public FieldsProducer fieldsProducer(SegmentReadState state) throws IOException {
+    return new IDHashFieldsProducer(state);
+  }
+
+  @Override
+  public String toString() {
+    return "IDHashPostingsFormat(" + delegatePostingsFormat + ")";
+  }
+}
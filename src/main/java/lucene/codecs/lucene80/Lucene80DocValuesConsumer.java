@@ -20,11 +20,13 @@ package lucene.codecs.lucene80;
 import lucene.codecs.CodecUtil;
 import lucene.codecs.DocValuesConsumer;
 import lucene.codecs.DocValuesProducer;
+import lucene.codecs.lucene80.Lucene80DocValuesProducer.RawBinaryDocValues;
 import lucene.index.*;
 import lucene.search.DocIdSetIterator;
 import lucene.search.SortedSetSelector;
 import lucene.store.ByteBuffersDataOutput;
 import lucene.store.ByteBuffersIndexOutput;
+import lucene.store.IndexInput;
 import lucene.store.IndexOutput;
 import lucene.util.*;
 import lucene.util.packed.DirectMonotonicWriter;
@@ -396,6 +398,171 @@ final class Lucene80DocValuesConsumer extends DocValuesConsumer implements Close
     }
   }
 
+  /**
+   * When the merged segments have no deletions and the index is not sorted,
+   * documents are simply concatenated, and so are the values of binary fields:
+   * if all segments are written with this format, values are copied as raw
+   * bytes and only addresses are rewritten.
+   */
+  @Override
+  public void mergeBinaryField(FieldInfo mergeFieldInfo, MergeState mergeState) throws IOException {
+    final RawBinaryDocValues[] rawValues = getRawBinaryValues(mergeFieldInfo, mergeState);
+    if (rawValues == null) {
+      super.mergeBinaryField(mergeFieldInfo, mergeState);
+    } else {
+      bulkMergeBinaryField(mergeFieldInfo, mergeState, rawValues);
+    }
+  }
+
+  /** Returns the raw values of each segment, null if a segment has no values,
+   *  or null if values can't be copied as-is. */
+  private static RawBinaryDocValues[] getRawBinaryValues(FieldInfo mergeFieldInfo, MergeState mergeState) throws IOException {
+    if (mergeState.needsIndexSort) {
+      return null;
+    }
+    final RawBinaryDocValues[] rawValues = new RawBinaryDocValues[mergeState.docValuesProducers.length];
+    for (int i = 0; i < rawValues.length; i++) {
+      if (mergeState.liveDocs[i] != null) {
+        return null;
+      }
+      final DocValuesProducer docValuesProducer = mergeState.docValuesProducers[i];
+      if (docValuesProducer == null) {
+        continue;
+      }
+      final FieldInfo readerFieldInfo = mergeState.fieldInfos[i].fieldInfo(mergeFieldInfo.name);
+      if (readerFieldInfo == null || readerFieldInfo.getDocValuesType() != DocValuesType.BINARY) {
+        continue;
+      }
+      final BinaryDocValues values = docValuesProducer.getBinary(readerFieldInfo);
+      if (values instanceof RawBinaryDocValues) {
+        rawValues[i] = (RawBinaryDocValues) values;
+      } else if (values.nextDoc() != DocIdSetIterator.NO_MORE_DOCS) {
+        // another format
+        return null;
+      }
+    }
+    return rawValues;
+  }
+
+  private void bulkMergeBinaryField(FieldInfo field, MergeState mergeState, RawBinaryDocValues[] rawValues) throws IOException {
+    meta.writeInt(field.number);
+    meta.writeByte(Lucene80DocValuesFormat.BINARY);
+
+    long start = data.getFilePointer();
+    meta.writeLong(start); // dataOffset
+    int numDocsWithField = 0;
+    int minLength = Integer.MAX_VALUE;
+    int maxLength = 0;
+    for (RawBinaryDocValues values : rawValues) {
+      if (values != null && values.numValues() > 0) {
+        final IndexInput bytes = values.rawBytes();
+        assert bytes.length() == values.address(values.numValues());
+        data.copyBytes(bytes, bytes.length());
+        numDocsWithField += values.numValues();
+        minLength = Math.min(values.minLength(), minLength);
+        maxLength = Math.max(values.maxLength(), maxLength);
+      }
+    }
+    assert numDocsWithField <= maxDoc;
+    meta.writeLong(data.getFilePointer() - start); // dataLength
+
+    if (numDocsWithField == 0) {
+      meta.writeLong(-2); // docsWithFieldOffset
+      meta.writeLong(0L); // docsWithFieldLength
+      meta.writeShort((short) -1); // jumpTableEntryCount
+      meta.writeByte((byte) -1);   // denseRankPower
+    } else if (numDocsWithField == maxDoc) {
+      meta.writeLong(-1); // docsWithFieldOffset
+      meta.writeLong(0L); // docsWithFieldLength
+      meta.writeShort((short) -1); // jumpTableEntryCount
+      meta.writeByte((byte) -1);   // denseRankPower
+    } else {
+      long offset = data.getFilePointer();
+      meta.writeLong(offset); // docsWithFieldOffset
+      final short jumpTableEntryCount = IndexedDISI.writeBitSet(new RawDocsIterator(mergeState, rawValues), data, IndexedDISI.DEFAULT_DENSE_RANK_POWER);
+      meta.writeLong(data.getFilePointer() - offset); // docsWithFieldLength
+      meta.writeShort(jumpTableEntryCount);
+      meta.writeByte(IndexedDISI.DEFAULT_DENSE_RANK_POWER);
+    }
+
+    meta.writeInt(numDocsWithField);
+    meta.writeInt(minLength);
+    meta.writeInt(maxLength);
+    if (maxLength > minLength) {
+      start = data.getFilePointer();
+      meta.writeLong(start);
+      meta.writeVInt(DIRECT_MONOTONIC_BLOCK_SHIFT);
+
+      final DirectMonotonicWriter writer = DirectMonotonicWriter.getInstance(meta, data, numDocsWithField + 1, DIRECT_MONOTONIC_BLOCK_SHIFT);
+      long base = 0;
+      writer.add(base);
+      for (RawBinaryDocValues values : rawValues) {
+        if (values != null) {
+          for (long i = 1; i <= values.numValues(); i++) {
+            writer.add(base + values.address(i));
+          }
+          base += values.address(values.numValues());
+        }
+      }
+      writer.finish();
+      meta.writeLong(data.getFilePointer() - start);
+    }
+  }
+
+  /** Iterates over the docs of raw binary values, mapped to the merged segment. */
+  private static class RawDocsIterator extends DocIdSetIterator {
+    private final MergeState mergeState;
+    private final RawBinaryDocValues[] rawValues;
+    private final long cost;
+    private int readerIndex = -1;
+    private BinaryDocValues current;
+    private int doc = -1;
+
+    RawDocsIterator(MergeState mergeState, RawBinaryDocValues[] rawValues) {
+      this.mergeState = mergeState;
+      this.rawValues = rawValues;
+      long cost = 0;
+      for (RawBinaryDocValues values : rawValues) {
+        if (values != null) {
+          cost += values.numValues();
+        }
+      }
+      this.cost = cost;
+    }
+
+    @Override
+    public int docID() {
+      return doc;
+    }
+
+    @Override
+    public int nextDoc() throws IOException {
+      while (true) {
+        if (current != null) {
+          final int readerDoc = current.nextDoc();
+          if (readerDoc != NO_MORE_DOCS) {
+            return doc = mergeState.docMaps[readerIndex].get(readerDoc);
+          }
+        }
+        if (++readerIndex == rawValues.length) {
+          current = null;
+          return doc = NO_MORE_DOCS;
+        }
+        current = (BinaryDocValues) rawValues[readerIndex];
+      }
+    }
+
+    @Override
+    public int advance(int target) throws IOException {
+      return slowAdvance(target);
+    }
+
+    @Override
+    public long cost() {
+      return cost;
+    }
+  }
+
   @Override
   public void addSortedField(FieldInfo field, DocValuesProducer valuesProducer) throws IOException {
     meta.writeInt(field.number);
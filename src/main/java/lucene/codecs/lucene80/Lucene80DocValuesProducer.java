@@ -578,12 +578,74 @@ final class Lucene80DocValuesProducer extends DocValuesProducer implements Close
     }
   }
 
-  private static abstract class DenseBinaryDocValues extends BinaryDocValues {
+  /**
+   * Binary doc values of this format, whose encoded values can be copied as-is
+   * by merges, see {@link Lucene80DocValuesConsumer#mergeBinaryField}.
+   */
+  interface RawBinaryDocValues {
+
+    /** Number of documents that have a value. */
+    int numValues();
+
+    /** Length of the shortest value. */
+    int minLength();
+
+    /** Length of the longest value. */
+    int maxLength();
+
+    /** Returns a fresh input over the concatenated values, in doc ID order. */
+    IndexInput rawBytes();
+
+    /** Returns the offset in {@link #rawBytes()} of the value at the given index,
+     *  or the total length of values for {@code index == numValues()}. */
+    long address(long index);
+  }
+
+  private static abstract class BaseRawBinaryDocValues extends BinaryDocValues implements RawBinaryDocValues {
+
+    final BinaryEntry entry;
+    final IndexInput bytesSlice;
+    final LongValues addresses; // null if values have a fixed length
+
+    BaseRawBinaryDocValues(BinaryEntry entry, IndexInput bytesSlice, LongValues addresses) {
+      this.entry = entry;
+      this.bytesSlice = bytesSlice;
+      this.addresses = addresses;
+    }
+
+    @Override
+    public int numValues() {
+      return entry.numDocsWithField;
+    }
+
+    @Override
+    public int minLength() {
+      return entry.minLength;
+    }
+
+    @Override
+    public int maxLength() {
+      return entry.maxLength;
+    }
+
+    @Override
+    public IndexInput rawBytes() {
+      return bytesSlice.clone();
+    }
+
+    @Override
+    public long address(long index) {
+      return addresses == null ? index * entry.maxLength : addresses.get(index);
+    }
+  }
+
+  private static abstract class DenseBinaryDocValues extends BaseRawBinaryDocValues {
 
     final int maxDoc;
     int doc = -1;
 
-    DenseBinaryDocValues(int maxDoc) {
+    DenseBinaryDocValues(int maxDoc, BinaryEntry entry, IndexInput bytesSlice, LongValues addresses) {
+      super(entry, bytesSlice, addresses);
       this.maxDoc = maxDoc;
     }
 
@@ -617,11 +679,12 @@ final class Lucene80DocValuesProducer extends DocValuesProducer implements Close
     }
   }
 
-  private static abstract class SparseBinaryDocValues extends BinaryDocValues {
+  private static abstract class SparseBinaryDocValues extends BaseRawBinaryDocValues {
 
     final IndexedDISI disi;
 
-    SparseBinaryDocValues(IndexedDISI disi) {
+    SparseBinaryDocValues(IndexedDISI disi, BinaryEntry entry, IndexInput bytesSlice, LongValues addresses) {
+      super(entry, bytesSlice, addresses);
       this.disi = disi;
     }
 
@@ -665,7 +728,7 @@ final class Lucene80DocValuesProducer extends DocValuesProducer implements Close
       if (entry.minLength == entry.maxLength) {
         // fixed length
         final int length = entry.maxLength;
-        return new DenseBinaryDocValues(maxDoc) {
+        return new DenseBinaryDocValues(maxDoc, entry, bytesSlice, null) {
           final BytesRef bytes = new BytesRef(new byte[length], 0, length);
 
           @Override
@@ -679,7 +742,7 @@ final class Lucene80DocValuesProducer extends DocValuesProducer implements Close
         // variable length
         final RandomAccessInput addressesData = this.data.randomAccessSlice(entry.addressesOffset, entry.addressesLength);
         final LongValues addresses = DirectMonotonicReader.getInstance(entry.addressesMeta, addressesData);
-        return new DenseBinaryDocValues(maxDoc) {
+        return new DenseBinaryDocValues(maxDoc, entry, bytesSlice, addresses) {
           final BytesRef bytes = new BytesRef(new byte[entry.maxLength], 0, entry.maxLength);
 
           @Override
@@ -699,7 +762,7 @@ final class Lucene80DocValuesProducer extends DocValuesProducer implements Close
       if (entry.minLength == entry.maxLength) {
         // fixed length
         final int length = entry.maxLength;
-        return new SparseBinaryDocValues(disi) {
+        return new SparseBinaryDocValues(disi, entry, bytesSlice, null) {
           final BytesRef bytes = new BytesRef(new byte[length], 0, length);
 
           @Override
@@ -713,7 +776,7 @@ final class Lucene80DocValuesProducer extends DocValuesProducer implements Close
         // variable length
         final RandomAccessInput addressesData = this.data.randomAccessSlice(entry.addressesOffset, entry.addressesLength);
         final LongValues addresses = DirectMonotonicReader.getInstance(entry.addressesMeta, addressesData);
-        return new SparseBinaryDocValues(disi) {
+        return new SparseBinaryDocValues(disi, entry, bytesSlice, addresses) {
           final BytesRef bytes = new BytesRef(new byte[entry.maxLength], 0, entry.maxLength);
 
           @Override
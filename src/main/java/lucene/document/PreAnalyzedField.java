@@ -0,0 +1,148 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package lucene.document;
+
+
+import lucene.analysis.Analyzer;
+import lucene.analysis.TokenStream;
+import lucene.analysis.tokenattributes.BytesTermAttribute;
+import lucene.analysis.tokenattributes.OffsetAttribute;
+import lucene.analysis.tokenattributes.PayloadAttribute;
+import lucene.analysis.tokenattributes.PositionIncrementAttribute;
+import lucene.index.IndexOptions;
+import lucene.index.IndexableFieldType;
+import lucene.index.PreAnalyzedTokens;
+
+import java.io.IOException;
+
+/**
+ * An indexed field whose tokens were produced outside of Lucene, for
+ * instance by an upstream analysis pipeline.  The {@link PreAnalyzedTokens}
+ * are inverted directly by {@link lucene.index.IndexWriter}, without going
+ * through an {@link Analyzer} or a {@link TokenStream}.
+ * <p>
+ * The tokens are not cloned, so you must not change them until the
+ * document(s) holding this field have been indexed.
+ *
+ * @lucene.experimental
+ */
+public class PreAnalyzedField extends Field {
+
+  /** Indexed, tokenized, not stored, indexes
+   *  DOCS_AND_FREQS_AND_POSITIONS. */
+  public static final FieldType TYPE = new FieldType();
+
+  static {
+    TYPE.setIndexOptions(IndexOptions.DOCS_AND_FREQS_AND_POSITIONS);
+    TYPE.setTokenized(true);
+    TYPE.freeze();
+  }
+
+  private final PreAnalyzedTokens tokens;
+
+  /** Creates a new PreAnalyzedField with the default {@link #TYPE}.
+   *  @param name field name
+   *  @param tokens pre-analyzed tokens
+   *  @throws IllegalArgumentException if the field name is null
+   *  @throws NullPointerException if the tokens are null */
+  public PreAnalyzedField(String name, PreAnalyzedTokens tokens) {
+    this(name, tokens, TYPE);
+  }
+
+  /** Creates a new PreAnalyzedField.
+   *  @param name field name
+   *  @param tokens pre-analyzed tokens
+   *  @param type field type, must be indexed and not stored
+   *  @throws IllegalArgumentException if the field name or type is null,
+   *          or if the type is stored or not indexed
+   *  @throws NullPointerException if the tokens are null */
+  public PreAnalyzedField(String name, PreAnalyzedTokens tokens, IndexableFieldType type) {
+    super(name, type);
+    if (tokens == null) {
+      throw new NullPointerException("tokens must not be null");
+    }
+    if (type.indexOptions() == IndexOptions.NONE) {
+      throw new IllegalArgumentException("PreAnalyzedField must be indexed");
+    }
+    if (type.stored()) {
+      throw new IllegalArgumentException("PreAnalyzedField cannot be stored");
+    }
+    this.tokens = tokens;
+  }
+
+  @Override
+  public PreAnalyzedTokens preAnalyzedTokens(PreAnalyzedTokens reuse) {
+    return tokens;
+  }
+
+  /** Returns a {@link TokenStream} replaying the pre-analyzed tokens, for
+   *  consumers other than {@link lucene.index.IndexWriter}. */
+  @Override
+  public TokenStream tokenStream(Analyzer analyzer, TokenStream reuse) {
+    if (!(reuse instanceof PreAnalyzedTokenStream)) {
+      reuse = new PreAnalyzedTokenStream();
+    }
+    ((PreAnalyzedTokenStream) reuse).setValue(tokens);
+    return reuse;
+  }
+
+  private static final class PreAnalyzedTokenStream extends TokenStream {
+    private final BytesTermAttribute termAttribute = addAttribute(BytesTermAttribute.class);
+    private final PositionIncrementAttribute posIncrAttribute = addAttribute(PositionIncrementAttribute.class);
+    private final OffsetAttribute offsetAttribute = addAttribute(OffsetAttribute.class);
+    private final PayloadAttribute payloadAttribute = addAttribute(PayloadAttribute.class);
+    private PreAnalyzedTokens value;
+    private int upto;
+
+    /** Sets the tokens to replay. */
+    void setValue(PreAnalyzedTokens value) {
+      this.value = value;
+    }
+
+    @Override
+    public boolean incrementToken() {
+      if (upto >= value.size()) {
+        return false;
+      }
+      clearAttributes();
+      termAttribute.setBytesRef(value.term(upto));
+      posIncrAttribute.setPositionIncrement(value.positionIncrement(upto));
+      offsetAttribute.setOffset(value.startOffset(upto), value.endOffset(upto));
+      payloadAttribute.setPayload(value.payload(upto));
+      upto++;
+      return true;
+    }
+
+    @Override
+    public void end() throws IOException {
+      super.end();
+      posIncrAttribute.setPositionIncrement(value.finalPositionIncrement());
+      final int finalOffset = value.finalOffset();
+      offsetAttribute.setOffset(finalOffset, finalOffset);
+    }
+
+    @Override
+    public void reset() {
+      upto = 0;
+    }
+
+    @Override
+    public void close() {
+      value = null;
+    }
+  }
+}
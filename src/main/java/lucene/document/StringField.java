@@ -18,6 +18,7 @@ package lucene.document;
 
 
 import lucene.index.IndexOptions;
+import lucene.index.PreAnalyzedTokens;
 import lucene.util.BytesRef;
 
 /** A field that is indexed but not tokenized: the entire
@@ -74,4 +75,20 @@ public final class StringField extends Field {
   public StringField(String name, BytesRef value, Store stored) {
     super(name, value, stored == Store.YES ? TYPE_STORED : TYPE_NOT_STORED);
   }
+
+  /** Returns the value as a single pre-analyzed token, so that
+   *  indexing does not need to go through a {@link
+   *  lucene.analysis.TokenStream}.  The token is added to the
+   *  provided instance, so this neither allocates nor mutates
+   *  this field, which may be indexed by several threads. */
+  @Override
+  public PreAnalyzedTokens preAnalyzedTokens(PreAnalyzedTokens reuse) {
+    if (fieldsData instanceof BytesRef) {
+      reuse.add((BytesRef) fieldsData);
+    } else {
+      final String value = stringValue();
+      reuse.add(value, 1, 0, value.length(), null);
+    }
+    return reuse;
+  }
 }
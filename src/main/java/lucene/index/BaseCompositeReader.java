@@ -118,6 +118,28 @@ public abstract class BaseCompositeReader<R extends IndexReader> extends Composi
     subReaders[i].document(docID - starts[i], visitor);    // dispatch to subreader
   }
 
+  @Override
+  public final void documents(int[] docIDs, StoredFieldVisitor[] visitors) throws IOException {
+    ensureOpen();
+    final int[] sortedDocIDs = docIDs.clone();
+    final StoredFieldVisitor[] sortedVisitors = visitors.clone();
+    ReaderUtil.sortByDocID(sortedDocIDs, sortedVisitors);
+    // dispatch each run of documents that belong to the same subreader at once:
+    for (int from = 0; from < sortedDocIDs.length; ) {
+      final int i = readerIndex(sortedDocIDs[from]);
+      int to = from + 1;
+      while (to < sortedDocIDs.length && sortedDocIDs[to] < starts[i + 1]) {
+        ++to;
+      }
+      final int[] subDocIDs = new int[to - from];
+      for (int j = 0; j < subDocIDs.length; ++j) {
+        subDocIDs[j] = sortedDocIDs[from + j] - starts[i];
+      }
+      subReaders[i].documents(subDocIDs, Arrays.copyOfRange(sortedVisitors, from, to));
+      from = to;
+    }
+  }
+
   @Override
   public final int docFreq(Term term) throws IOException {
     ensureOpen();
@@ -29,13 +29,17 @@ import org.apache.lucene.index.CheckIndex.Status.DocValuesStatus;
 import org.apache.lucene.index.PointValues.IntersectVisitor;
 import org.apache.lucene.index.PointValues.Relation;
 
+import java.io.ByteArrayOutputStream;
 import java.io.Closeable;
 import java.io.IOException;
 import java.io.PrintStream;
+import java.io.UnsupportedEncodingException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.text.NumberFormat;
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 
 import static org.apache.lucene.search.DocIdSetIterator.NO_MORE_DOCS;
 
@@ -426,7 +430,8 @@ public final class CheckIndex implements Closeable {
   }
   
   /** 
-   * If true, only validate physical integrity for all files. 
+   * If true, only validate physical integrity for all files, by reading each file of
+   * each segment sequentially and verifying its checksum.
    * Note that the returned nested status objects (e.g. storedFieldStatus) will be null.  */
   public void setChecksumsOnly(boolean v) {
     checksumsOnly = v;
@@ -434,6 +439,25 @@ public final class CheckIndex implements Closeable {
   
   private boolean checksumsOnly;
 
+  private int threadCount = 1;
+
+  /** Sets the number of threads used to check the index.  With more than one
+   *  thread, segments are checked concurrently, and so are the parts of each
+   *  segment (postings, stored fields, doc values, etc.) or, when {@link
+   *  #setChecksumsOnly checking checksums only}, its files.  The output of each
+   *  segment is still reported in order, once the segment is checked.  Default is 1. */
+  public void setThreadCount(int threadCount) {
+    if (threadCount < 1) {
+      throw new IllegalArgumentException("threadCount must be >= 1 (got " + threadCount + ")");
+    }
+    this.threadCount = threadCount;
+  }
+
+  /** See {@link #setThreadCount}. */
+  public int getThreadCount() {
+    return threadCount;
+  }
+
   /** Set infoStream where messages should go.  If null, no
    *  messages are printed.  If verbose is true then more
    *  details are printed. */
@@ -476,7 +500,6 @@ public final class CheckIndex implements Closeable {
   public Status checkIndex(List<String> onlySegments) throws IOException {
     ensureOpen();
     long startNS = System.nanoTime();
-    NumberFormat nf = NumberFormat.getInstance(Locale.ROOT);
     SegmentInfos sis = null;
     Status result = new Status();
     result.dir = dir;
@@ -576,27 +599,145 @@ public final class CheckIndex implements Closeable {
     result.newSegments.clear();
     result.maxSegmentName = -1;
 
-    for(int i=0;i<numSegments;i++) {
-      final SegmentCommitInfo info = sis.info(i);
-      long segmentName = Long.parseLong(info.info.name.substring(1), Character.MAX_RADIX);
-      if (segmentName > result.maxSegmentName) {
-        result.maxSegmentName = segmentName;
+    final ForkJoinPool pool = threadCount > 1 ? new ForkJoinPool(threadCount) : null;
+    try {
+      final List<SegmentCheck> checks = new ArrayList<>();
+      final List<ForkJoinTask<?>> tasks = new ArrayList<>();
+      long totalBytes = 0;
+      for(int i=0;i<numSegments;i++) {
+        final SegmentCommitInfo info = sis.info(i);
+        long segmentName = Long.parseLong(info.info.name.substring(1), Character.MAX_RADIX);
+        if (segmentName > result.maxSegmentName) {
+          result.maxSegmentName = segmentName;
+        }
+        if (onlySegments != null && !onlySegments.contains(info.info.name)) {
+          continue;
+        }
+        final SegmentCheck check = new SegmentCheck(sis, i, pool);
+        if (pool == null) {
+          // Check segments one after another, printing as we go:
+          check.run(infoStream);
+          finishSegmentCheck(result, check);
+        } else {
+          checks.add(check);
+          tasks.add(pool.submit(() -> check.run(null)));
+          totalBytes += info.sizeInBytes();
+        }
       }
-      if (onlySegments != null && !onlySegments.contains(info.info.name)) {
-        continue;
+
+      // Report segments that were checked concurrently in order:
+      long checkedBytes = 0;
+      for (int i = 0; i < checks.size(); i++) {
+        final SegmentCheck check = checks.get(i);
+        tasks.get(i).join();
+        if (infoStream != null) {
+          check.output.writeTo(infoStream);
+        }
+        finishSegmentCheck(result, check);
+        checkedBytes += check.info.sizeInBytes();
+        msg(infoStream, String.format(Locale.ROOT, "  progress: %d of %d segments, %.1f%% of %.1f MB checked [took %.3f sec so far]",
+                                      i+1, checks.size(), totalBytes == 0 ? 100. : 100.*checkedBytes/totalBytes,
+                                      totalBytes/(1024.*1024.), nsToSec(System.nanoTime()-startNS)));
+        msg(infoStream, "");
+      }
+    } finally {
+      if (pool != null) {
+        pool.shutdownNow();
+      }
+    }
+
+    if (0 == result.numBadSegments) {
+      result.clean = true;
+    } else
+      msg(infoStream, "WARNING: " + result.numBadSegments + " broken segments (containing " + result.totLoseDocCount + " documents) detected");
+
+    if ( ! (result.validCounter = (result.maxSegmentName < sis.counter))) {
+      result.clean = false;
+      result.newSegments.counter = result.maxSegmentName + 1; 
+      msg(infoStream, "ERROR: Next segment name counter " + sis.counter + " is not greater than max segment name " + result.maxSegmentName);
+    }
+    
+    if (result.clean) {
+      msg(infoStream, "No problems were detected with this index.\n");
+    }
+
+    msg(infoStream, String.format(Locale.ROOT, "Took %.3f sec total.", nsToSec(System.nanoTime()-startNS)));
+
+    return result;
+  }
+
+  /** Adds the outcome of a segment check to the result. */
+  private void finishSegmentCheck(Status result, SegmentCheck check) throws IOException {
+    result.segmentInfos.add(check.segInfoStat);
+    if (check.fatal != null) {
+      throw check.fatal;
+    }
+    if (check.failure != null) {
+      if (failFast) {
+        throw IOUtils.rethrowAlways(check.failure);
+      }
+      result.totLoseDocCount += check.toLoseDocCount;
+      result.numBadSegments++;
+      return;
+    }
+
+    // Keeper
+    result.newSegments.add(check.info.clone());
+  }
+
+  /** One part of a segment check, that reports to the given stream. */
+  private interface SegmentPart {
+    void check(PrintStream infoStream) throws IOException;
+  }
+
+  /** Checks one segment, possibly concurrently with other segments. */
+  private final class SegmentCheck {
+    final SegmentInfos sis;
+    final int index;
+    final SegmentCommitInfo info;
+    final ForkJoinPool pool;
+    final Status.SegmentInfoStatus segInfoStat = new Status.SegmentInfoStatus();
+    final ByteArrayOutputStream output = new ByteArrayOutputStream();
+    int toLoseDocCount;
+    Throwable failure;
+    RuntimeException fatal;
+
+    SegmentCheck(SegmentInfos sis, int index, ForkJoinPool pool) {
+      this.sis = sis;
+      this.index = index;
+      this.info = sis.info(index);
+      this.pool = pool;
+    }
+
+    /** Returns a stream that buffers messages for {@link #output}, or null if there is no infoStream. */
+    PrintStream newBufferedStream(ByteArrayOutputStream bytes) {
+      if (CheckIndex.this.infoStream == null) {
+        return null;
+      }
+      try {
+        return new PrintStream(bytes, true, IOUtils.UTF_8);
+      } catch (UnsupportedEncodingException e) {
+        throw new AssertionError(e);
       }
-      Status.SegmentInfoStatus segInfoStat = new Status.SegmentInfoStatus();
-      result.segmentInfos.add(segInfoStat);
-      msg(infoStream, "  " + (1+i) + " of " + numSegments + ": name=" + info.info.name + " maxDoc=" + info.info.maxDoc());
+    }
+
+    /** Checks the segment, reporting to the given stream, or to {@link #output} if it is null. */
+    void run(PrintStream infoStream) {
+      if (infoStream == null) {
+        infoStream = newBufferedStream(output);
+      }
+      final int numSegments = sis.size();
+      msg(infoStream, "  " + (1+index) + " of " + numSegments + ": name=" + info.info.name + " maxDoc=" + info.info.maxDoc());
       segInfoStat.name = info.info.name;
       segInfoStat.maxDoc = info.info.maxDoc();
-      
+
       final Version version = info.info.getVersion();
       if (info.info.maxDoc() <= 0) {
-        throw new RuntimeException("illegal number of documents: maxDoc=" + info.info.maxDoc());
+        fatal = new RuntimeException("illegal number of documents: maxDoc=" + info.info.maxDoc());
+        return;
       }
 
-      int toLoseDocCount = info.info.maxDoc();
+      toLoseDocCount = info.info.maxDoc();
 
       SegmentReader reader = null;
       Sort previousIndexSort = null;
@@ -623,7 +764,7 @@ public final class CheckIndex implements Closeable {
         }
         segInfoStat.numFiles = info.files().size();
         segInfoStat.sizeMB = info.sizeInBytes()/(1024.*1024.);
-        msg(infoStream, "    size (MB)=" + nf.format(segInfoStat.sizeMB));
+        msg(infoStream, "    size (MB)=" + NumberFormat.getInstance(Locale.ROOT).format(segInfoStat.sizeMB));
         Map<String,String> diagnostics = info.info.getDiagnostics();
         segInfoStat.diagnostics = diagnostics;
         if (diagnostics.size() > 0) {
@@ -650,7 +791,12 @@ public final class CheckIndex implements Closeable {
         long startIntegrityNS = System.nanoTime();
         if (infoStream != null)
           infoStream.print("    test: check integrity.....");
-        reader.checkIntegrity();
+        if (checksumsOnly) {
+          // Stream every file through its checksum, concurrently if we have threads:
+          CodecUtil.checksumEntireFiles(info.info.dir, info.files(), pool);
+        } else {
+          reader.checkIntegrity();
+        }
         msg(infoStream, String.format(Locale.ROOT, "OK [took %.3f sec]", nsToSec(System.nanoTime()-startIntegrityNS)));
 
         if (reader.maxDoc() != info.info.maxDoc()) {
@@ -677,32 +823,37 @@ public final class CheckIndex implements Closeable {
         }
         
         if (checksumsOnly == false) {
+          final SegmentReader segmentReader = reader;
+          final List<SegmentPart> parts = new ArrayList<>();
+
           // Test Livedocs
-          segInfoStat.liveDocStatus = testLiveDocs(reader, infoStream, failFast);
+          parts.add(out -> segInfoStat.liveDocStatus = testLiveDocs(segmentReader, out, failFast));
 
           // Test Fieldinfos
-          segInfoStat.fieldInfoStatus = testFieldInfos(reader, infoStream, failFast);
+          parts.add(out -> segInfoStat.fieldInfoStatus = testFieldInfos(segmentReader, out, failFast));
 
           // Test Field Norms
-          segInfoStat.fieldNormStatus = testFieldNorms(reader, infoStream, failFast);
+          parts.add(out -> segInfoStat.fieldNormStatus = testFieldNorms(segmentReader, out, failFast));
 
           // Test the Term Index
-          segInfoStat.termIndexStatus = testPostings(reader, infoStream, verbose, doSlowChecks, failFast);
+          parts.add(out -> segInfoStat.termIndexStatus = testPostings(segmentReader, out, verbose, doSlowChecks, failFast));
 
           // Test Stored Fields
-          segInfoStat.storedFieldStatus = testStoredFields(reader, infoStream, failFast);
+          parts.add(out -> segInfoStat.storedFieldStatus = testStoredFields(segmentReader, out, failFast));
 
           // Test Term Vectors
-          segInfoStat.termVectorStatus = testTermVectors(reader, infoStream, verbose, doSlowChecks, failFast);
+          parts.add(out -> segInfoStat.termVectorStatus = testTermVectors(segmentReader, out, verbose, doSlowChecks, failFast));
 
           // Test Docvalues
-          segInfoStat.docValuesStatus = testDocValues(reader, infoStream, failFast);
+          parts.add(out -> segInfoStat.docValuesStatus = testDocValues(segmentReader, out, failFast));
 
           // Test PointValues
-          segInfoStat.pointsStatus = testPoints(reader, infoStream, failFast);
+          parts.add(out -> segInfoStat.pointsStatus = testPoints(segmentReader, out, failFast));
 
           // Test index sort
-          segInfoStat.indexSortStatus = testSort(reader, indexSort, infoStream, failFast);
+          parts.add(out -> segInfoStat.indexSortStatus = testSort(segmentReader, indexSort, out, failFast));
+
+          runParts(infoStream, parts);
 
           // Rethrow the first exception we encountered
           //  This will cause stats for failed segments to be incremented properly
@@ -736,8 +887,9 @@ public final class CheckIndex implements Closeable {
         }
 
       } catch (Throwable t) {
+        failure = t;
         if (failFast) {
-          throw IOUtils.rethrowAlways(t);
+          return;
         }
         msg(infoStream, "FAILED");
         String comment;
@@ -746,36 +898,63 @@ public final class CheckIndex implements Closeable {
         if (infoStream != null)
           t.printStackTrace(infoStream);
         msg(infoStream, "");
-        result.totLoseDocCount += toLoseDocCount;
-        result.numBadSegments++;
-        continue;
       } finally {
-        if (reader != null)
-          reader.close();
+        if (reader != null) {
+          try {
+            reader.close();
+          } catch (Throwable t) {
+            if (failure == null) {
+              failure = t;
+            } else {
+              failure.addSuppressed(t);
+            }
+          }
+        }
       }
-
-      // Keeper
-      result.newSegments.add(info.clone());
     }
 
-    if (0 == result.numBadSegments) {
-      result.clean = true;
-    } else
-      msg(infoStream, "WARNING: " + result.numBadSegments + " broken segments (containing " + result.totLoseDocCount + " documents) detected");
-
-    if ( ! (result.validCounter = (result.maxSegmentName < sis.counter))) {
-      result.clean = false;
-      result.newSegments.counter = result.maxSegmentName + 1; 
-      msg(infoStream, "ERROR: Next segment name counter " + sis.counter + " is not greater than max segment name " + result.maxSegmentName);
-    }
-    
-    if (result.clean) {
-      msg(infoStream, "No problems were detected with this index.\n");
-    }
+    /** Runs the given parts, in order on the current thread, or concurrently in
+     *  the pool with their messages reported in order once they are all done. */
+    private void runParts(PrintStream infoStream, List<SegmentPart> parts) throws IOException {
+      if (pool == null) {
+        for (SegmentPart part : parts) {
+          part.check(infoStream);
+        }
+        return;
+      }
 
-    msg(infoStream, String.format(Locale.ROOT, "Took %.3f sec total.", nsToSec(System.nanoTime()-startNS)));
+      final int numParts = parts.size();
+      final ByteArrayOutputStream[] outputs = new ByteArrayOutputStream[numParts];
+      final Throwable[] failures = new Throwable[numParts];
+      final List<ForkJoinTask<?>> tasks = new ArrayList<>(numParts);
+      for (int i = 0; i < numParts; i++) {
+        final int part = i;
+        outputs[part] = new ByteArrayOutputStream();
+        final PrintStream out = infoStream == null ? null : newBufferedStream(outputs[part]);
+        // We run in the pool: joining these tasks helps run them, so this can't deadlock
+        tasks.add(ForkJoinTask.adapt(() -> {
+          try {
+            parts.get(part).check(out);
+          } catch (Throwable t) {
+            failures[part] = t;
+          }
+        }).fork());
+      }
 
-    return result;
+      Throwable th = null;
+      for (int i = 0; i < numParts; i++) {
+        tasks.get(i).join();
+        if (infoStream != null) {
+          outputs[i].writeTo(infoStream);
+        }
+        if (failures[i] != null) {
+          th = IOUtils.useOrSuppress(th, failures[i]);
+        }
+      }
+      if (th != null) {
+        throw IOUtils.rethrowAlways(th);
+      }
+    }
   }
 
   /**
@@ -2693,9 +2872,12 @@ public final class CheckIndex implements Closeable {
     <p>
     Run it like this:
     <pre>
-    java -ea:org.apache.lucene... org.apache.lucene.index.CheckIndex pathToIndex [-exorcise] [-verbose] [-segment X] [-segment Y]
+    java -ea:org.apache.lucene... org.apache.lucene.index.CheckIndex pathToIndex [-exorcise] [-verbose] [-threadCount N] [-segment X] [-segment Y]
     </pre>
     <ul>
+    <li><code>-threadCount N</code>: check segments concurrently, and the parts
+    (or with <code>-fast</code> the files) of each segment, on N threads.
+
     <li><code>-exorcise</code>: actually write a new segments_N file, removing any problematic segments. *LOSES DATA*
 
     <li><code>-segment X</code>: only check the specified
@@ -2733,6 +2915,7 @@ public final class CheckIndex implements Closeable {
     boolean doSlowChecks = false;
     boolean verbose = false;
     boolean doChecksumsOnly = false;
+    int threadCount = 1;
     List<String> onlySegments = new ArrayList<>();
     String indexPath = null;
     String dirImpl = null;
@@ -2814,6 +2997,19 @@ public final class CheckIndex implements Closeable {
       String arg = args[i];
       if ("-fast".equals(arg)) {
         opts.doChecksumsOnly = true;
+      } else if ("-threadCount".equals(arg)) {
+        if (i == args.length - 1) {
+          throw new IllegalArgumentException("ERROR: missing value for -threadCount option");
+        }
+        i++;
+        try {
+          opts.threadCount = Integer.parseInt(args[i]);
+        } catch (NumberFormatException e) {
+          throw new IllegalArgumentException("ERROR: invalid value for -threadCount option: " + args[i]);
+        }
+        if (opts.threadCount < 1) {
+          throw new IllegalArgumentException("ERROR: -threadCount must be at least 1; got " + opts.threadCount);
+        }
       } else if ("-exorcise".equals(arg)) {
         opts.doExorcise = true;
       } else if ("-crossCheckTermVectors".equals(arg)) {
@@ -2846,11 +3042,12 @@ public final class CheckIndex implements Closeable {
 
     if (opts.indexPath == null) {
       throw new IllegalArgumentException("\nERROR: index path not specified" +
-                         "\nUsage: java org.apache.lucene.index.CheckIndex pathToIndex [-exorcise] [-slow] [-segment X] [-segment Y] [-dir-impl X]\n" +
+                         "\nUsage: java org.apache.lucene.index.CheckIndex pathToIndex [-exorcise] [-slow] [-threadCount N] [-segment X] [-segment Y] [-dir-impl X]\n" +
                          "\n" +
                          "  -exorcise: actually write a new segments_N file, removing any problematic segments\n" +
                          "  -fast: just verify file checksums, omitting logical integrity checks\n" +
                          "  -slow: do additional slow checks; THIS IS VERY SLOW!\n" +
+                         "  -threadCount N: check segments, and the parts or files of each segment, on N threads\n" +
                          "  -codec X: when exorcising, codec to write the new segments_N file with\n" +
                          "  -verbose: print additional details\n" +
                          "  -segment X: only check the specified segments.  This can be specified multiple\n" +
@@ -2895,6 +3092,7 @@ public final class CheckIndex implements Closeable {
   public int doCheck(Options opts) throws IOException, InterruptedException {
     setDoSlowChecks(opts.doSlowChecks);
     setChecksumsOnly(opts.doChecksumsOnly);
+    setThreadCount(opts.threadCount);
     setInfoStream(opts.out, opts.verbose);
 
     Status result = checkIndex(opts.onlySegments);
@@ -79,6 +79,17 @@ public abstract class CodecReader extends LeafReader implements Accountable {
     getFieldsReader().visitDocument(docID, visitor);
   }
   
+  @Override
+  public final void documents(int[] docIDs, StoredFieldVisitor[] visitors) throws IOException {
+    final int[] sortedDocIDs = docIDs.clone();
+    final StoredFieldVisitor[] sortedVisitors = visitors.clone();
+    ReaderUtil.sortByDocID(sortedDocIDs, sortedVisitors);
+    for (int docID : sortedDocIDs) {
+      checkBounds(docID);
+    }
+    getFieldsReader().visitDocuments(sortedDocIDs, sortedVisitors);
+  }
+  
   @Override
   public final Fields getTermVectors(int docID) throws IOException {
     TermVectorsReader termVectorsReader = getTermVectorsReader();
@@ -27,6 +27,7 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Locale;
+import java.util.concurrent.Executor;
 
 /** A {@link MergeScheduler} that runs each merge using a
  *  separate thread.
@@ -95,6 +96,10 @@ public class ConcurrentMergeScheduler extends MergeScheduler {
    *  to name them). */
   protected int mergeThreadCount;
 
+  /** How many threads are currently running parts of merges on
+   *  behalf of a {@link MergeThread}. */
+  private int intraMergeThreadCount;
+
   /** Floor for IO write rate limit (we will never go any lower than this) */
   private static final double MIN_MERGE_MB_PER_SEC = 5.0;
 
@@ -275,15 +280,59 @@ public class ConcurrentMergeScheduler extends MergeScheduler {
         assert context.context == IOContext.Context.MERGE: "got context=" + context.context;
         
         // Because rateLimiter is bound to a particular merge thread, this method should
-        // always be called from that context. Verify this.
-        assert mergeThread == Thread.currentThread() : "Not the same merge thread, current="
-          + Thread.currentThread() + ", expected=" + mergeThread;
+        // always be called from that context, or from a thread running a part of its merge.
+        // Verify this.
+        assert mergeThread == Thread.currentThread() || isIntraMergeThreadOf(mergeThread, Thread.currentThread()) :
+          "Not the same merge thread, current=" + Thread.currentThread() + ", expected=" + mergeThread;
 
         return new RateLimitedIndexOutput(rateLimiter, in.createOutput(name, context));
       }
     };
   }
   
+  private static boolean isIntraMergeThreadOf(Thread mergeThread, Thread thread) {
+    return thread instanceof IntraMergeThread && ((IntraMergeThread) thread).mergeThread == mergeThread;
+  }
+
+  /**
+   * Returns an executor that runs each part of the merge in a new thread, as
+   * long as fewer than {@link #getMaxThreadCount} threads are running merges
+   * or parts of merges, and on the merge thread otherwise.  Parts of a merge
+   * are throttled by the rate limit of their merge, and paused with it.
+   */
+  @Override
+  public Executor getIntraMergeExecutor(OneMerge merge) {
+    final Thread mergeThread = Thread.currentThread();
+    if (!MergeThread.class.isInstance(mergeThread)) {
+      throw new AssertionError("getIntraMergeExecutor should be called from MergeThread. Current thread: "
+          + mergeThread);
+    }
+    return command -> {
+      final IntraMergeThread thread;
+      synchronized (ConcurrentMergeScheduler.this) {
+        int runningCount = intraMergeThreadCount;
+        for (MergeThread t : mergeThreads) {
+          if (t.isAlive() && t.merge.isAborted() == false) {
+            runningCount++;
+          }
+        }
+        if (runningCount >= maxThreadCount) {
+          thread = null;
+        } else {
+          thread = new IntraMergeThread((MergeThread) mergeThread, command);
+          thread.setDaemon(true);
+          thread.setName(mergeThread.getName() + " (part)");
+          intraMergeThreadCount++;
+        }
+      }
+      if (thread == null) {
+        command.run();
+      } else {
+        thread.start();
+      }
+    };
+  }
+
   /**
    * Called whenever the running merges have changed, to set merge IO limits.
    * This method sorts the merge threads by their merge size in
@@ -516,7 +565,8 @@ public class ConcurrentMergeScheduler extends MergeScheduler {
     // pending merges, until it's empty:
     while (true) {
 
-      if (maybeStall(writer) == false) {
+      // never stall a thread that is opening an NRT reader; it only waits for a bounded time:
+      if (trigger != MergeTrigger.GET_READER && maybeStall(writer) == false) {
         break;
       }
 
@@ -627,6 +677,29 @@ public class ConcurrentMergeScheduler extends MergeScheduler {
     return thread;
   }
 
+  /** Runs a part of the merge of a {@link MergeThread}, then exits. */
+  private class IntraMergeThread extends Thread {
+    final MergeThread mergeThread;
+    final Runnable command;
+
+    IntraMergeThread(MergeThread mergeThread, Runnable command) {
+      this.mergeThread = mergeThread;
+      this.command = command;
+    }
+
+    @Override
+    public void run() {
+      try {
+        command.run();
+      } finally {
+        synchronized (ConcurrentMergeScheduler.this) {
+          intraMergeThreadCount--;
+          ConcurrentMergeScheduler.this.notifyAll();
+        }
+      }
+    }
+  }
+
   /** Runs a merge thread to execute a single merge, then exits. */
   protected class MergeThread extends Thread implements Comparable<MergeThread> {
     final IndexWriter writer;
@@ -18,6 +18,11 @@ package lucene.index;
 
 
 import lucene.analysis.TokenStream;
+import lucene.analysis.tokenattributes.BytesTermAttribute;
+import lucene.analysis.tokenattributes.OffsetAttribute;
+import lucene.analysis.tokenattributes.PayloadAttribute;
+import lucene.analysis.tokenattributes.PositionIncrementAttribute;
+import lucene.analysis.tokenattributes.TermFrequencyAttribute;
 import lucene.codecs.*;
 import lucene.document.FieldType;
 import lucene.search.*;
@@ -681,6 +686,25 @@ final class DefaultIndexingChain extends DocConsumer {
     info.setIndexOptions(indexOptions);
   }
 
+  /** Attributes through which {@link PreAnalyzedTokens} are
+   *  exposed to the terms hash consumers, one token at a time.
+   *  Term and payload bytes are referenced, not copied. */
+  private static final class PreAnalyzedAttributes extends AttributeSource {
+    private final BytesTermAttribute termAttribute = addAttribute(BytesTermAttribute.class);
+    private final TermFrequencyAttribute termFreqAttribute = addAttribute(TermFrequencyAttribute.class);
+    private final PositionIncrementAttribute posIncrAttribute = addAttribute(PositionIncrementAttribute.class);
+    private final OffsetAttribute offsetAttribute = addAttribute(OffsetAttribute.class);
+    private final PayloadAttribute payloadAttribute = addAttribute(PayloadAttribute.class);
+
+    void setToken(PreAnalyzedTokens tokens, int index) {
+      termAttribute.setBytesRef(tokens.term(index));
+      termFreqAttribute.setTermFrequency(1);
+      posIncrAttribute.setPositionIncrement(tokens.positionIncrement(index));
+      offsetAttribute.setOffset(tokens.startOffset(index), tokens.endOffset(index));
+      payloadAttribute.setPayload(tokens.payload(index));
+    }
+  }
+
   /** NOTE: not static: accesses at least docState, termsHash. */
   private final class PerField implements Comparable<PerField> {
 
@@ -711,6 +735,10 @@ final class DefaultIndexingChain extends DocConsumer {
     // reused
     TokenStream tokenStream;
 
+    // reused for pre-analyzed tokens, lazy init'd:
+    PreAnalyzedAttributes preAnalyzedAttributes;
+    PreAnalyzedTokens preAnalyzedTokensReuse;
+
     public PerField(int indexCreatedVersionMajor, FieldInfo fieldInfo, boolean invert) {
       this.indexCreatedVersionMajor = indexCreatedVersionMajor;
       this.fieldInfo = fieldInfo;
@@ -774,6 +802,19 @@ final class DefaultIndexingChain extends DocConsumer {
         fieldInfo.setOmitsNorms();
       }
 
+      if (preAnalyzedTokensReuse == null) {
+        preAnalyzedTokensReuse = new PreAnalyzedTokens();
+      }
+      PreAnalyzedTokens preAnalyzedTokens = field.preAnalyzedTokens(preAnalyzedTokensReuse);
+      if (preAnalyzedTokens != null) {
+        try {
+          invertPreAnalyzed(field, preAnalyzedTokens, first);
+        } finally {
+          preAnalyzedTokensReuse.clear();
+        }
+        return;
+      }
+
       final boolean analyzed = fieldType.tokenized() && docState.analyzer != null;
 
       /*
@@ -796,63 +837,7 @@ final class DefaultIndexingChain extends DocConsumer {
           // non-aborting and (above) this one document
           // will be marked as deleted, but still
           // consume a docID
-
-          int posIncr = invertState.posIncrAttribute.getPositionIncrement();
-          invertState.position += posIncr;
-          if (invertState.position < invertState.lastPosition) {
-            if (posIncr == 0) {
-              throw new IllegalArgumentException("first position increment must be > 0 (got 0) for field '" + field.name() + "'");
-            } else if (posIncr < 0) {
-              throw new IllegalArgumentException("position increment must be >= 0 (got " + posIncr + ") for field '" + field.name() + "'");
-            } else {
-              throw new IllegalArgumentException("position overflowed Integer.MAX_VALUE (got posIncr=" + posIncr + " lastPosition=" + invertState.lastPosition + " position=" + invertState.position + ") for field '" + field.name() + "'");
-            }
-          } else if (invertState.position > IndexWriter.MAX_POSITION) {
-            throw new IllegalArgumentException("position " + invertState.position + " is too large for field '" + field.name() + "': max allowed position is " + IndexWriter.MAX_POSITION);
-          }
-          invertState.lastPosition = invertState.position;
-          if (posIncr == 0) {
-            invertState.numOverlap++;
-          }
-
-          int startOffset = invertState.offset + invertState.offsetAttribute.startOffset();
-          int endOffset = invertState.offset + invertState.offsetAttribute.endOffset();
-          if (startOffset < invertState.lastStartOffset || endOffset < startOffset) {
-            throw new IllegalArgumentException("startOffset must be non-negative, and endOffset must be >= startOffset, and offsets must not go backwards "
-                                               + "startOffset=" + startOffset + ",endOffset=" + endOffset + ",lastStartOffset=" + invertState.lastStartOffset + " for field '" + field.name() + "'");
-          }
-          invertState.lastStartOffset = startOffset;
-
-          try {
-            invertState.length = Math.addExact(invertState.length, invertState.termFreqAttribute.getTermFrequency());
-          } catch (ArithmeticException ae) {
-            throw new IllegalArgumentException("too many tokens for field \"" + field.name() + "\"");
-          }
-
-          //System.out.println("  term=" + invertState.termAttribute);
-
-          // If we hit an exception in here, we abort
-          // all buffered documents since the last
-          // flush, on the likelihood that the
-          // internal state of the terms hash is now
-          // corrupt and should not be flushed to a
-          // new segment:
-          try {
-            termsHashPerField.add();
-          } catch (MaxBytesLengthExceededException e) {
-            byte[] prefix = new byte[30];
-            BytesRef bigTerm = invertState.termAttribute.getBytesRef();
-            System.arraycopy(bigTerm.bytes, bigTerm.offset, prefix, 0, 30);
-            String msg = "Document contains at least one immense term in field=\"" + fieldInfo.name + "\" (whose UTF8 encoding is longer than the max length " + DocumentsWriterPerThread.MAX_TERM_LENGTH_UTF8 + "), all of which were skipped.  Please correct the analyzer to not produce such terms.  The prefix of the first immense term is: '" + Arrays.toString(prefix) + "...', original message: " + e.getMessage();
-            if (docState.infoStream.isEnabled("IW")) {
-              docState.infoStream.message("IW", "ERROR: " + msg);
-            }
-            // Document will be deleted above:
-            throw new IllegalArgumentException(msg, e);
-          } catch (Throwable th) {
-            docWriter.onAbortingException(th);
-            throw th;
-          }
+          invertToken(field);
         }
 
         // trigger streams to perform end-of-stream operations
@@ -876,6 +861,98 @@ final class DefaultIndexingChain extends DocConsumer {
         invertState.offset += docState.analyzer.getOffsetGap(fieldInfo.name);
       }
     }
+
+    /** Inverts the current token, as exposed by the
+     *  attributes of {@link #invertState}. */
+    private void invertToken(IndexableField field) throws IOException {
+      int posIncr = invertState.posIncrAttribute.getPositionIncrement();
+      invertState.position += posIncr;
+      if (invertState.position < invertState.lastPosition) {
+        if (posIncr == 0) {
+          throw new IllegalArgumentException("first position increment must be > 0 (got 0) for field '" + field.name() + "'");
+        } else if (posIncr < 0) {
+          throw new IllegalArgumentException("position increment must be >= 0 (got " + posIncr + ") for field '" + field.name() + "'");
+        } else {
+          throw new IllegalArgumentException("position overflowed Integer.MAX_VALUE (got posIncr=" + posIncr + " lastPosition=" + invertState.lastPosition + " position=" + invertState.position + ") for field '" + field.name() + "'");
+        }
+      } else if (invertState.position > IndexWriter.MAX_POSITION) {
+        throw new IllegalArgumentException("position " + invertState.position + " is too large for field '" + field.name() + "': max allowed position is " + IndexWriter.MAX_POSITION);
+      }
+      invertState.lastPosition = invertState.position;
+      if (posIncr == 0) {
+        invertState.numOverlap++;
+      }
+
+      int startOffset = invertState.offset + invertState.offsetAttribute.startOffset();
+      int endOffset = invertState.offset + invertState.offsetAttribute.endOffset();
+      if (startOffset < invertState.lastStartOffset || endOffset < startOffset) {
+        throw new IllegalArgumentException("startOffset must be non-negative, and endOffset must be >= startOffset, and offsets must not go backwards "
+                                           + "startOffset=" + startOffset + ",endOffset=" + endOffset + ",lastStartOffset=" + invertState.lastStartOffset + " for field '" + field.name() + "'");
+      }
+      invertState.lastStartOffset = startOffset;
+
+      try {
+        invertState.length = Math.addExact(invertState.length, invertState.termFreqAttribute.getTermFrequency());
+      } catch (ArithmeticException ae) {
+        throw new IllegalArgumentException("too many tokens for field \"" + field.name() + "\"");
+      }
+
+      //System.out.println("  term=" + invertState.termAttribute);
+
+      // If we hit an exception in here, we abort
+      // all buffered documents since the last
+      // flush, on the likelihood that the
+      // internal state of the terms hash is now
+      // corrupt and should not be flushed to a
+      // new segment:
+      try {
+        termsHashPerField.add();
+      } catch (MaxBytesLengthExceededException e) {
+        byte[] prefix = new byte[30];
+        BytesRef bigTerm = invertState.termAttribute.getBytesRef();
+        System.arraycopy(bigTerm.bytes, bigTerm.offset, prefix, 0, 30);
+        String msg = "Document contains at least one immense term in field=\"" + fieldInfo.name + "\" (whose UTF8 encoding is longer than the max length " + DocumentsWriterPerThread.MAX_TERM_LENGTH_UTF8 + "), all of which were skipped.  Please correct the analyzer to not produce such terms.  The prefix of the first immense term is: '" + Arrays.toString(prefix) + "...', original message: " + e.getMessage();
+        if (docState.infoStream.isEnabled("IW")) {
+          docState.infoStream.message("IW", "ERROR: " + msg);
+        }
+        // Document will be deleted above:
+        throw new IllegalArgumentException(msg, e);
+      } catch (Throwable th) {
+        docWriter.onAbortingException(th);
+        throw th;
+      }
+    }
+
+    /** Inverts pre-analyzed tokens for one field instance,
+     *  bypassing the analyzer and the {@link TokenStream}
+     *  API entirely. */
+    private void invertPreAnalyzed(IndexableField field, PreAnalyzedTokens tokens, boolean first) throws IOException {
+      boolean succeededInProcessingField = false;
+      try {
+        if (preAnalyzedAttributes == null) {
+          // lazy init: attributes are only instantiated once
+          // per field and then reused for every document
+          preAnalyzedAttributes = new PreAnalyzedAttributes();
+        }
+        invertState.setAttributeSource(preAnalyzedAttributes);
+        termsHashPerField.start(field, first);
+
+        final int size = tokens.size();
+        for (int i = 0; i < size; i++) {
+          preAnalyzedAttributes.setToken(tokens, i);
+          invertToken(field);
+        }
+
+        invertState.position += tokens.finalPositionIncrement();
+        invertState.offset += tokens.finalOffset();
+
+        succeededInProcessingField = true;
+      } finally {
+        if (!succeededInProcessingField && docState.infoStream.isEnabled("DW")) {
+          docState.infoStream.message("DW", "An exception was thrown while processing field " + fieldInfo.name);
+        }
+      }
+    }
   }
 
   @Override
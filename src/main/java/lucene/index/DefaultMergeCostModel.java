@@ -0,0 +1,180 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package lucene.index;
+
+
+import java.util.List;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * A linear {@link MergeCostModel}.  A query that hits a segment pays a fixed
+ * cost per segment (terms dictionary lookups, scorer setup), a further fixed
+ * cost for doc-values lookups (sorting, faceting), and a cost per document of
+ * the segment, deleted documents included since they are still scanned.
+ * Writing costs a fixed amount per MB.
+ * <p>
+ * By default every query hits every segment.  Applications that know better,
+ * e.g. because they record which segments produced hits, can pass the ratio
+ * of queries that hit each segment through {@link #setHitRatios}; a merged
+ * segment is assumed to be hit by a query if any of its sources would be.
+ *
+ * @lucene.experimental
+ */
+public class DefaultMergeCostModel extends MergeCostModel {
+
+  private double perSegmentCost = 1.0;
+  private double docValuesLookupCost = 0.0;
+  private double perDocCost = 1e-6;
+  private double perMBWrittenCost = 1.0;
+  private ToDoubleFunction<String> hitRatios = null;
+
+  /** Sole constructor, setting all settings to their
+   *  defaults. */
+  public DefaultMergeCostModel() {
+  }
+
+  /** Sets the cost that a query pays for each segment it searches.  Default is 1. */
+  public DefaultMergeCostModel setPerSegmentCost(double v) {
+    if (v < 0.0 || Double.isFinite(v) == false) {
+      throw new IllegalArgumentException("perSegmentCost must be >= 0.0 (got " + v + ")");
+    }
+    perSegmentCost = v;
+    return this;
+  }
+
+  /** Returns the current perSegmentCost setting.
+   *
+   * @see #setPerSegmentCost */
+  public double getPerSegmentCost() {
+    return perSegmentCost;
+  }
+
+  /** Sets the additional cost that a query pays for looking up doc values in each
+   *  segment it searches, e.g. to sort or facet.  Default is 0. */
+  public DefaultMergeCostModel setDocValuesLookupCost(double v) {
+    if (v < 0.0 || Double.isFinite(v) == false) {
+      throw new IllegalArgumentException("docValuesLookupCost must be >= 0.0 (got " + v + ")");
+    }
+    docValuesLookupCost = v;
+    return this;
+  }
+
+  /** Returns the current docValuesLookupCost setting.
+   *
+   * @see #setDocValuesLookupCost */
+  public double getDocValuesLookupCost() {
+    return docValuesLookupCost;
+  }
+
+  /** Sets the cost that a query pays per document of each segment it searches,
+   *  including deleted documents.  This is what makes reclaiming deletes pay off.
+   *  Default is 1e-6. */
+  public DefaultMergeCostModel setPerDocCost(double v) {
+    if (v < 0.0 || Double.isFinite(v) == false) {
+      throw new IllegalArgumentException("perDocCost must be >= 0.0 (got " + v + ")");
+    }
+    perDocCost = v;
+    return this;
+  }
+
+  /** Returns the current perDocCost setting.
+   *
+   * @see #setPerDocCost */
+  public double getPerDocCost() {
+    return perDocCost;
+  }
+
+  /** Sets the cost of writing one MB while merging.  Default is 1. */
+  public DefaultMergeCostModel setPerMBWrittenCost(double v) {
+    if (v < 0.0 || Double.isFinite(v) == false) {
+      throw new IllegalArgumentException("perMBWrittenCost must be >= 0.0 (got " + v + ")");
+    }
+    perMBWrittenCost = v;
+    return this;
+  }
+
+  /** Returns the current perMBWrittenCost setting.
+   *
+   * @see #setPerMBWrittenCost */
+  public double getPerMBWrittenCost() {
+    return perMBWrittenCost;
+  }
+
+  /** Sets the function that returns, for a segment name, the ratio of queries
+   *  that hit this segment, between 0 and 1.  Segments the function returns
+   *  NaN for are assumed to be hit by every query.  Default is <code>null</code>,
+   *  meaning that every query hits every segment. */
+  public DefaultMergeCostModel setHitRatios(ToDoubleFunction<String> hitRatios) {
+    this.hitRatios = hitRatios;
+    return this;
+  }
+
+  /** Returns the current hit ratios function.
+   *
+   * @see #setHitRatios */
+  public ToDoubleFunction<String> getHitRatios() {
+    return hitRatios;
+  }
+
+  private double hitRatio(SegmentStats segment) {
+    if (hitRatios == null) {
+      return 1.0;
+    }
+    final double ratio = hitRatios.applyAsDouble(segment.name);
+    if (Double.isNaN(ratio)) {
+      return 1.0;
+    }
+    return Math.min(1.0, Math.max(0.0, ratio));
+  }
+
+  private double costPerHit(long numDocs) {
+    return perSegmentCost + docValuesLookupCost + perDocCost * numDocs;
+  }
+
+  @Override
+  public double searchCost(SegmentStats segment) {
+    return hitRatio(segment) * costPerHit(segment.maxDoc);
+  }
+
+  @Override
+  public double mergedSearchCost(List<SegmentStats> segments) {
+    double missRatio = 1.0;
+    long numDocs = 0;
+    for (SegmentStats segment : segments) {
+      missRatio *= 1.0 - hitRatio(segment);
+      numDocs += segment.maxDoc - segment.delCount;
+    }
+    return (1.0 - missRatio) * costPerHit(numDocs);
+  }
+
+  @Override
+  public double writeCost(long bytes) {
+    return perMBWrittenCost * bytes / 1024. / 1024.;
+  }
+
+  @Override
+  public String toString() {
+    StringBuilder sb = new StringBuilder("[" + getClass().getSimpleName() + ": ");
+    sb.append("perSegmentCost=").append(perSegmentCost).append(", ");
+    sb.append("docValuesLookupCost=").append(docValuesLookupCost).append(", ");
+    sb.append("perDocCost=").append(perDocCost).append(", ");
+    sb.append("perMBWrittenCost=").append(perMBWrittenCost).append(", ");
+    sb.append("hitRatios=").append(hitRatios);
+    sb.append("]");
+    return sb.toString();
+  }
+}
@@ -341,7 +341,9 @@ public final class FieldInfo {
    * Get a codec attribute value, or null if it does not exist
    */
   public String getAttribute(String key) {
-    return attributes.get(key);
+    synchronized (attributes) {
+      return attributes.get(key);
+    }
   }
   
   /**
@@ -356,7 +358,10 @@ public final class FieldInfo {
    * the documents, the behaviour after merge is undefined.
    */
   public String putAttribute(String key, String value) {
-    return attributes.put(key, value);
+    // formats of a merge may be written concurrently:
+    synchronized (attributes) {
+      return attributes.put(key, value);
+    }
   }
   
   /**
@@ -127,6 +127,11 @@ public abstract class FilterLeafReader extends LeafReader {
       return in.getDocCount();
     }
 
+    @Override
+    public boolean mayContain(BytesRef term) throws IOException {
+      return in.mayContain(term);
+    }
+
     @Override
     public boolean hasFreqs() {
       return in.hasFreqs();
@@ -355,6 +360,12 @@ public abstract class FilterLeafReader extends LeafReader {
     in.document(docID, visitor);
   }
 
+  @Override
+  public void documents(int[] docIDs, StoredFieldVisitor[] visitors) throws IOException {
+    ensureOpen();
+    in.documents(docIDs, visitors);
+  }
+
   @Override
   protected void doClose() throws IOException {
     in.close();
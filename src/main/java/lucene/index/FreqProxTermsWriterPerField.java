@@ -70,6 +70,11 @@ final class FreqProxTermsWriterPerField extends TermsHashPerField {
   @Override
   boolean start(IndexableField f, boolean first) {
     super.start(f, first);
+    if (f.fieldType().tokenized() == false) {
+      // Untokenized (keyword) fields tend to have few unique
+      // values repeated across many documents
+      enableTermIDCache();
+    }
     payloadAttribute = fieldState.payloadAttribute;
     offsetAttribute = fieldState.offsetAttribute;
     return true;
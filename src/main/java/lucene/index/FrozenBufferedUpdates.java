@@ -23,6 +23,9 @@ import java.io.Closeable;
 import java.io.IOException;
 import java.util.*;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.locks.ReentrantLock;
 import java.util.function.IntConsumer;
@@ -229,7 +232,7 @@ final class FrozenBufferedUpdates {
         try (Closeable finalizer = () -> finishApply(writer, segStates, success.get(), delFiles)) {
           assert finalizer != null; // access the finalizer to prevent a warning
           // don't hold IW monitor lock here so threads are free concurrently resolve deletes/updates:
-          delCount = apply(segStates);
+          delCount = apply(segStates, writer.getConfig().getApplyDeletesExecutor());
           success.set(true);
         }
 
@@ -382,8 +385,8 @@ final class FrozenBufferedUpdates {
   }
 
   /** Applies pending delete-by-term, delete-by-query and doc values updates to all segments in the index, returning
-   *  the number of new deleted or updated documents. */
-  private long apply(BufferedUpdatesStream.SegmentState[] segStates) throws IOException {
+   *  the number of new deleted or updated documents.  If an executor is provided, segments are resolved concurrently. */
+  private long apply(BufferedUpdatesStream.SegmentState[] segStates, ExecutorService executor) throws IOException {
     assert applyLock.isHeldByCurrentThread();
     if (delGen == -1) {
       // we were not yet pushed
@@ -397,53 +400,78 @@ final class FrozenBufferedUpdates {
       assert privateSegment == segStates[0].reader.getOriginalSegmentInfo();
     }
 
-    totalDelCount += applyTermDeletes(segStates);
-    totalDelCount += applyQueryDeletes(segStates);
-    totalDelCount += applyDocValuesUpdates(segStates);
-
-    return totalDelCount;
-  }
-
-  private long applyDocValuesUpdates(BufferedUpdatesStream.SegmentState[] segStates) throws IOException {
-
-    if (fieldUpdates.isEmpty()) {
-      return 0;
-    }
-
     long startNS = System.nanoTime();
 
-    long updateCount = 0;
-
-    for (BufferedUpdatesStream.SegmentState segState : segStates) {
-
-      if (delGen < segState.delGen) {
-        // segment is newer than this deletes packet
-        continue;
+    long delCount = 0;
+    final boolean concurrent = executor != null && segStates.length > 1;
+    if (concurrent == false) {
+      for (BufferedUpdatesStream.SegmentState segState : segStates) {
+        delCount += applyToSegment(segState);
       }
-
-      if (segState.rld.refCount() == 1) {
-        // This means we are the only remaining reference to this segment, meaning
-        // it was merged away while we were running, so we can safely skip running
-        // because we will run on the newly merged segment next:
-        continue;
+    } else {
+      // Segments are independent of each other, so resolve them concurrently:
+      final List<Future<Long>> futures = new ArrayList<>(segStates.length);
+      for (BufferedUpdatesStream.SegmentState segState : segStates) {
+        futures.add(executor.submit(() -> applyToSegment(segState)));
+      }
+      Throwable th = null;
+      for (Future<Long> future : futures) {
+        try {
+          delCount += future.get();
+        } catch (InterruptedException e) {
+          th = IOUtils.useOrSuppress(th, new ThreadInterruptedException(e));
+        } catch (ExecutionException e) {
+          th = IOUtils.useOrSuppress(th, e.getCause());
+        }
       }
-      final boolean isSegmentPrivateDeletes = privateSegment != null;
-      if (fieldUpdates.isEmpty() == false) {
-        updateCount += applyDocValuesUpdates(segState, fieldUpdates, delGen, isSegmentPrivateDeletes);
+      // Only throw once all tasks are done, since the caller closes the segment states:
+      if (th != null) {
+        throw IOUtils.rethrowAlways(th);
       }
-
     }
 
     if (infoStream.isEnabled("BD")) {
       infoStream.message("BD",
-                         String.format(Locale.ROOT, "applyDocValuesUpdates %.1f msec for %d segments, %d field updates; %d new updates",
+                         String.format(Locale.ROOT, "apply took %.2f msec for %d segments%s, %d del terms, %d queries and %d field updates; %d new deletes/updates",
                                        (System.nanoTime()-startNS)/1000000.,
                                        segStates.length,
+                                       concurrent ? " (concurrent)" : "",
+                                       deleteTerms.size(),
+                                       deleteQueries.length,
                                        fieldUpdatesCount,
-                                       updateCount));
+                                       delCount));
     }
 
-    return updateCount;
+    totalDelCount += delCount;
+    return totalDelCount;
+  }
+
+  /** Applies pending delete-by-term, delete-by-query and doc values updates to a single segment, returning the number of
+   *  new deleted or updated documents.  Different segments may be resolved concurrently. */
+  private long applyToSegment(BufferedUpdatesStream.SegmentState segState) throws IOException {
+    if (delGen < segState.delGen) {
+      // segment is newer than this deletes packet
+      return 0;
+    }
+
+    if (segState.rld.refCount() == 1) {
+      // This means we are the only remaining reference to this segment, meaning
+      // it was merged away while we were running, so we can safely skip running
+      // because we will run on the newly merged segment next:
+      return 0;
+    }
+
+    long delCount = 0;
+    if (deleteTerms.size() != 0) {
+      delCount += applyTermDeletes(segState);
+    }
+    if (deleteQueries.length != 0) {
+      delCount += applyQueryDeletes(segState);
+    }
+    if (fieldUpdates.isEmpty() == false) {
+      delCount += applyDocValuesUpdates(segState, fieldUpdates, delGen, privateSegment != null);
+    }
+    return delCount;
   }
 
   private static long applyDocValuesUpdates(BufferedUpdatesStream.SegmentState segState,
@@ -568,138 +596,76 @@ final class FrozenBufferedUpdates {
   }
 
   // Delete by query
-  private long applyQueryDeletes(BufferedUpdatesStream.SegmentState[] segStates) throws IOException {
-
-    if (deleteQueries.length == 0) {
-      return 0;
-    }
-
-    long startNS = System.nanoTime();
-
+  private long applyQueryDeletes(BufferedUpdatesStream.SegmentState segState) throws IOException {
     long delCount = 0;
-    for (BufferedUpdatesStream.SegmentState segState : segStates) {
-
-      if (delGen < segState.delGen) {
-        // segment is newer than this deletes packet
-        continue;
-      }
-
-      if (segState.rld.refCount() == 1) {
-        // This means we are the only remaining reference to this segment, meaning
-        // it was merged away while we were running, so we can safely skip running
-        // because we will run on the newly merged segment next:
-        continue;
+    final LeafReaderContext readerContext = segState.reader.getContext();
+    for (int i = 0; i < deleteQueries.length; i++) {
+      Query query = deleteQueries[i];
+      int limit;
+      if (delGen == segState.delGen) {
+        assert privateSegment != null;
+        limit = deleteQueryLimits[i];
+      } else {
+        limit = Integer.MAX_VALUE;
       }
-
-      final LeafReaderContext readerContext = segState.reader.getContext();
-      for (int i = 0; i < deleteQueries.length; i++) {
-        Query query = deleteQueries[i];
-        int limit;
-        if (delGen == segState.delGen) {
+      final IndexSearcher searcher = new IndexSearcher(readerContext.reader());
+      searcher.setQueryCache(null);
+      query = searcher.rewrite(query);
+      final Weight weight = searcher.createWeight(query, ScoreMode.COMPLETE_NO_SCORES, 1);
+      final Scorer scorer = weight.scorer(readerContext);
+      if (scorer != null) {
+        final DocIdSetIterator it = scorer.iterator();
+        if (segState.rld.sortMap != null && limit != Integer.MAX_VALUE) {
           assert privateSegment != null;
-          limit = deleteQueryLimits[i];
-        } else {
-          limit = Integer.MAX_VALUE;
-        }
-        final IndexSearcher searcher = new IndexSearcher(readerContext.reader());
-        searcher.setQueryCache(null);
-        query = searcher.rewrite(query);
-        final Weight weight = searcher.createWeight(query, ScoreMode.COMPLETE_NO_SCORES, 1);
-        final Scorer scorer = weight.scorer(readerContext);
-        if (scorer != null) {
-          final DocIdSetIterator it = scorer.iterator();
-          if (segState.rld.sortMap != null && limit != Integer.MAX_VALUE) {
-            assert privateSegment != null;
-            // This segment was sorted on flush; we must apply seg-private deletes carefully in this case:
-            int docID;
-            while ((docID = it.nextDoc()) != DocIdSetIterator.NO_MORE_DOCS) {
-              // The limit is in the pre-sorted doc space:
-              if (segState.rld.sortMap.newToOld(docID) < limit) {
-                if (segState.rld.delete(docID)) {
-                  delCount++;
-                }
-              }
-            }
-          } else {
-            int docID;
-            while ((docID = it.nextDoc()) < limit) {
+          // This segment was sorted on flush; we must apply seg-private deletes carefully in this case:
+          int docID;
+          while ((docID = it.nextDoc()) != DocIdSetIterator.NO_MORE_DOCS) {
+            // The limit is in the pre-sorted doc space:
+            if (segState.rld.sortMap.newToOld(docID) < limit) {
               if (segState.rld.delete(docID)) {
                 delCount++;
               }
             }
           }
+        } else {
+          int docID;
+          while ((docID = it.nextDoc()) < limit) {
+            if (segState.rld.delete(docID)) {
+              delCount++;
+            }
+          }
         }
       }
     }
-
-    if (infoStream.isEnabled("BD")) {
-      infoStream.message("BD",
-                         String.format(Locale.ROOT, "applyQueryDeletes took %.2f msec for %d segments and %d queries; %d new deletions",
-                                       (System.nanoTime()-startNS)/1000000.,
-                                       segStates.length,
-                                       deleteQueries.length,
-                                       delCount));
-    }
-
     return delCount;
   }
 
-  private long applyTermDeletes(BufferedUpdatesStream.SegmentState[] segStates) throws IOException {
-
-    if (deleteTerms.size() == 0) {
-      return 0;
-    }
-
+  private long applyTermDeletes(BufferedUpdatesStream.SegmentState segState) throws IOException {
     // We apply segment-private deletes on flush:
     assert privateSegment == null;
-
-    long startNS = System.nanoTime();
+    assert segState.delGen != delGen: "segState.delGen=" + segState.delGen + " vs this.gen=" + delGen;
 
     long delCount = 0;
-
-    for (BufferedUpdatesStream.SegmentState segState : segStates) {
-      assert segState.delGen != delGen: "segState.delGen=" + segState.delGen + " vs this.gen=" + delGen;
-      if (segState.delGen > delGen) {
-        // our deletes don't apply to this segment
-        continue;
-      }
-      if (segState.rld.refCount() == 1) {
-        // This means we are the only remaining reference to this segment, meaning
-        // it was merged away while we were running, so we can safely skip running
-        // because we will run on the newly merged segment next:
-        continue;
-      }
-
-      FieldTermIterator iter = deleteTerms.iterator();
-      BytesRef delTerm;
-      TermDocsIterator termDocsIterator = new TermDocsIterator(segState.reader, true);
-      while ((delTerm = iter.next()) != null) {
-        final DocIdSetIterator iterator = termDocsIterator.nextTerm(iter.field(), delTerm);
-        if (iterator != null) {
-          int docID;
-          while ((docID = iterator.nextDoc()) != DocIdSetIterator.NO_MORE_DOCS) {
-            // NOTE: there is no limit check on the docID
-            // when deleting by Term (unlike by Query)
-            // because on flush we apply all Term deletes to
-            // each segment.  So all Term deleting here is
-            // against prior segments:
-            if (segState.rld.delete(docID)) {
-              delCount++;
-            }
+    FieldTermIterator iter = deleteTerms.iterator();
+    BytesRef delTerm;
+    // Del terms are sorted, so the iterator can seek forward from its current position:
+    TermDocsIterator termDocsIterator = new TermDocsIterator(segState.reader, true);
+    while ((delTerm = iter.next()) != null) {
+      final DocIdSetIterator iterator = termDocsIterator.nextTerm(iter.field(), delTerm);
+      if (iterator != null) {
+        int docID;
+        while ((docID = iterator.nextDoc()) != DocIdSetIterator.NO_MORE_DOCS) {
+          // NOTE: there is no limit check on the docID
+          // when deleting by Term (unlike by Query)
+          // because on flush we apply all Term deletes to
+          // each segment.  So all Term deleting here is
+          // against prior segments:
+          if (segState.rld.delete(docID)) {
+            delCount++;
           }
         }
       }
     }
-
-    if (infoStream.isEnabled("BD")) {
-      infoStream.message("BD",
-                         String.format(Locale.ROOT, "applyTermDeletes took %.2f msec for %d segments and %d del terms; %d new deletions",
-                                       (System.nanoTime()-startNS)/1000000.,
-                                       segStates.length,
-                                       deleteTerms.size(),
-                                       delCount));
-    }
-
     return delCount;
   }
 
@@ -753,6 +719,7 @@ final class FrozenBufferedUpdates {
     private final TermsProvider provider;
     private String field;
     private TermsEnum termsEnum;
+    private Terms terms;
     private PostingsEnum postingsEnum;
     private final boolean sortedTerms;
     private BytesRef readerTerm;
@@ -780,7 +747,7 @@ final class FrozenBufferedUpdates {
       if (this.field == null || this.field.equals(field) == false) {
         this.field = field;
 
-        Terms terms = provider.terms(field);
+        terms = provider.terms(field);
         if (terms != null) {
           termsEnum = terms.iterator();
           if (sortedTerms) {
@@ -807,6 +774,10 @@ final class FrozenBufferedUpdates {
           } else if (cmp == 0) {
             return getDocs();
           } else if (cmp > 0) {
+            if (terms.mayContain(term) == false) {
+              // definitely absent: don't move the enum, readerTerm is still smaller than any later term
+              return null;
+            }
             TermsEnum.SeekStatus status = termsEnum.seekCeil(term);
             switch (status) {
               case FOUND:
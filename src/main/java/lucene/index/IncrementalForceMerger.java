@@ -0,0 +1,275 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package lucene.index;
+
+
+import lucene.util.InfoStream;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Force-merges an index in bounded steps, each of which merges a few of the
+ * smallest segments and then commits.  Unlike {@link IndexWriter#forceMerge},
+ * which loses all its work if the process stops half way, a restart only
+ * loses the step that was running: the target segment count is recorded in the
+ * commit user data (see {@link IndexWriter#setLiveCommitData}), and {@link #resume}
+ * picks up from the last committed step.
+ * <p>
+ * Each step writes at most about {@link #setMaxStepMB} bytes, so that the disk
+ * space held by merged-away segments is released at every commit, as long as the
+ * {@link IndexDeletionPolicy} does not keep older commits.  A step that would
+ * have to write more than {@link #setDiskBudgetMB} fails with an {@link
+ * IllegalStateException} instead.  The last steps of a merge down to few
+ * segments are necessarily large, since they rewrite most of the index.
+ * <p>
+ * Every step commits all pending changes of the writer.  Deleted documents are
+ * only reclaimed from the segments that get merged.
+ *
+ * @lucene.experimental
+ */
+public final class IncrementalForceMerger {
+
+  /** Commit user data key recording the target segment count of a force merge in progress. */
+  public static final String MAX_NUM_SEGMENTS_KEY = "incrementalForceMerge.maxNumSegments";
+
+  /** Commit user data key recording the number of steps of a force merge in progress. */
+  public static final String STEP_COUNT_KEY = "incrementalForceMerge.steps";
+
+  private static final String INFO_STREAM_COMPONENT = "IFM";
+
+  private final IndexWriter writer;
+  private final InfoStream infoStream;
+
+  private long maxStepBytes = 5*1024*1024*1024L;
+  private long diskBudgetBytes = Long.MAX_VALUE;
+  private int maxMergeAtOnce = 30;
+
+  /** Creates a merger that force-merges the index of the given writer. */
+  public IncrementalForceMerger(IndexWriter writer) {
+    this.writer = writer;
+    this.infoStream = writer.getConfig().getInfoStream();
+  }
+
+  /** Sets the number of bytes a step should write, which bounds the work that
+   *  is lost on restart.  A step merges at least two segments, even if that
+   *  writes more.  Default is 5 GB. */
+  public IncrementalForceMerger setMaxStepMB(double v) {
+    if (v <= 0) {
+      throw new IllegalArgumentException("maxStepMB must be > 0 (got " + v + ")");
+    }
+    v *= 1024 * 1024;
+    maxStepBytes = v > Long.MAX_VALUE ? Long.MAX_VALUE : (long) v;
+    return this;
+  }
+
+  /** Returns the current maxStepMB setting.
+   *
+   * @see #setMaxStepMB */
+  public double getMaxStepMB() {
+    return maxStepBytes / 1024. / 1024.;
+  }
+
+  /** Sets the max number of bytes a step may write.  Steps that would need to
+   *  write more fail.  Default is unbounded. */
+  public IncrementalForceMerger setDiskBudgetMB(double v) {
+    if (v <= 0) {
+      throw new IllegalArgumentException("diskBudgetMB must be > 0 (got " + v + ")");
+    }
+    v *= 1024 * 1024;
+    diskBudgetBytes = v > Long.MAX_VALUE ? Long.MAX_VALUE : (long) v;
+    return this;
+  }
+
+  /** Returns the current diskBudgetMB setting.
+   *
+   * @see #setDiskBudgetMB */
+  public double getDiskBudgetMB() {
+    return diskBudgetBytes == Long.MAX_VALUE ? Double.POSITIVE_INFINITY : diskBudgetBytes / 1024. / 1024.;
+  }
+
+  /** Sets the max number of segments a step merges.  Default is 30. */
+  public IncrementalForceMerger setMaxMergeAtOnce(int v) {
+    if (v < 2) {
+      throw new IllegalArgumentException("maxMergeAtOnce must be > 1 (got " + v + ")");
+    }
+    maxMergeAtOnce = v;
+    return this;
+  }
+
+  /** Returns the current maxMergeAtOnce setting.
+   *
+   * @see #setMaxMergeAtOnce */
+  public int getMaxMergeAtOnce() {
+    return maxMergeAtOnce;
+  }
+
+  /**
+   * Starts a force merge down to {@code maxNumSegments} segments, records it in
+   * a commit, and runs steps until the index has at most that many segments.
+   */
+  public void forceMerge(int maxNumSegments) throws IOException {
+    if (maxNumSegments < 1) {
+      throw new IllegalArgumentException("maxNumSegments must be >= 1; got " + maxNumSegments);
+    }
+    writer.flush();
+    final Map<String,String> userData = getLiveCommitData();
+    userData.put(MAX_NUM_SEGMENTS_KEY, Integer.toString(maxNumSegments));
+    userData.put(STEP_COUNT_KEY, "0");
+    writer.setLiveCommitData(userData.entrySet());
+    writer.commit();
+    message("start force merge to " + maxNumSegments + " segments");
+
+    while (step()) {
+    }
+  }
+
+  /**
+   * Resumes the force merge that is recorded in the last commit, if any, and runs
+   * steps until it is done.  Returns false if no force merge was in progress.
+   */
+  public boolean resume() throws IOException {
+    final int maxNumSegments = getPendingMaxNumSegments();
+    if (maxNumSegments == -1) {
+      return false;
+    }
+    message("resume force merge to " + maxNumSegments + " segments");
+    while (step()) {
+    }
+    return true;
+  }
+
+  /**
+   * Returns the target segment count of the force merge in progress, or -1 if
+   * there is none.
+   */
+  public int getPendingMaxNumSegments() {
+    final String value = getLiveCommitData().get(MAX_NUM_SEGMENTS_KEY);
+    return value == null ? -1 : Integer.parseInt(value);
+  }
+
+  /**
+   * Runs one step of the force merge in progress and commits it.  Returns true
+   * if more steps are needed.  Once the index has at most the target number of
+   * segments, this records that the force merge is done, commits and returns false.
+   */
+  public boolean step() throws IOException {
+    final int maxNumSegments = getPendingMaxNumSegments();
+    if (maxNumSegments == -1) {
+      throw new IllegalStateException("no force merge in progress");
+    }
+
+    while (true) {
+      final List<SegmentCommitInfo> infos;
+      final Set<SegmentCommitInfo> merging;
+      synchronized (writer) {
+        infos = new ArrayList<>(writer.listOfSegmentCommitInfos());
+        merging = new HashSet<>(writer.getMergingSegments());
+      }
+
+      if (infos.size() <= maxNumSegments) {
+        final Map<String,String> userData = getLiveCommitData();
+        userData.remove(MAX_NUM_SEGMENTS_KEY);
+        userData.remove(STEP_COUNT_KEY);
+        writer.setLiveCommitData(userData.entrySet());
+        writer.commit();
+        message("force merge done: " + infos.size() + " segments");
+        return false;
+      }
+
+      final List<SegmentCommitInfo> eligible = new ArrayList<>();
+      final Map<SegmentCommitInfo,Long> sizes = new HashMap<>();
+      for (SegmentCommitInfo info : infos) {
+        if (merging.contains(info) == false) {
+          eligible.add(info);
+          sizes.put(info, size(info));
+        }
+      }
+      if (eligible.size() < 2) {
+        // The other segments are merging; wait for them and try again:
+        message("wait for running merges");
+        writer.waitForMerges();
+        continue;
+      }
+      eligible.sort((a, b) -> Long.compare(sizes.get(a), sizes.get(b)));
+
+      // Merge the smallest segments, so that the work of earlier steps is reused:
+      final int maxSegments = Math.min(maxMergeAtOnce, infos.size() - maxNumSegments + 1);
+      final List<SegmentCommitInfo> candidate = new ArrayList<>();
+      long bytes = 0;
+      for (SegmentCommitInfo info : eligible) {
+        final long segBytes = sizes.get(info);
+        if (candidate.size() == maxSegments || (candidate.size() >= 2 && bytes + segBytes > maxStepBytes)) {
+          break;
+        }
+        candidate.add(info);
+        bytes += segBytes;
+      }
+
+      if (bytes > diskBudgetBytes) {
+        throw new IllegalStateException("next force merge step needs to write " + bytes / 1024 / 1024 +
+            " MB, which exceeds the disk budget of " + diskBudgetBytes / 1024 / 1024 + " MB");
+      }
+
+      final MergePolicy.OneMerge merge = new MergePolicy.OneMerge(candidate);
+      message("step: merge " + candidate.size() + " segments, " + bytes / 1024 / 1024 + " MB");
+      if (writer.mergeAndWait(merge) == false) {
+        // Segments changed under us, e.g. a merge started concurrently; try again:
+        continue;
+      }
+
+      final Map<String,String> userData = getLiveCommitData();
+      final String steps = userData.get(STEP_COUNT_KEY);
+      userData.put(STEP_COUNT_KEY, Long.toString(steps == null ? 1 : Long.parseLong(steps) + 1));
+      writer.setLiveCommitData(userData.entrySet());
+      writer.commit();
+      return true;
+    }
+  }
+
+  private long size(SegmentCommitInfo info) throws IOException {
+    final long byteSize = info.sizeInBytes();
+    final int maxDoc = info.info.maxDoc();
+    if (maxDoc <= 0) {
+      return byteSize;
+    }
+    final int delCount = writer.numDeletesToMerge(info);
+    return (long) (byteSize * (1.0 - (double) delCount / maxDoc));
+  }
+
+  private Map<String,String> getLiveCommitData() {
+    final Map<String,String> userData = new HashMap<>();
+    final Iterable<Map.Entry<String,String>> liveCommitData = writer.getLiveCommitData();
+    if (liveCommitData != null) {
+      for (Map.Entry<String,String> entry : liveCommitData) {
+        userData.put(entry.getKey(), entry.getValue());
+      }
+    }
+    return userData;
+  }
+
+  private void message(String message) {
+    if (infoStream.isEnabled(INFO_STREAM_COMPONENT)) {
+      infoStream.message(INFO_STREAM_COMPONENT, message);
+    }
+  }
+}
@@ -322,6 +322,23 @@ public abstract class IndexReader implements Closeable {
    *  #document(int)}.  If you want to load a subset, use
    *  {@link DocumentStoredFieldVisitor}.  */
   public abstract void document(int docID, StoredFieldVisitor visitor) throws IOException;
+
+  /** Expert: visits the fields of several stored documents: {@code visitors[i]}
+   *  visits document {@code docIDs[i]}.  Document IDs may come in any order.
+   *  Readers can make this much cheaper than calling {@link
+   *  #document(int, StoredFieldVisitor)} for each document, e.g. by decompressing
+   *  a block of documents only once for all the requested documents it holds,
+   *  which makes a difference when loading a page of hits.
+   *  The default implementation calls {@link #document(int, StoredFieldVisitor)}
+   *  for each document. */
+  public void documents(int[] docIDs, StoredFieldVisitor[] visitors) throws IOException {
+    if (docIDs.length != visitors.length) {
+      throw new IllegalArgumentException("docIDs and visitors must have the same length, got " + docIDs.length + " and " + visitors.length);
+    }
+    for (int i = 0; i < docIDs.length; ++i) {
+      document(docIDs[i], visitors[i]);
+    }
+  }
   
   /**
    * Returns the stored fields of the <code>n</code><sup>th</sup>
@@ -364,6 +381,33 @@ public abstract class IndexReader implements Closeable {
     return visitor.getDocument();
   }
 
+  /**
+   * Returns the stored fields of the given documents, in the same order.  This
+   * is sugar for {@link #documents(int[], StoredFieldVisitor[])} with a {@link
+   * DocumentStoredFieldVisitor} per document.  The same notes as for {@link
+   * #document(int)} apply.
+   */
+  public final Document[] documents(int[] docIDs) throws IOException {
+    return documents(docIDs, (Set<String>) null);
+  }
+
+  /**
+   * Like {@link #documents(int[])} but only loads the specified fields, or all
+   * fields if {@code fieldsToLoad} is null.
+   */
+  public final Document[] documents(int[] docIDs, Set<String> fieldsToLoad) throws IOException {
+    final DocumentStoredFieldVisitor[] visitors = new DocumentStoredFieldVisitor[docIDs.length];
+    for (int i = 0; i < visitors.length; ++i) {
+      visitors[i] = new DocumentStoredFieldVisitor(fieldsToLoad);
+    }
+    documents(docIDs, visitors);
+    final Document[] documents = new Document[docIDs.length];
+    for (int i = 0; i < documents.length; ++i) {
+      documents[i] = visitors[i].getDocument();
+    }
+    return documents;
+  }
+
   /** Returns true if any documents have been deleted. Implementers should
    *  consider overriding this method if {@link #maxDoc()} or {@link #numDocs()}
    *  are not constant-time operations. */
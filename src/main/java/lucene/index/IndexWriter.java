@@ -32,6 +32,7 @@ import java.io.Closeable;
 import java.io.IOException;
 import java.util.*;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
@@ -439,6 +440,7 @@ public class IndexWriter implements Closeable, TwoPhaseCommit, Accountable,
     // this method is called:
     readerPool.enableReaderPooling();
     DirectoryReader r = null;
+    List<MergePolicy.OneMerge> merges = Collections.emptyList();
     doBeforeFlush();
     boolean anyChanges = false;
     /*
@@ -469,6 +471,11 @@ public class IndexWriter implements Closeable, TwoPhaseCommit, Accountable,
           publishFlushedSegments(true);
           processEvents(false);
 
+          if (anyChanges) {
+            // only register them: we wait for them once the full flush is done
+            merges = registerRefreshMerges();
+          }
+
           if (applyAllDeletes) {
             applyAllDeletesAndUpdates();
           }
@@ -506,6 +513,20 @@ public class IndexWriter implements Closeable, TwoPhaseCommit, Accountable,
           }
         }
       }
+      if (merges.isEmpty() == false && waitForRefreshMerges(merges)) {
+        // reopen on the merged segments, without flushing again: segments that did not
+        // change share their pooled readers with the reader we just opened
+        final DirectoryReader merged;
+        synchronized (this) {
+          writeReaderPool(writeAllDeletes);
+          merged = StandardDirectoryReader.open(this, segmentInfos, applyAllDeletes, writeAllDeletes);
+        }
+        if (infoStream.isEnabled("IW")) {
+          infoStream.message("IW", "reopened on refresh merges: version=" + merged.getVersion() + " reader=" + merged);
+        }
+        r.close();
+        r = merged;
+      }
       anyChanges |= maybeMerge.getAndSet(false);
       if (anyChanges) {
         maybeMerge(config.getMergePolicy(), MergeTrigger.FULL_FLUSH, UNBOUNDED_MAX_MERGE_SEGMENTS);
@@ -529,6 +550,91 @@ public class IndexWriter implements Closeable, TwoPhaseCommit, Accountable,
     return r;
   }
 
+  /**
+   * Registers the merges that {@link MergePolicy#findFullFlushMerges} selects
+   * after the full flush of an NRT reader reopen, so that {@link
+   * #waitForRefreshMerges} can wait for them once the full flush is done.
+   */
+  private List<MergePolicy.OneMerge> registerRefreshMerges() throws IOException {
+    assert holdsFullFlushLock();
+    if (config.getMaxRefreshMergeWaitMillis() <= 0) {
+      return Collections.emptyList();
+    }
+
+    final List<MergePolicy.OneMerge> merges = new ArrayList<>();
+    synchronized (this) {
+      if (stopMerges || tragedy.get() != null) {
+        return Collections.emptyList();
+      }
+      final MergePolicy.MergeSpecification spec = config.getMergePolicy().findFullFlushMerges(MergeTrigger.GET_READER, segmentInfos, this);
+      if (spec != null) {
+        for (MergePolicy.OneMerge merge : spec.merges) {
+          if (registerMerge(merge)) {
+            merges.add(merge);
+          }
+        }
+      }
+    }
+    return merges;
+  }
+
+  /**
+   * Hands the given refresh merges to the merge scheduler, and waits up to {@link
+   * LiveIndexWriterConfig#getMaxRefreshMergeWaitMillis} for them to complete.
+   * This must not hold the full flush lock, so that flushes, commits and
+   * tragic event handling proceed while merges run.  The scheduler neither stalls
+   * nor runs merges on this thread for {@link MergeTrigger#GET_READER}; merges it
+   * leaves pending are not waited for.  Merges that are not done by the deadline
+   * keep running in the background.  Returns true if at least one of them
+   * completed, so that the reader should be reopened on the merged segments.
+   */
+  private boolean waitForRefreshMerges(List<MergePolicy.OneMerge> merges) throws IOException {
+    assert holdsFullFlushLock() == false;
+    assert Thread.holdsLock(this) == false;
+
+    final long maxWaitMillis = config.getMaxRefreshMergeWaitMillis();
+    final long startNS = System.nanoTime();
+    if (infoStream.isEnabled("IW")) {
+      infoStream.message("IW", "wait up to " + maxWaitMillis + " msec for " + merges.size() + " merges before opening NRT reader");
+    }
+    mergeScheduler.merge(this, MergeTrigger.GET_READER, true);
+
+    final long deadlineNS = startNS + TimeUnit.MILLISECONDS.toNanos(maxWaitMillis);
+    int pending = 0;
+    int completed = 0;
+    synchronized (this) {
+      while (true) {
+        pending = 0;
+        completed = 0;
+        for (MergePolicy.OneMerge merge : merges) {
+          if (runningMerges.contains(merge)) {
+            pending++;
+          } else if (pendingMerges.contains(merge)) {
+            // not started by the scheduler
+          } else if (merge.getException() == null && merge.isAborted() == false) {
+            completed++;
+          }
+        }
+        final long remainingNS = deadlineNS - System.nanoTime();
+        if (pending == 0 || remainingNS <= 0 || tragedy.get() != null) {
+          break;
+        }
+        try {
+          // mergeFinish notifies us; wait for at most 1 second in case we miss it:
+          wait(Math.max(1, Math.min(1000, TimeUnit.NANOSECONDS.toMillis(remainingNS))));
+        } catch (InterruptedException ie) {
+          throw new ThreadInterruptedException(ie);
+        }
+      }
+    }
+
+    if (infoStream.isEnabled("IW")) {
+      infoStream.message("IW", completed + " of " + merges.size() + " merges done after "
+          + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNS) + " msec");
+    }
+    return completed > 0 && tragedy.get() == null;
+  }
+
   @Override
   public final long ramBytesUsed() {
     ensureOpen();
@@ -2516,6 +2622,41 @@ public class IndexWriter implements Closeable, TwoPhaseCommit, Accountable,
     }
   }
 
+  /**
+   * Registers the given merge, hands it to the merge scheduler and waits for it
+   * to complete.  Returns false, without merging, if the merge conflicts with a
+   * registered merge or refers to segments that no longer exist.
+   */
+  final boolean mergeAndWait(MergePolicy.OneMerge merge) throws IOException {
+    synchronized (this) {
+      ensureOpen();
+      if (registerMerge(merge) == false) {
+        return false;
+      }
+    }
+
+    // We can't hold IW's lock when going into merge because it can lead to deadlock:
+    mergeScheduler.merge(this, MergeTrigger.EXPLICIT, true);
+
+    synchronized (this) {
+      while (pendingMerges.contains(merge) || runningMerges.contains(merge)) {
+        if (tragedy.get() != null) {
+          throw new IllegalStateException("this writer hit an unrecoverable error; cannot complete merge", tragedy.get());
+        }
+        doWait();
+      }
+    }
+
+    // If close is called while we are still running, throw an
+    // exception so the calling thread will know merging did not complete
+    ensureOpen();
+    final Throwable exc = merge.getException();
+    if (exc != null) {
+      throw new IOException("background merge hit exception: " + merge.segString(), exc);
+    }
+    return true;
+  }
+
   /**
    * Called whenever the SegmentInfos has been updated and
    * the index files referenced exist (correctly) in the
@@ -2940,7 +3081,7 @@ public class IndexWriter implements Closeable, TwoPhaseCommit, Accountable,
 
       SegmentMerger merger = new SegmentMerger(Arrays.asList(readers), info, infoStream, trackingDir,
                                                globalFieldNumberMap,
-                                               context);
+                                               context, Runnable::run);
 
       if (!merger.shouldMerge()) {
         return docWriter.deleteQueue.getNextSequenceNumber();
@@ -4411,7 +4552,7 @@ public class IndexWriter implements Closeable, TwoPhaseCommit, Accountable,
       final SegmentMerger merger = new SegmentMerger(mergeReaders,
                                                      merge.info.info, infoStream, dirWrapper,
                                                      globalFieldNumberMap,
-                                                     context);
+                                                     context, mergeScheduler.getIntraMergeExecutor(merge));
       merge.info.setSoftDelCount(Math.toIntExact(softDeleteCount.get()));
       merge.checkAborted();
 
@@ -34,6 +34,7 @@ import org.apache.lucene.util.SetOnce.AlreadySetException;
 import java.io.PrintStream;
 import java.util.Arrays;
 import java.util.EnumSet;
+import java.util.concurrent.ExecutorService;
 import java.util.stream.Collectors;
 
 /**
@@ -111,6 +112,11 @@ public final class IndexWriterConfig extends LiveIndexWriterConfig {
   /** Default value for whether calls to {@link IndexWriter#close()} include a commit. */
   public final static boolean DEFAULT_COMMIT_ON_CLOSE = true;
 
+  /** Default value for the max time an NRT reader reopen waits for merges of
+   *  just-flushed segments (set to <code>0</code>, which disables these merges).
+   *  Change using {@link #setMaxRefreshMergeWaitMillis(long)}. */
+  public final static long DEFAULT_MAX_REFRESH_MERGE_WAIT_MILLIS = 0;
+
   // indicates whether this config instance is already attached to a writer.
   // not final so that it can be cloned properly.
   private SetOnce<IndexWriter> writer = new SetOnce<>();
@@ -516,6 +522,16 @@ public final class IndexWriterConfig extends LiveIndexWriterConfig {
     return (IndexWriterConfig) super.setCheckPendingFlushUpdate(checkPendingFlushOnUpdate);
   }
 
+  @Override
+  public IndexWriterConfig setApplyDeletesExecutor(ExecutorService applyDeletesExecutor) {
+    return (IndexWriterConfig) super.setApplyDeletesExecutor(applyDeletesExecutor);
+  }
+
+  @Override
+  public IndexWriterConfig setMaxRefreshMergeWaitMillis(long maxRefreshMergeWaitMillis) {
+    return (IndexWriterConfig) super.setMaxRefreshMergeWaitMillis(maxRefreshMergeWaitMillis);
+  }
+
   /**
    * Sets the soft deletes field. A soft delete field in lucene is a doc-values field that marks a document as soft-deleted if a
    * document has at least one value in that field. If a document is marked as soft-deleted the document is treated as
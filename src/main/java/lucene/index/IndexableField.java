@@ -55,6 +55,22 @@ public interface IndexableField {
    */
   public TokenStream tokenStream(Analyzer analyzer, TokenStream reuse);
 
+  /**
+   * Expert: returns the already analyzed tokens of this field, or null if the
+   * field must be inverted through {@link #tokenStream(Analyzer, TokenStream)}.
+   * When non-null, the indexing chain consumes these tokens directly and never
+   * calls {@link #tokenStream(Analyzer, TokenStream)}.
+   *
+   * @param reuse an empty instance that the caller owns and reuses across
+   *              documents; fields that compute their tokens should fill and
+   *              return it rather than allocating a new instance
+   *
+   * @lucene.experimental
+   */
+  default PreAnalyzedTokens preAnalyzedTokens(PreAnalyzedTokens reuse) {
+    return null;
+  }
+
   /** Non-null if this field has a binary value */
   public BytesRef binaryValue();
 
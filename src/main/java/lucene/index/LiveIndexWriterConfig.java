@@ -30,6 +30,7 @@ import org.apache.lucene.index.IndexWriterConfig.OpenMode;
 
 import java.util.Collections;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
 
 /**
  * Holds all the configuration used by {@link IndexWriter} with few setters for
@@ -113,6 +114,12 @@ public class LiveIndexWriterConfig {
   /** soft deletes field */
   protected String softDeletesField = null;
 
+  /** executor to resolve buffered deletes and updates concurrently across segments, or null */
+  protected volatile ExecutorService applyDeletesExecutor = null;
+
+  /** max time in milliseconds an NRT reader reopen waits for merges of just-flushed segments */
+  protected volatile long maxRefreshMergeWaitMillis = IndexWriterConfig.DEFAULT_MAX_REFRESH_MERGE_WAIT_MILLIS;
+
   // used by IndexWriterConfig
   LiveIndexWriterConfig(Analyzer analyzer) {
     this.analyzer = analyzer;
@@ -467,6 +474,68 @@ public class LiveIndexWriterConfig {
     return this;
   }
 
+  /**
+   * Expert: sets the {@link ExecutorService} used to resolve buffered deletes and
+   * doc values updates against all segments of the index concurrently, one task per
+   * segment.  With many segments and large batches of deletes or updates (e.g.
+   * updates by ID), this keeps {@link DirectoryReader#open(IndexWriter)} latency flat
+   * as the update rate grows.  {@link IndexWriter} will not shut down this executor.
+   * Default is <code>null</code>, which resolves segments one after another on the
+   * thread that applies the deletes.
+   *
+   * @lucene.experimental
+   */
+  public LiveIndexWriterConfig setApplyDeletesExecutor(ExecutorService applyDeletesExecutor) {
+    this.applyDeletesExecutor = applyDeletesExecutor;
+    return this;
+  }
+
+  /**
+   * Returns the {@link ExecutorService} used to resolve buffered deletes and updates
+   * concurrently, or <code>null</code> if they are resolved on the calling thread.
+   *
+   * @see #setApplyDeletesExecutor(ExecutorService)
+   * @lucene.experimental
+   */
+  public ExecutorService getApplyDeletesExecutor() {
+    return applyDeletesExecutor;
+  }
+
+  /**
+   * Expert: sets the max time in milliseconds that opening a near-real-time reader
+   * (e.g. {@link DirectoryReader#open(IndexWriter)}) waits for the merges that
+   * {@link MergePolicy#findFullFlushMerges} selects right after the full flush.
+   * When frequent reopens produce many tiny segments, merging them before the
+   * reader is returned means searchers see fewer segments, in exchange for a reopen
+   * latency that is bounded by this value.  The wait happens after the full flush,
+   * so it does not block other flushes or commits; if any of the merges complete,
+   * the reader is reopened on the merged segments, without flushing again.  Merges
+   * that take longer keep running in the background.  Only merge schedulers that run
+   * merges on other threads, e.g. {@link ConcurrentMergeScheduler}, start these merges
+   * right away; {@link SerialMergeScheduler} runs them after the reader is opened.
+   * Default is <code>0</code>, which disables these merges.
+   *
+   * @lucene.experimental
+   */
+  public LiveIndexWriterConfig setMaxRefreshMergeWaitMillis(long maxRefreshMergeWaitMillis) {
+    if (maxRefreshMergeWaitMillis < 0) {
+      throw new IllegalArgumentException("maxRefreshMergeWaitMillis must be >= 0 (got " + maxRefreshMergeWaitMillis + ")");
+    }
+    this.maxRefreshMergeWaitMillis = maxRefreshMergeWaitMillis;
+    return this;
+  }
+
+  /**
+   * Returns the max time in milliseconds that opening a near-real-time reader waits
+   * for merges of just-flushed segments.
+   *
+   * @see #setMaxRefreshMergeWaitMillis(long)
+   * @lucene.experimental
+   */
+  public long getMaxRefreshMergeWaitMillis() {
+    return maxRefreshMergeWaitMillis;
+  }
+
   /**
    * Returns the soft deletes field or <code>null</code> if soft-deletes are disabled.
    * See {@link IndexWriterConfig#setSoftDeletesField(String)} for details.
@@ -498,6 +567,8 @@ public class LiveIndexWriterConfig {
     sb.append("commitOnClose=").append(getCommitOnClose()).append("\n");
     sb.append("indexSort=").append(getIndexSort()).append("\n");
     sb.append("checkPendingFlushOnUpdate=").append(isCheckPendingFlushOnUpdate()).append("\n");
+    sb.append("applyDeletesExecutor=").append(getApplyDeletesExecutor()).append("\n");
+    sb.append("maxRefreshMergeWaitMillis=").append(getMaxRefreshMergeWaitMillis()).append("\n");
     sb.append("softDeletesField=").append(getSoftDeletesField()).append("\n");
     return sb.toString();
   }
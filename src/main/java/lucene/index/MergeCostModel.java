@@ -0,0 +1,112 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package lucene.index;
+
+
+import java.util.List;
+
+/**
+ * Estimates what a merge buys searches and what it costs to write, so that a
+ * merge policy can pick the merges with the highest search-time benefit per
+ * byte written.  The benefit of a merge is the per-query search cost of its
+ * source segments minus the search cost of the segment it produces; costs are
+ * in arbitrary units but must be consistent across segments.
+ *
+ * @see TieredMergePolicy#setMergeCostModel
+ * @see DefaultMergeCostModel
+ * @lucene.experimental
+ */
+public abstract class MergeCostModel {
+
+  /** Sole constructor. (For invocation by subclass
+   *  constructors, typically implicit.) */
+  protected MergeCostModel() {
+  }
+
+  /** What a cost model knows about one segment. */
+  public static final class SegmentStats {
+    /** Name of the segment. */
+    public final String name;
+    /** Number of documents in the segment, including deleted ones. */
+    public final int maxDoc;
+    /** Number of deleted documents in the segment. */
+    public final int delCount;
+    /** Size of the segment on disk, including deleted documents. */
+    public final long sizeInBytes;
+
+    /** Sole constructor. */
+    public SegmentStats(String name, int maxDoc, int delCount, long sizeInBytes) {
+      if (maxDoc < 0 || delCount < 0 || delCount > maxDoc) {
+        throw new IllegalArgumentException("invalid doc counts: maxDoc=" + maxDoc + " delCount=" + delCount);
+      }
+      if (sizeInBytes < 0) {
+        throw new IllegalArgumentException("sizeInBytes must be >= 0 (got " + sizeInBytes + ")");
+      }
+      this.name = name;
+      this.maxDoc = maxDoc;
+      this.delCount = delCount;
+      this.sizeInBytes = sizeInBytes;
+    }
+
+    /** Returns the number of bytes a merge of this segment writes, ie. the
+     *  size of the segment pro-rated by its live documents. */
+    public long liveSizeInBytes() {
+      if (maxDoc == 0) {
+        return 0;
+      }
+      return (long) (sizeInBytes * (1.0 - (double) delCount / maxDoc));
+    }
+
+    @Override
+    public String toString() {
+      return name + "(maxDoc=" + maxDoc + " delCount=" + delCount + " sizeInBytes=" + sizeInBytes + ")";
+    }
+  }
+
+  /** Returns the cost that an average query pays for searching the given segment. */
+  public abstract double searchCost(SegmentStats segment);
+
+  /** Returns the cost that an average query would pay for searching the segment
+   *  that merging the given segments produces. */
+  public abstract double mergedSearchCost(List<SegmentStats> segments);
+
+  /** Returns the cost of writing the given number of bytes. */
+  public abstract double writeCost(long bytes);
+
+  /**
+   * Returns how much searches gain from merging the given segments, per unit of
+   * write cost, or {@code 0} if the merge does not make searches cheaper.
+   * Higher is better.
+   */
+  public double mergeValue(List<SegmentStats> segments) {
+    double before = 0;
+    long bytes = 0;
+    for (SegmentStats segment : segments) {
+      before += searchCost(segment);
+      bytes += segment.liveSizeInBytes();
+    }
+    final double benefit = before - mergedSearchCost(segments);
+    if (benefit <= 0) {
+      return 0;
+    }
+    final double cost = writeCost(bytes);
+    if (cost <= 0) {
+      return Double.POSITIVE_INFINITY;
+    }
+    return benefit / cost;
+  }
+}
@@ -93,8 +93,10 @@ public abstract class MergePolicy {
 
     /**
      * This field is for sanity-check purposes only. Only the same thread that invoked
-     * {@link OneMerge#mergeInit()} is permitted to be calling 
-     * {@link #pauseNanos}. This is always verified at runtime. 
+     * {@link OneMerge#mergeInit()}, or threads it hands parts of the merge to via
+     * {@link MergeScheduler#getIntraMergeExecutor}, are permitted to be calling
+     * {@link #pauseNanos}. Since the latter are not known up front, the calling thread
+     * is not verified; only that the merge has started (ie. this field is set) is. 
      */
     private Thread owner;
 
@@ -138,10 +140,9 @@ public abstract class MergePolicy {
      *      condition 
      */
     public void pauseNanos(long pauseNanos, PauseReason reason, BooleanSupplier condition) throws InterruptedException {
-      if (Thread.currentThread() != owner) {
-        throw new RuntimeException("Only the merge owner thread can call pauseNanos(). This thread: "
-            + Thread.currentThread().getName() + ", owner thread: "
-            + owner);
+      if (owner == null) {
+        throw new RuntimeException("pauseNanos() can only be called once the merge started. This thread: "
+            + Thread.currentThread().getName());
       }
 
       long start = System.nanoTime();
@@ -522,6 +523,28 @@ public abstract class MergePolicy {
   public abstract MergeSpecification findForcedDeletesMerges(
       SegmentInfos segmentInfos, MergeContext mergeContext) throws IOException;
 
+  /**
+   * Expert: determine which merges, if any, {@link IndexWriter} should wait for
+   * right after a full flush, before it opens a near-real-time reader.  This is
+   * used to merge away the small segments that frequent reopens produce, so that
+   * the reader does not pay per-segment overhead for them.  {@link IndexWriter}
+   * only calls this method if {@link IndexWriterConfig#setMaxRefreshMergeWaitMillis}
+   * is greater than 0, and waits at most that long for the returned merges: a merge
+   * that takes longer completes in the background and is only visible to a later
+   * reader.  Merges should therefore be small, and only select segments that are not
+   * merging yet.  This call is always synchronized on the {@link IndexWriter}
+   * instance.  The default implementation returns <code>null</code>.
+   *
+   * @param mergeTrigger the event that triggered the merge, currently always {@link MergeTrigger#GET_READER}
+   * @param segmentInfos the total set of segments in the index, including those that were just flushed
+   * @param mergeContext the IndexWriter to find the merges on
+   * @lucene.experimental
+   */
+  public MergeSpecification findFullFlushMerges(MergeTrigger mergeTrigger, SegmentInfos segmentInfos, MergeContext mergeContext)
+      throws IOException {
+    return null;
+  }
+
   /**
    * Returns true if a new segment (regardless of its origin) should use the
    * compound file format. The default implementation returns <code>true</code>
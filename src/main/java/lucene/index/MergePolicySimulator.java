@@ -0,0 +1,387 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package lucene.index;
+
+
+import lucene.codecs.Codec;
+import lucene.store.ByteBuffersDirectory;
+import lucene.store.Directory;
+import lucene.store.FilterDirectory;
+import lucene.util.InfoStream;
+import lucene.util.PrintStreamInfoStream;
+import lucene.util.StringHelper;
+import lucene.util.SuppressForbidden;
+import lucene.util.Version;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Replays the segment flushes recorded in an {@link IndexWriter} {@link InfoStream}
+ * log against a {@link MergePolicy}, to compare merge policies offline.  Merges are
+ * applied instantly, so the simulation measures the merge decisions only: how many
+ * bytes get written, how many segments searches see along the way, and what
+ * searches cost according to a {@link MergeCostModel}.
+ * <p>
+ * Only flushes are replayed; deletes that are applied to existing segments after
+ * they were flushed are not visible in the log and are ignored.
+ * <p>
+ * From the command line:
+ * <pre>
+ *  java -cp lucene-core.jar lucene.index.MergePolicySimulator infoStream.log
+ * </pre>
+ *
+ * @lucene.experimental
+ */
+public final class MergePolicySimulator {
+
+  private static final Pattern THREAD = Pattern.compile("; ([^\\]]*)\\]: ");
+  private static final Pattern FLUSH_POSTINGS = Pattern.compile("flush postings as segment (\\S+) numDocs=(\\d+)");
+  private static final Pattern DELETED_DOCS = Pattern.compile("new segment has (\\d+) deleted docs");
+  private static final Pattern FLUSHED = Pattern.compile("flushed: segment=(\\S+) .*newFlushedSize=([0-9.,]+) MB");
+
+  /** Bound on the merges a policy may return for a single flush, to detect policies
+   *  that keep returning merges. */
+  private static final int MAX_MERGE_ROUNDS_PER_FLUSH = 1000;
+
+  /** A segment flush, as recorded in an {@link InfoStream} log. */
+  public static final class Flush {
+    /** Name of the flushed segment. */
+    public final String name;
+    /** Number of documents of the flushed segment. */
+    public final int maxDoc;
+    /** Number of documents that were deleted while the segment was flushed. */
+    public final int delCount;
+    /** Size of the flushed segment. */
+    public final long sizeInBytes;
+
+    /** Sole constructor. */
+    public Flush(String name, int maxDoc, int delCount, long sizeInBytes) {
+      this.name = name;
+      this.maxDoc = maxDoc;
+      this.delCount = delCount;
+      this.sizeInBytes = sizeInBytes;
+    }
+
+    @Override
+    public String toString() {
+      return name + "(maxDoc=" + maxDoc + " delCount=" + delCount + " sizeInBytes=" + sizeInBytes + ")";
+    }
+  }
+
+  /** Outcome of replaying flushes against a merge policy. */
+  public static final class Result {
+    /** Number of replayed flushes. */
+    public final int flushCount;
+    /** Number of merges the policy returned. */
+    public final int mergeCount;
+    /** Bytes written by flushes. */
+    public final long flushedBytes;
+    /** Bytes written by merges. */
+    public final long mergedBytes;
+    /** Number of segments after each flush and its merges, averaged over flushes. */
+    public final double avgSegmentCount;
+    /** Max number of segments after a flush and its merges. */
+    public final int maxSegmentCount;
+    /** Per-query search cost after each flush and its merges, averaged over flushes. */
+    public final double avgSearchCost;
+    /** Number of segments at the end of the replay. */
+    public final int finalSegmentCount;
+
+    Result(int flushCount, int mergeCount, long flushedBytes, long mergedBytes,
+           double avgSegmentCount, int maxSegmentCount, double avgSearchCost, int finalSegmentCount) {
+      this.flushCount = flushCount;
+      this.mergeCount = mergeCount;
+      this.flushedBytes = flushedBytes;
+      this.mergedBytes = mergedBytes;
+      this.avgSegmentCount = avgSegmentCount;
+      this.maxSegmentCount = maxSegmentCount;
+      this.avgSearchCost = avgSearchCost;
+      this.finalSegmentCount = finalSegmentCount;
+    }
+
+    /** Returns the total bytes written divided by the bytes flushed. */
+    public double writeAmplification() {
+      return flushedBytes == 0 ? 0 : (double) (flushedBytes + mergedBytes) / flushedBytes;
+    }
+
+    @Override
+    public String toString() {
+      return String.format(Locale.ROOT,
+          "flushes=%d merges=%d flushedMB=%.1f mergedMB=%.1f writeAmplification=%.2f avgSegments=%.1f maxSegments=%d finalSegments=%d avgSearchCost=%.3f",
+          flushCount, mergeCount, flushedBytes/1024./1024., mergedBytes/1024./1024., writeAmplification(),
+          avgSegmentCount, maxSegmentCount, finalSegmentCount, avgSearchCost);
+    }
+  }
+
+  /** Reads the flushes recorded in the given {@link InfoStream} log file. */
+  public static List<Flush> parse(Path path) throws IOException {
+    try (BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+      return parse(reader);
+    }
+  }
+
+  /**
+   * Reads the flushes recorded in an {@link InfoStream} log, as written by
+   * {@link PrintStreamInfoStream} with the {@code DWPT} component
+   * enabled.  Lines of concurrent flushes are told apart by thread name.
+   */
+  public static List<Flush> parse(BufferedReader reader) throws IOException {
+    final List<Flush> flushes = new ArrayList<>();
+    final Map<String,Integer> numDocs = new HashMap<>();
+    final Map<String,Integer> delCounts = new HashMap<>();
+    final Map<String,String> segmentByThread = new HashMap<>();
+
+    String line;
+    while ((line = reader.readLine()) != null) {
+      if (line.contains("DWPT") == false) {
+        continue;
+      }
+      final Matcher thread = THREAD.matcher(line);
+      final String threadName = thread.find() ? thread.group(1) : "";
+
+      Matcher m = FLUSH_POSTINGS.matcher(line);
+      if (m.find()) {
+        numDocs.put(m.group(1), Integer.parseInt(m.group(2)));
+        segmentByThread.put(threadName, m.group(1));
+        continue;
+      }
+      m = DELETED_DOCS.matcher(line);
+      if (m.find()) {
+        final String segment = segmentByThread.get(threadName);
+        if (segment != null) {
+          delCounts.put(segment, Integer.parseInt(m.group(1)));
+        }
+        continue;
+      }
+      m = FLUSHED.matcher(line);
+      if (m.find()) {
+        final String segment = m.group(1);
+        final Integer maxDoc = numDocs.remove(segment);
+        final Integer delCount = delCounts.remove(segment);
+        if (maxDoc == null) {
+          // the start of this flush is not in the log
+          continue;
+        }
+        final double sizeMB = Double.parseDouble(m.group(2).replace(",", ""));
+        flushes.add(new Flush(segment, maxDoc, delCount == null ? 0 : Math.min(delCount, maxDoc), (long) (sizeMB * 1024 * 1024)));
+      }
+    }
+    return flushes;
+  }
+
+  private final MergeCostModel costModel;
+  private final InfoStream infoStream;
+
+  /** Creates a simulator that measures search cost with a {@link DefaultMergeCostModel}. */
+  public MergePolicySimulator() {
+    this(new DefaultMergeCostModel(), InfoStream.NO_OUTPUT);
+  }
+
+  /** Creates a simulator that measures search cost with the given model and passes
+   *  the given {@link InfoStream} to merge policies. */
+  public MergePolicySimulator(MergeCostModel costModel, InfoStream infoStream) {
+    if (costModel == null) {
+      throw new NullPointerException("costModel must not be null");
+    }
+    if (infoStream == null) {
+      throw new NullPointerException("infoStream must not be null");
+    }
+    this.costModel = costModel;
+    this.infoStream = infoStream;
+  }
+
+  /** Replays the given flushes against the given merge policy. */
+  public Result simulate(List<Flush> flushes, MergePolicy policy) throws IOException {
+    return new Simulation(policy).run(flushes);
+  }
+
+  private class Simulation implements MergePolicy.MergeContext {
+    private final MergePolicy policy;
+    private final Map<String,Long> fileLengths = new HashMap<>();
+    private final Directory dir = new FilterDirectory(new ByteBuffersDirectory()) {
+      @Override
+      public long fileLength(String name) throws IOException {
+        final Long length = fileLengths.get(name);
+        if (length == null) {
+          throw new NoSuchFileException(name);
+        }
+        return length;
+      }
+    };
+    private final Codec codec = Codec.getDefault();
+    private final SegmentInfos infos = new SegmentInfos(Version.LATEST.major);
+    private long counter;
+
+    private int mergeCount;
+    private long mergedBytes;
+
+    Simulation(MergePolicy policy) {
+      this.policy = policy;
+    }
+
+    Result run(List<Flush> flushes) throws IOException {
+      long flushedBytes = 0;
+      long totalSegmentCount = 0;
+      int maxSegmentCount = 0;
+      double totalSearchCost = 0;
+
+      for (Flush flush : flushes) {
+        infos.add(newSegment(flush.maxDoc, flush.delCount, flush.sizeInBytes));
+        flushedBytes += flush.sizeInBytes;
+        maybeMerge(MergeTrigger.SEGMENT_FLUSH);
+
+        totalSegmentCount += infos.size();
+        maxSegmentCount = Math.max(maxSegmentCount, infos.size());
+        for (SegmentCommitInfo info : infos) {
+          totalSearchCost += costModel.searchCost(stats(info));
+        }
+      }
+
+      final int flushCount = flushes.size();
+      return new Result(flushCount, mergeCount, flushedBytes, mergedBytes,
+          flushCount == 0 ? 0 : (double) totalSegmentCount / flushCount, maxSegmentCount,
+          flushCount == 0 ? 0 : totalSearchCost / flushCount, infos.size());
+    }
+
+    private void maybeMerge(MergeTrigger trigger) throws IOException {
+      for (int round = 0; round < MAX_MERGE_ROUNDS_PER_FLUSH; round++) {
+        final MergePolicy.MergeSpecification spec = policy.findMerges(trigger, infos, this);
+        if (spec == null || spec.merges.isEmpty()) {
+          return;
+        }
+        for (MergePolicy.OneMerge merge : spec.merges) {
+          merge(merge.segments);
+        }
+        // Just like IndexWriter, ask for more merges once merges finished:
+        trigger = MergeTrigger.MERGE_FINISHED;
+      }
+      throw new IllegalStateException("merge policy " + policy + " returned merges " + MAX_MERGE_ROUNDS_PER_FLUSH + " times in a row");
+    }
+
+    private void merge(List<SegmentCommitInfo> segments) throws IOException {
+      int maxDoc = 0;
+      long bytes = 0;
+      for (SegmentCommitInfo info : segments) {
+        if (infos.remove(info) == false) {
+          throw new IllegalStateException("merge policy " + policy + " returned a merge of segment " + info.info.name + " which is not in the index");
+        }
+        final MergeCostModel.SegmentStats stats = stats(info);
+        maxDoc += stats.maxDoc - stats.delCount;
+        bytes += stats.liveSizeInBytes();
+      }
+      mergeCount++;
+      mergedBytes += bytes;
+      if (maxDoc > 0) {
+        infos.add(newSegment(maxDoc, 0, bytes));
+      }
+    }
+
+    private SegmentCommitInfo newSegment(int maxDoc, int delCount, long sizeInBytes) {
+      final String name = "_" + Long.toString(counter++, Character.MAX_RADIX);
+      final String fileName = IndexFileNames.segmentFileName(name, "", "sim");
+      fileLengths.put(fileName, sizeInBytes);
+      final SegmentInfo si = new SegmentInfo(dir, Version.LATEST, Version.LATEST, name, maxDoc, false, codec,
+          Collections.emptyMap(), StringHelper.randomId(), new HashMap<>(), null);
+      si.setFiles(Collections.singleton(fileName));
+      return new SegmentCommitInfo(si, delCount, 0, -1, -1, -1);
+    }
+
+    private MergeCostModel.SegmentStats stats(SegmentCommitInfo info) throws IOException {
+      return new MergeCostModel.SegmentStats(info.info.name, info.info.maxDoc(), info.getDelCount(), info.sizeInBytes());
+    }
+
+    @Override
+    public int numDeletesToMerge(SegmentCommitInfo info) {
+      return info.getDelCount();
+    }
+
+    @Override
+    public int numDeletedDocs(SegmentCommitInfo info) {
+      return info.getDelCount();
+    }
+
+    @Override
+    public InfoStream getInfoStream() {
+      return infoStream;
+    }
+
+    @Override
+    public Set<SegmentCommitInfo> getMergingSegments() {
+      // merges complete instantly
+      return Collections.emptySet();
+    }
+  }
+
+  @SuppressForbidden(reason = "System.out required: command line tool")
+  private static void printUsage() {
+    System.err.println("Replays the flushes recorded in an IndexWriter infoStream log against several merge policies.");
+    System.err.println("Usage:");
+    System.err.println("  java " + MergePolicySimulator.class.getName() + " [-verbose] infoStreamLog");
+    System.exit(1);
+  }
+
+  /** Main method to run {code MergePolicySimulator} from the
+   *  command-line.  It compares the default {@link TieredMergePolicy}, a
+   *  {@link TieredMergePolicy} that uses a {@link DefaultMergeCostModel} and
+   *  a {@link LogByteSizeMergePolicy}. */
+  @SuppressForbidden(reason = "System.out required: command line tool")
+  public static void main(String[] args) throws IOException {
+    String path = null;
+    InfoStream infoStream = InfoStream.NO_OUTPUT;
+    for (String arg : args) {
+      if ("-verbose".equals(arg)) {
+        infoStream = new PrintStreamInfoStream(System.out);
+      } else if (path == null) {
+        path = arg;
+      } else {
+        printUsage();
+      }
+    }
+    if (path == null) {
+      printUsage();
+    }
+
+    final List<Flush> flushes = parse(Paths.get(path));
+    System.out.println("Replaying " + flushes.size() + " flushes from " + path);
+
+    final MergeCostModel costModel = new DefaultMergeCostModel();
+    final MergePolicySimulator simulator = new MergePolicySimulator(costModel, infoStream);
+    final List<MergePolicy> policies = new ArrayList<>();
+    policies.add(new TieredMergePolicy());
+    policies.add(new TieredMergePolicy().setMergeCostModel(costModel));
+    policies.add(new LogByteSizeMergePolicy());
+    for (MergePolicy policy : policies) {
+      System.out.println(policy);
+      System.out.println("  " + simulator.simulate(flushes, policy));
+    }
+  }
+}
@@ -0,0 +1,420 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package lucene.index;
+
+
+import lucene.store.AlreadyClosedException;
+import lucene.util.NamedThreadFactory;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs the merges of any number of {@link IndexWriter}s, each configured with
+ * its own {@link PooledMergeScheduler}, as tasks on a shared {@link Executor}.
+ * <p>
+ * At most {@code maxRunningMerges} merges run at once across all writers.
+ * Pending merges are started smallest first.  When all slots are taken and a
+ * merge is submitted that is smaller than the largest running merge, the
+ * latter is paused (its writes block in {@link MergeRateLimiter}, which are
+ * its preemption points) and the new merge takes its slot; paused merges
+ * resume, smallest first, as slots free up.  At most {@code maxRunningMerges}
+ * merges are paused at once, so the executor must be able to run twice as
+ * many tasks concurrently: a thread pool of that size, or an executor that
+ * starts a (virtual) thread per task.
+ * <p>
+ * The pool also enforces a node-wide {@link #setMaxMBPerSec write rate} for
+ * merges: the budget is split among running merges in proportion to the
+ * {@link PooledMergeScheduler#setPriority priority} of their writer times
+ * its backlog (its number of unfinished merges), so that writers that fall
+ * behind catch up first.  Current allocations and queue depths are exposed
+ * by the getters of this class and of {@link PooledMergeScheduler}.
+ * <p>
+ * A pool is typically created once per JVM and shared by all writers.  It is
+ * not closed by writers: the application closes it once all writers that use
+ * it are closed.
+ *
+ * @lucene.experimental
+ */
+public class MergePool implements Closeable {
+
+  /** Merges below this size are never paused to let smaller merges run: they
+   *  would likely finish before the smaller merge. */
+  private static final long MIN_PREEMPTED_MERGE_BYTES = 50L * 1024 * 1024;
+
+  private final Executor executor;
+  private final ExecutorService ownedExecutor;
+  private final int maxRunningMerges;
+
+  /** Merges waiting to be started, smallest first. */
+  private final PriorityQueue<MergeTask> pending = new PriorityQueue<>(
+      Comparator.comparingLong((MergeTask t) -> t.merge.estimatedMergeBytes).thenComparingLong(t -> t.seqNo));
+
+  /** Started merges, paused or not. */
+  private final List<MergeTask> started = new ArrayList<>();
+
+  /** Merges that the executor rejected, to be failed once the lock is released. */
+  private final List<MergeTask> rejected = new ArrayList<>();
+
+  private double maxMBPerSec = Double.POSITIVE_INFINITY;
+  private long seqNo;
+  private boolean closed;
+
+  /**
+   * Creates a pool that runs merges with the given executor.
+   * @param executor runs merges; it must be able to run {@code 2 * maxRunningMerges} tasks concurrently
+   * @param maxRunningMerges max number of merges that run, not paused, at the same time
+   */
+  public MergePool(Executor executor, int maxRunningMerges) {
+    this(executor, null, maxRunningMerges);
+  }
+
+  /**
+   * Creates a pool with its own daemon threads, which are stopped when the
+   * pool is {@link #close() closed}.
+   * @param maxRunningMerges max number of merges that run, not paused, at the same time
+   */
+  public MergePool(int maxRunningMerges) {
+    this(null, newThreadPool(maxRunningMerges), maxRunningMerges);
+  }
+
+  private MergePool(Executor executor, ExecutorService ownedExecutor, int maxRunningMerges) {
+    if (maxRunningMerges < 1) {
+      throw new IllegalArgumentException("maxRunningMerges should be at least 1; got: " + maxRunningMerges);
+    }
+    if (executor == null && ownedExecutor == null) {
+      throw new NullPointerException("executor must not be null");
+    }
+    this.executor = executor == null ? ownedExecutor : executor;
+    this.ownedExecutor = ownedExecutor;
+    this.maxRunningMerges = maxRunningMerges;
+  }
+
+  private static ExecutorService newThreadPool(int maxRunningMerges) {
+    if (maxRunningMerges < 1) {
+      throw new IllegalArgumentException("maxRunningMerges should be at least 1; got: " + maxRunningMerges);
+    }
+    final int numThreads = 2 * maxRunningMerges;
+    final ThreadPoolExecutor pool = new ThreadPoolExecutor(numThreads, numThreads, 60, TimeUnit.SECONDS,
+        new LinkedBlockingQueue<>(), new NamedThreadFactory("Lucene Merge Pool"));
+    pool.allowCoreThreadTimeOut(true);
+    return pool;
+  }
+
+  /** Returns the max number of merges that run, not paused, at the same time. */
+  public int getMaxRunningMerges() {
+    return maxRunningMerges;
+  }
+
+  /**
+   * Sets the total rate at which all merges of this pool may write, in MB per
+   * second, or {@link Double#POSITIVE_INFINITY} (the default) for no limit.
+   */
+  public synchronized void setMaxMBPerSec(double maxMBPerSec) {
+    if (Double.isNaN(maxMBPerSec) || maxMBPerSec <= 0.0) {
+      throw new IllegalArgumentException("maxMBPerSec must be positive; got: " + maxMBPerSec);
+    }
+    this.maxMBPerSec = maxMBPerSec;
+    allocate();
+  }
+
+  /** See {@link #setMaxMBPerSec}. */
+  public synchronized double getMaxMBPerSec() {
+    return maxMBPerSec;
+  }
+
+  /** Returns the sum of the write rates currently allocated to running merges,
+   *  in MB per second. */
+  public synchronized double getAllocatedMBPerSec() {
+    double sum = 0;
+    for (MergeTask task : started) {
+      sum += task.rateLimiter.getMBPerSec();
+    }
+    return sum;
+  }
+
+  /** Returns the number of merges that are waiting to be started. */
+  public synchronized int getPendingMergeCount() {
+    return pending.size();
+  }
+
+  /** Returns the number of merges that are started and not paused. */
+  public synchronized int getRunningMergeCount() {
+    int count = 0;
+    for (MergeTask task : started) {
+      if (task.paused == false) {
+        count++;
+      }
+    }
+    return count;
+  }
+
+  /** Returns the number of merges that are paused to let smaller merges run. */
+  public synchronized int getPausedMergeCount() {
+    return started.size() - getRunningMergeCount();
+  }
+
+  synchronized int getPendingMergeCount(PooledMergeScheduler scheduler) {
+    int count = 0;
+    for (MergeTask task : pending) {
+      if (task.scheduler == scheduler) {
+        count++;
+      }
+    }
+    return count;
+  }
+
+  synchronized int getRunningMergeCount(PooledMergeScheduler scheduler) {
+    int count = 0;
+    for (MergeTask task : started) {
+      if (task.scheduler == scheduler && task.paused == false) {
+        count++;
+      }
+    }
+    return count;
+  }
+
+  synchronized double getAllocatedMBPerSec(PooledMergeScheduler scheduler) {
+    double sum = 0;
+    for (MergeTask task : started) {
+      if (task.scheduler == scheduler) {
+        sum += task.rateLimiter.getMBPerSec();
+      }
+    }
+    return sum;
+  }
+
+  /** Called when the priority of a scheduler changed. */
+  synchronized void priorityChanged() {
+    allocate();
+  }
+
+  void submit(MergeTask task) {
+    synchronized (this) {
+      if (closed) {
+        throw new AlreadyClosedException("this MergePool is closed");
+      }
+      task.seqNo = seqNo++;
+      pending.add(task);
+      schedule();
+    }
+    failRejected();
+  }
+
+  void finished(MergeTask task) {
+    synchronized (this) {
+      final boolean removed = started.remove(task);
+      assert removed : "merge task " + task + " was not started";
+      schedule();
+    }
+    failRejected();
+  }
+
+  /** Fails the merges that the executor rejected, outside of the lock since
+   *  this calls back into the scheduler and the writer. */
+  private void failRejected() {
+    assert Thread.holdsLock(this) == false;
+    final List<MergeTask> failed;
+    synchronized (this) {
+      if (rejected.isEmpty()) {
+        return;
+      }
+      failed = new ArrayList<>(rejected);
+      rejected.clear();
+    }
+    for (MergeTask task : failed) {
+      task.rejected();
+    }
+  }
+
+  /**
+   * Resumes paused merges and starts pending ones, smallest first, as long as
+   * slots are free, and then preempts the largest running merges for smaller
+   * pending ones.
+   */
+  private void schedule() {
+    assert Thread.holdsLock(this);
+    int runningCount = getRunningMergeCount();
+
+    while (runningCount < maxRunningMerges) {
+      final MergeTask paused = smallestPaused();
+      final MergeTask next = pending.peek();
+      if (paused != null && (next == null || paused.merge.estimatedMergeBytes <= next.merge.estimatedMergeBytes)) {
+        paused.resume();
+      } else if (next != null) {
+        if (start(pending.poll()) == false) {
+          continue;
+        }
+      } else {
+        break;
+      }
+      runningCount++;
+    }
+
+    while (pending.isEmpty() == false && started.size() < 2 * maxRunningMerges) {
+      final MergeTask largest = largestRunning();
+      final MergeTask next = pending.peek();
+      if (largest == null
+          || largest.merge.estimatedMergeBytes < MIN_PREEMPTED_MERGE_BYTES
+          || largest.merge.estimatedMergeBytes <= next.merge.estimatedMergeBytes) {
+        break;
+      }
+      largest.pause();
+      if (start(pending.poll()) == false) {
+        largest.resume();
+        break;
+      }
+    }
+
+    allocate();
+  }
+
+  /**
+   * Splits {@link #maxMBPerSec} among running merges, in proportion to the
+   * priority of their scheduler times its number of unfinished merges.
+   */
+  private void allocate() {
+    assert Thread.holdsLock(this);
+    final Map<PooledMergeScheduler,Integer> backlogs = new IdentityHashMap<>();
+    for (MergeTask task : pending) {
+      backlogs.merge(task.scheduler, 1, Integer::sum);
+    }
+    for (MergeTask task : started) {
+      backlogs.merge(task.scheduler, 1, Integer::sum);
+    }
+
+    double totalWeight = 0;
+    for (MergeTask task : started) {
+      if (task.paused == false) {
+        totalWeight += weight(task, backlogs);
+      }
+    }
+    for (MergeTask task : started) {
+      final double mbPerSec;
+      if (task.paused) {
+        mbPerSec = 0.0;
+      } else if (maxMBPerSec == Double.POSITIVE_INFINITY) {
+        mbPerSec = Double.POSITIVE_INFINITY;
+      } else {
+        mbPerSec = maxMBPerSec * weight(task, backlogs) / totalWeight;
+      }
+      if (task.rateLimiter.getMBPerSec() != mbPerSec) {
+        task.rateLimiter.setMBPerSec(mbPerSec);
+      }
+    }
+  }
+
+  private static double weight(MergeTask task, Map<PooledMergeScheduler,Integer> backlogs) {
+    return task.scheduler.getPriority() * backlogs.get(task.scheduler);
+  }
+
+  /** Starts the given task, or returns false if the executor rejected it. */
+  private boolean start(MergeTask task) {
+    try {
+      executor.execute(task);
+    } catch (RejectedExecutionException e) {
+      task.merge.setException(e);
+      rejected.add(task);
+      return false;
+    }
+    started.add(task);
+    return true;
+  }
+
+  private MergeTask smallestPaused() {
+    MergeTask smallest = null;
+    for (MergeTask task : started) {
+      if (task.paused && (smallest == null || task.merge.estimatedMergeBytes < smallest.merge.estimatedMergeBytes)) {
+        smallest = task;
+      }
+    }
+    return smallest;
+  }
+
+  private MergeTask largestRunning() {
+    MergeTask largest = null;
+    for (MergeTask task : started) {
+      if (task.paused == false && (largest == null || task.merge.estimatedMergeBytes > largest.merge.estimatedMergeBytes)) {
+        largest = task;
+      }
+    }
+    return largest;
+  }
+
+  /**
+   * Stops accepting merges and, if this pool created its own threads, stops
+   * them once started merges are done.  Writers using this pool should be
+   * closed first.
+   */
+  @Override
+  public void close() {
+    synchronized (this) {
+      closed = true;
+    }
+    if (ownedExecutor != null) {
+      ownedExecutor.shutdown();
+    }
+  }
+
+  @Override
+  public synchronized String toString() {
+    return getClass().getSimpleName() + ": maxRunningMerges=" + maxRunningMerges
+        + ", maxMBPerSec=" + maxMBPerSec + ", allocatedMBPerSec=" + getAllocatedMBPerSec()
+        + ", running=" + getRunningMergeCount() + ", paused=" + getPausedMergeCount() + ", pending=" + pending.size();
+  }
+
+  /** A merge of a {@link PooledMergeScheduler}, run by the pool. */
+  static abstract class MergeTask implements Runnable {
+    final PooledMergeScheduler scheduler;
+    final MergePolicy.OneMerge merge;
+    final MergeRateLimiter rateLimiter;
+    long seqNo;
+    /** Guarded by the pool. */
+    boolean paused;
+
+    MergeTask(PooledMergeScheduler scheduler, MergePolicy.OneMerge merge) {
+      this.scheduler = scheduler;
+      this.merge = merge;
+      this.rateLimiter = new MergeRateLimiter(merge.getMergeProgress());
+    }
+
+    /** The rate is set back by the next {@link MergePool#allocate()}. */
+    void pause() {
+      paused = true;
+      rateLimiter.setMBPerSec(0.0);
+    }
+
+    void resume() {
+      paused = false;
+    }
+
+    /** Called, without holding the pool's lock, when the executor rejected this task;
+     *  the rejection is set as the exception of the merge. */
+    abstract void rejected();
+  }
+}
@@ -24,6 +24,7 @@ import org.apache.lucene.index.MergePolicy.OneMerge;
 
 import java.io.Closeable;
 import java.io.IOException;
+import java.util.concurrent.Executor;
 
 /** <p>Expert: {@link IndexWriter} uses an instance
  *  implementing this interface to execute the merges
@@ -39,6 +40,10 @@ public abstract class MergeScheduler implements Closeable {
   }
 
   /** Run the merges provided by {@link IndexWriter#getNextMerge()}.
+   * When the trigger is {@link MergeTrigger#GET_READER}, the caller opens a
+   * near-real-time reader and waits for the merges for a bounded time only, so
+   * implementations must neither stall the calling thread nor run merges on it;
+   * they may leave merges pending instead.
    * @param writer the {@link IndexWriter} to obtain the merges from.
    * @param trigger the {@link MergeTrigger} that caused this merge to happen
    * @param newMergesFound <code>true</code> iff any new merges were found by the caller otherwise <code>false</code>
@@ -54,6 +59,19 @@ public abstract class MergeScheduler implements Closeable {
     return in;
   }
 
+  /**
+   * Returns the {@link Executor} that {@link IndexWriter} hands independent
+   * parts of the given merge to, such as merging stored fields, doc values and
+   * points while postings are being merged.  This is called from the thread
+   * that executes the merge, and tasks that are executed by other threads write
+   * through the same {@link #wrapForMerge wrapped} directory as the merge
+   * thread, so they share its rate limit.  By default, all parts run on the
+   * merge thread.
+   */
+  public Executor getIntraMergeExecutor(OneMerge merge) {
+    return Runnable::run;
+  }
+
   /** Close this MergeScheduler. */
   @Override
   public abstract void close() throws IOException;
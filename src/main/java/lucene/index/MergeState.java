@@ -81,7 +81,7 @@ public class MergeState {
   /** Indicates if the index needs to be sorted **/
   public boolean needsIndexSort;
 
-  /** Sole constructor. */
+  /** Creates the state to merge the given readers. */
   MergeState(List<CodecReader> originalReaders, SegmentInfo segmentInfo, InfoStream infoStream) throws IOException {
 
     this.infoStream = infoStream;
@@ -143,6 +143,27 @@ public class MergeState {
     this.docMaps = buildDocMaps(readers, indexSort);
   }
 
+  /** Creates a copy of the given state whose {@link #mergeFieldInfos}, {@link #fieldInfos}
+   *  and {@link #fieldsProducers} can be changed without affecting it, for parts of
+   *  a merge that run concurrently. */
+  MergeState(MergeState other) {
+    this.docMaps = other.docMaps;
+    this.leafDocMaps = other.leafDocMaps;
+    this.segmentInfo = other.segmentInfo;
+    this.mergeFieldInfos = other.mergeFieldInfos;
+    this.storedFieldsReaders = other.storedFieldsReaders;
+    this.termVectorsReaders = other.termVectorsReaders;
+    this.normsProducers = other.normsProducers;
+    this.docValuesProducers = other.docValuesProducers;
+    this.fieldInfos = other.fieldInfos.clone();
+    this.liveDocs = other.liveDocs;
+    this.fieldsProducers = other.fieldsProducers.clone();
+    this.pointsReaders = other.pointsReaders;
+    this.maxDocs = other.maxDocs;
+    this.infoStream = other.infoStream;
+    this.needsIndexSort = other.needsIndexSort;
+  }
+
   // Remap docIDs around deletions
   private DocMap[] buildDeletionDocMaps(List<CodecReader> readers) {
 
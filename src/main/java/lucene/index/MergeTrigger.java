@@ -47,5 +47,12 @@ public enum MergeTrigger {
   /**
    * Merge was triggered by a closing IndexWriter.
    */
-  CLOSING
+  CLOSING,
+
+  /**
+   * Merge was triggered by an NRT reader reopen, that waits for the merge
+   * before it opens the reader.
+   * See {@link MergePolicy#findFullFlushMerges}.
+   */
+  GET_READER
 }
@@ -0,0 +1,342 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package lucene.index;
+
+
+import lucene.store.AlreadyClosedException;
+import lucene.store.Directory;
+import lucene.store.FilterDirectory;
+import lucene.store.IOContext;
+import lucene.store.IndexOutput;
+import lucene.store.RateLimitedIndexOutput;
+import lucene.util.ThreadInterruptedException;
+
+import java.io.IOException;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * A {@link MergeScheduler} that hands merges to a {@link MergePool}, which
+ * may be shared by many {@link IndexWriter}s.  Merges don't get a dedicated
+ * thread: the pool runs them as tasks, smallest first, and pauses large
+ * merges to let small ones through.
+ * <p>
+ * Like {@link ConcurrentMergeScheduler}, this scheduler stalls incoming
+ * threads once this writer has more than {@link #getMaxMergeCount}
+ * unfinished merges.  Closing the scheduler waits for the merges of its
+ * writer but leaves the pool open.
+ *
+ * @lucene.experimental
+ */
+public class PooledMergeScheduler extends MergeScheduler {
+
+  private final MergePool pool;
+
+  /** Unfinished merges of this scheduler, by merge. */
+  private final Map<MergePolicy.OneMerge,Task> tasks = new IdentityHashMap<>();
+
+  private int maxMergeCount;
+
+  private volatile double priority = 1.0;
+
+  /** Creates a scheduler that runs merges in the given pool. */
+  public PooledMergeScheduler(MergePool pool) {
+    if (pool == null) {
+      throw new NullPointerException("pool must not be null");
+    }
+    this.pool = pool;
+    this.maxMergeCount = pool.getMaxRunningMerges() + 5;
+  }
+
+  /** Returns the pool this scheduler runs merges in. */
+  public MergePool getPool() {
+    return pool;
+  }
+
+  /**
+   * Sets the max number of unfinished merges of this writer, beyond which
+   * threads that produce segments are stalled until merging catches up.
+   */
+  public synchronized void setMaxMergeCount(int maxMergeCount) {
+    if (maxMergeCount < 1) {
+      throw new IllegalArgumentException("maxMergeCount should be at least 1; got: " + maxMergeCount);
+    }
+    this.maxMergeCount = maxMergeCount;
+    notifyAll();
+  }
+
+  /** See {@link #setMaxMergeCount}. */
+  public synchronized int getMaxMergeCount() {
+    return maxMergeCount;
+  }
+
+  /**
+   * Sets the priority of this writer's merges relative to other writers of
+   * the pool, which weighs the share of the pool's write rate its running
+   * merges get.  Defaults to 1.
+   */
+  public void setPriority(double priority) {
+    if (Double.isNaN(priority) || priority <= 0.0 || Double.isInfinite(priority)) {
+      throw new IllegalArgumentException("priority must be positive and finite; got: " + priority);
+    }
+    this.priority = priority;
+    pool.priorityChanged();
+  }
+
+  /** See {@link #setPriority}. */
+  public double getPriority() {
+    return priority;
+  }
+
+  /** Returns the number of merges of this scheduler that are not finished yet. */
+  public synchronized int getUnfinishedMergeCount() {
+    return tasks.size();
+  }
+
+  /** Returns the number of merges of this scheduler that wait in the pool to be started. */
+  public int getPendingMergeCount() {
+    return pool.getPendingMergeCount(this);
+  }
+
+  /** Returns the number of merges of this scheduler that are running, not paused. */
+  public int getRunningMergeCount() {
+    return pool.getRunningMergeCount(this);
+  }
+
+  /** Returns the write rate currently allocated to the merges of this
+   *  scheduler by the pool, in MB per second. */
+  public double getAllocatedMBPerSec() {
+    return pool.getAllocatedMBPerSec(this);
+  }
+
+  @Override
+  public void merge(IndexWriter writer, MergeTrigger trigger, boolean newMergesFound) throws IOException {
+    assert !Thread.holdsLock(writer);
+
+    while (true) {
+      // never stall a thread that is opening an NRT reader; it only waits for a bounded time:
+      if (trigger != MergeTrigger.GET_READER && maybeStall(writer) == false) {
+        break;
+      }
+
+      final MergePolicy.OneMerge merge = writer.getNextMerge();
+      if (merge == null) {
+        if (verbose()) {
+          message("  no more merges pending; now return");
+        }
+        return;
+      }
+
+      final Task task = new Task(writer, merge);
+      synchronized (this) {
+        tasks.put(merge, task);
+      }
+      boolean success = false;
+      try {
+        if (verbose()) {
+          message("  submit merge " + writer.segString(merge.segments) + " to " + pool);
+        }
+        pool.submit(task);
+        success = true;
+      } finally {
+        if (!success) {
+          synchronized (this) {
+            tasks.remove(merge);
+          }
+          writer.mergeFinish(merge);
+        }
+      }
+    }
+  }
+
+  /**
+   * Stalls the calling thread while this writer has pending merges and at
+   * least {@link #getMaxMergeCount} unfinished ones.  Returns false, without
+   * stalling, if the calling thread runs one of the merges of this scheduler,
+   * to tell the caller not to kick off any new merges.
+   */
+  protected synchronized boolean maybeStall(IndexWriter writer) {
+    long startStallTime = 0;
+    while (writer.hasPendingMerges() && tasks.size() >= maxMergeCount) {
+      for (Task task : tasks.values()) {
+        if (task.thread == Thread.currentThread()) {
+          return false;
+        }
+      }
+      if (verbose() && startStallTime == 0) {
+        message("    too many merges; stalling...");
+      }
+      startStallTime = System.currentTimeMillis();
+      doWait();
+    }
+
+    if (verbose() && startStallTime != 0) {
+      message("  stalled for " + (System.currentTimeMillis()-startStallTime) + " msec");
+    }
+
+    return true;
+  }
+
+  private void doWait() {
+    assert Thread.holdsLock(this);
+    try {
+      // Defensively wait for only .25 seconds in case we are missing a .notify/All somewhere:
+      wait(250);
+    } catch (InterruptedException ie) {
+      throw new ThreadInterruptedException(ie);
+    }
+  }
+
+  @Override
+  public Directory wrapForMerge(MergePolicy.OneMerge merge, Directory in) {
+    final Task task;
+    synchronized (this) {
+      task = tasks.get(merge);
+    }
+    if (task == null) {
+      throw new AssertionError("wrapForMerge should be called for a merge of this scheduler: " + merge.segString());
+    }
+
+    // Return a wrapped Directory which has rate-limited output, so that the
+    // pool can pause this merge:
+    return new FilterDirectory(in) {
+      @Override
+      public IndexOutput createOutput(String name, IOContext context) throws IOException {
+        ensureOpen();
+
+        // This Directory is only supposed to be used during merging,
+        // so all writes should have MERGE context, else there is a bug
+        // somewhere that is failing to pass down the right IOContext:
+        assert context.context == IOContext.Context.MERGE: "got context=" + context.context;
+
+        return new RateLimitedIndexOutput(task.rateLimiter, in.createOutput(name, context));
+      }
+    };
+  }
+
+  /** Waits for all merges of this scheduler to finish. */
+  public synchronized void sync() {
+    boolean interrupted = false;
+    try {
+      while (tasks.isEmpty() == false) {
+        if (verbose()) {
+          message("now wait for " + tasks.size() + " merges to finish");
+        }
+        try {
+          wait(250);
+        } catch (InterruptedException ie) {
+          interrupted = true;
+        }
+      }
+    } finally {
+      // finally, restore interrupt status:
+      if (interrupted) Thread.currentThread().interrupt();
+    }
+  }
+
+  /** Waits for the merges of this scheduler; the pool is left open. */
+  @Override
+  public void close() {
+    sync();
+  }
+
+  /** Called when an exception is hit while running a merge in the pool. */
+  protected void handleMergeException(Directory dir, Throwable exc) {
+    throw new MergePolicy.MergeException(exc, dir);
+  }
+
+  @Override
+  public String toString() {
+    return getClass().getSimpleName() + ": maxMergeCount=" + getMaxMergeCount() + ", priority=" + priority + ", pool=" + pool;
+  }
+
+  private class Task extends MergePool.MergeTask {
+    final IndexWriter writer;
+    volatile Thread thread;
+
+    Task(IndexWriter writer, MergePolicy.OneMerge merge) {
+      super(PooledMergeScheduler.this, merge);
+      this.writer = writer;
+    }
+
+    @Override
+    public void run() {
+      thread = Thread.currentThread();
+      try {
+        if (verbose()) {
+          message("  merge task: start " + merge.segString());
+        }
+
+        writer.merge(merge);
+
+        if (verbose()) {
+          message("  merge task: done");
+        }
+
+        // Let the pool run new merges if necessary:
+        try {
+          PooledMergeScheduler.this.merge(writer, MergeTrigger.MERGE_FINISHED, true);
+        } catch (AlreadyClosedException ace) {
+          // OK
+        } catch (IOException ioe) {
+          throw new RuntimeException(ioe);
+        }
+
+      } catch (Throwable exc) {
+
+        if (exc instanceof MergePolicy.MergeAbortedException) {
+          // OK to ignore
+        } else {
+          handleMergeException(writer.getDirectory(), exc);
+        }
+
+      } finally {
+        thread = null;
+        try {
+          pool.finished(this);
+        } finally {
+          removeTask();
+        }
+      }
+    }
+
+    @Override
+    void rejected() {
+      if (verbose()) {
+        message("  merge task rejected by the pool's executor: " + merge.segString());
+      }
+      try {
+        // the pool set the rejection as the merge's exception: report it like
+        // a failed merge, so that forceMerge and forceMergeDeletes throw it
+        assert merge.getException() != null;
+        writer.addMergeException(merge);
+        writer.mergeFinish(merge);
+      } finally {
+        removeTask();
+      }
+    }
+
+    private void removeTask() {
+      synchronized (PooledMergeScheduler.this) {
+        tasks.remove(merge);
+        // In case we had stalled indexing, we can now wake up
+        // and possibly unstall:
+        PooledMergeScheduler.this.notifyAll();
+      }
+    }
+  }
+}
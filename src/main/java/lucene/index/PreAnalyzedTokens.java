@@ -0,0 +1,187 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package lucene.index;
+
+
+import lucene.util.ArrayUtil;
+import lucene.util.BytesRef;
+import lucene.util.BytesRefBuilder;
+
+/**
+ * A compact, already analyzed sequence of tokens for one field instance.
+ * <p>
+ * When {@link IndexableField#preAnalyzedTokens} returns a non-null
+ * instance, the indexing chain inverts these tokens directly instead of
+ * asking the field for a {@link lucene.analysis.TokenStream}: no analyzer
+ * is invoked, no attributes are instantiated per document and term bytes
+ * are hashed straight from the provided {@link BytesRef}s.
+ * <p>
+ * Term and payload {@link BytesRef}s are not cloned, so callers must not
+ * change them until the document holding them has been indexed.  An
+ * instance may be reused across documents by calling {@link #clear()}.
+ *
+ * @lucene.experimental
+ */
+public final class PreAnalyzedTokens {
+
+  private BytesRef[] terms = new BytesRef[0];
+  private int[] positionIncrements = new int[0];
+  private int[] startOffsets = new int[0];
+  private int[] endOffsets = new int[0];
+  private BytesRef[] payloads;
+  // buffers that terms added as chars are encoded into, reused across clear()s
+  private BytesRefBuilder[] encodedTerms = new BytesRefBuilder[0];
+  private int size;
+  private int finalPositionIncrement;
+  private int finalOffset = -1;
+
+  /** Creates an empty token sequence. */
+  public PreAnalyzedTokens() {
+  }
+
+  /** Appends a token with a position increment of 1, no offsets and no payload. */
+  public PreAnalyzedTokens add(BytesRef term) {
+    return add(term, 1, 0, 0, null);
+  }
+
+  /** Appends a token.
+   *  @param term the term bytes; not cloned
+   *  @param positionIncrement position increment relative to the previous token
+   *  @param startOffset start offset of the token
+   *  @param endOffset end offset of the token
+   *  @param payload the payload of the token, or null; not cloned */
+  public PreAnalyzedTokens add(BytesRef term, int positionIncrement, int startOffset, int endOffset, BytesRef payload) {
+    if (term == null) {
+      throw new NullPointerException("term must not be null");
+    }
+    if (size == terms.length) {
+      terms = ArrayUtil.grow(terms, size + 1);
+      positionIncrements = ArrayUtil.growExact(positionIncrements, terms.length);
+      startOffsets = ArrayUtil.growExact(startOffsets, terms.length);
+      endOffsets = ArrayUtil.growExact(endOffsets, terms.length);
+      if (payloads != null) {
+        payloads = ArrayUtil.growExact(payloads, terms.length);
+      }
+    }
+    if (payload != null && payloads == null) {
+      payloads = new BytesRef[terms.length];
+    }
+    terms[size] = term;
+    positionIncrements[size] = positionIncrement;
+    startOffsets[size] = startOffset;
+    endOffsets[size] = endOffset;
+    if (payloads != null) {
+      payloads[size] = payload;
+    }
+    size++;
+    return this;
+  }
+
+  /** Appends a token whose term is the UTF-8 encoding of the given text.
+   *  The bytes are encoded into a buffer that is reused once this instance is
+   *  {@link #clear() cleared}, so this doesn't allocate on reuse.
+   *  @see #add(BytesRef, int, int, int, BytesRef) */
+  public PreAnalyzedTokens add(CharSequence term, int positionIncrement, int startOffset, int endOffset, BytesRef payload) {
+    if (term == null) {
+      throw new NullPointerException("term must not be null");
+    }
+    if (size == encodedTerms.length) {
+      encodedTerms = ArrayUtil.grow(encodedTerms, size + 1);
+    }
+    if (encodedTerms[size] == null) {
+      encodedTerms[size] = new BytesRefBuilder();
+    }
+    encodedTerms[size].copyChars(term);
+    return add(encodedTerms[size].get(), positionIncrement, startOffset, endOffset, payload);
+  }
+
+  /** Sets the position increment and offset that are applied once all
+   *  tokens have been consumed, like {@link lucene.analysis.TokenStream#end()}.
+   *  By default the final position increment is 0 and the final offset is
+   *  the end offset of the last token. */
+  public PreAnalyzedTokens setEnd(int finalPositionIncrement, int finalOffset) {
+    this.finalPositionIncrement = finalPositionIncrement;
+    this.finalOffset = finalOffset;
+    return this;
+  }
+
+  /** Removes all tokens so that this instance can be reused. */
+  public void clear() {
+    for (int i = 0; i < size; i++) {
+      terms[i] = null;
+      if (payloads != null) {
+        payloads[i] = null;
+      }
+    }
+    size = 0;
+    finalPositionIncrement = 0;
+    finalOffset = -1;
+  }
+
+  /** Number of tokens. */
+  public int size() {
+    return size;
+  }
+
+  /** Term bytes of the token at {@code index}. */
+  public BytesRef term(int index) {
+    assert index < size;
+    return terms[index];
+  }
+
+  /** Position increment of the token at {@code index}. */
+  public int positionIncrement(int index) {
+    assert index < size;
+    return positionIncrements[index];
+  }
+
+  /** Start offset of the token at {@code index}. */
+  public int startOffset(int index) {
+    assert index < size;
+    return startOffsets[index];
+  }
+
+  /** End offset of the token at {@code index}. */
+  public int endOffset(int index) {
+    assert index < size;
+    return endOffsets[index];
+  }
+
+  /** Payload of the token at {@code index}, or null. */
+  public BytesRef payload(int index) {
+    assert index < size;
+    return payloads == null ? null : payloads[index];
+  }
+
+  /** Returns true if at least one token was added with a payload. */
+  public boolean hasPayloads() {
+    return payloads != null;
+  }
+
+  /** Position increment applied after the last token. */
+  public int finalPositionIncrement() {
+    return finalPositionIncrement;
+  }
+
+  /** Offset applied after the last token. */
+  public int finalOffset() {
+    if (finalOffset != -1) {
+      return finalOffset;
+    }
+    return size == 0 ? 0 : endOffsets[size - 1];
+  }
+}
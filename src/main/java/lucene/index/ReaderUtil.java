@@ -16,6 +16,8 @@
  */
 package lucene.index;
 
+import lucene.util.InPlaceMergeSorter;
+
 import java.util.List;
 
 /**
@@ -89,4 +91,30 @@ public final class ReaderUtil {
     }
     return hi;
   }
+
+  /**
+   * Sorts the given document IDs in increasing order, and the given visitors along with
+   * them, as expected by {@link lucene.codecs.StoredFieldsReader#visitDocuments}.
+   */
+  static void sortByDocID(int[] docIDs, StoredFieldVisitor[] visitors) {
+    if (docIDs.length != visitors.length) {
+      throw new IllegalArgumentException("docIDs and visitors must have the same length, got " + docIDs.length + " and " + visitors.length);
+    }
+    new InPlaceMergeSorter() {
+      @Override
+      protected void swap(int i, int j) {
+        final int tmpDoc = docIDs[i];
+        docIDs[i] = docIDs[j];
+        docIDs[j] = tmpDoc;
+        final StoredFieldVisitor tmpVisitor = visitors[i];
+        visitors[i] = visitors[j];
+        visitors[j] = tmpVisitor;
+      }
+
+      @Override
+      protected int compare(int i, int j) {
+        return Integer.compare(docIDs[i], docIDs[j]);
+      }
+    }.sort(0, docIDs.length);
+  }
 }
@@ -305,7 +305,9 @@ public final class SegmentInfo {
    * Get a codec attribute value, or null if it does not exist
    */
   public String getAttribute(String key) {
-    return attributes.get(key);
+    synchronized (attributes) {
+      return attributes.get(key);
+    }
   }
   
   /**
@@ -319,7 +321,10 @@ public final class SegmentInfo {
    * value.
    */
   public String putAttribute(String key, String value) {
-    return attributes.put(key, value);
+    // formats of a merge may be written concurrently:
+    synchronized (attributes) {
+      return attributes.put(key, value);
+    }
   }
   
   /**
@@ -20,11 +20,17 @@ package lucene.index;
 import lucene.codecs.*;
 import lucene.store.Directory;
 import lucene.store.IOContext;
+import lucene.util.IOUtils;
 import lucene.util.InfoStream;
+import lucene.util.ThreadInterruptedException;
 import lucene.util.Version;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
 
 /**
  * The SegmentMerger class combines two or more Segments, represented by an
@@ -39,13 +45,15 @@ final class SegmentMerger {
   private final Codec codec;
   
   private final IOContext context;
+
+  private final Executor intraMergeExecutor;
   
   final MergeState mergeState;
   private final FieldInfos.Builder fieldInfosBuilder;
 
   // note, just like in codec apis Directory 'dir' is NOT the same as segmentInfo.dir!!
   SegmentMerger(List<CodecReader> readers, SegmentInfo segmentInfo, InfoStream infoStream, Directory dir,
-                FieldInfos.FieldNumbers fieldNumbers, IOContext context) throws IOException {
+                FieldInfos.FieldNumbers fieldNumbers, IOContext context, Executor intraMergeExecutor) throws IOException {
     if (context.context != IOContext.Context.MERGE) {
       throw new IllegalArgumentException("IOContext.context should be MERGE; got: " + context.context);
     }
@@ -53,6 +61,7 @@ final class SegmentMerger {
     directory = dir;
     this.codec = segmentInfo.getCodec();
     this.context = context;
+    this.intraMergeExecutor = intraMergeExecutor;
     this.fieldInfosBuilder = new FieldInfos.Builder(fieldNumbers);
     Version minVersion = Version.LATEST;
     for (CodecReader reader : readers) {
@@ -81,7 +90,10 @@ final class SegmentMerger {
   }
 
   /**
-   * Merges the readers into the directory passed to the constructor
+   * Merges the readers into the directory passed to the constructor.  Stored
+   * fields, doc values, points and term vectors are merged by tasks handed to
+   * the intra-merge executor while norms and postings, which need the merged
+   * norms, are merged by the calling thread.
    * @return The number of documents that were merged
    * @throws CorruptIndexException if the index is corrupt
    * @throws IOException if there is a low-level IO error
@@ -91,111 +103,116 @@ final class SegmentMerger {
       throw new IllegalStateException("Merge would result in 0 document segment");
     }
     mergeFieldInfos();
-    long t0 = 0;
-    if (mergeState.infoStream.isEnabled("SM")) {
-      t0 = System.nanoTime();
-    }
-    int numMerged = mergeFields();
-    if (mergeState.infoStream.isEnabled("SM")) {
-      long t1 = System.nanoTime();
-      mergeState.infoStream.message("SM", ((t1-t0)/1000000) + " msec to merge stored fields [" + numMerged + " docs]");
-    }
-    assert numMerged == mergeState.segmentInfo.maxDoc(): "numMerged=" + numMerged + " vs mergeState.segmentInfo.maxDoc()=" + mergeState.segmentInfo.maxDoc();
 
     final SegmentWriteState segmentWriteState = new SegmentWriteState(mergeState.infoStream, directory, mergeState.segmentInfo,
                                                                       mergeState.mergeFieldInfos, null, context);
     final SegmentReadState segmentReadState = new SegmentReadState(directory, mergeState.segmentInfo, mergeState.mergeFieldInfos,
                                                                    IOContext.READ, segmentWriteState.segmentSuffix);
 
-    if (mergeState.mergeFieldInfos.hasNorms()) {
-      if (mergeState.infoStream.isEnabled("SM")) {
-        t0 = System.nanoTime();
-      }
-      mergeNorms(segmentWriteState);
-      if (mergeState.infoStream.isEnabled("SM")) {
-        long t1 = System.nanoTime();
-        mergeState.infoStream.message("SM", ((t1-t0)/1000000) + " msec to merge norms [" + numMerged + " docs]");
-      }
-    }
-
-    if (mergeState.infoStream.isEnabled("SM")) {
-      t0 = System.nanoTime();
-    }
-    try (NormsProducer norms = mergeState.mergeFieldInfos.hasNorms()
-        ? codec.normsFormat().normsProducer(segmentReadState)
-        : null) {
-      NormsProducer normsMergeInstance = null;
-      if (norms != null) {
-        // Use the merge instance in order to reuse the same IndexInput for all terms
-        normsMergeInstance = norms.getMergeInstance();
-      }
-      mergeTerms(segmentWriteState, normsMergeInstance);
-    }
-    if (mergeState.infoStream.isEnabled("SM")) {
-      long t1 = System.nanoTime();
-      mergeState.infoStream.message("SM", ((t1-t0)/1000000) + " msec to merge postings [" + numMerged + " docs]");
-    }
-
-    if (mergeState.infoStream.isEnabled("SM")) {
-      t0 = System.nanoTime();
-    }
+    final List<FutureTask<Void>> tasks = new ArrayList<>();
+    submit(tasks, "stored fields", state -> {
+      int numMerged = mergeFields(state);
+      assert numMerged == mergeState.segmentInfo.maxDoc(): "numMerged=" + numMerged + " vs mergeState.segmentInfo.maxDoc()=" + mergeState.segmentInfo.maxDoc();
+    });
     if (mergeState.mergeFieldInfos.hasDocValues()) {
-      mergeDocValues(segmentWriteState);
-    }
-    if (mergeState.infoStream.isEnabled("SM")) {
-      long t1 = System.nanoTime();
-      mergeState.infoStream.message("SM", ((t1-t0)/1000000) + " msec to merge doc values [" + numMerged + " docs]");
-    }
-
-    if (mergeState.infoStream.isEnabled("SM")) {
-      t0 = System.nanoTime();
+      submit(tasks, "doc values", state -> mergeDocValues(segmentWriteState, state));
     }
     if (mergeState.mergeFieldInfos.hasPointValues()) {
-      mergePoints(segmentWriteState);
+      submit(tasks, "points", state -> mergePoints(segmentWriteState, state));
     }
-    if (mergeState.infoStream.isEnabled("SM")) {
-      long t1 = System.nanoTime();
-      mergeState.infoStream.message("SM", ((t1-t0)/1000000) + " msec to merge points [" + numMerged + " docs]");
+    if (mergeState.mergeFieldInfos.hasVectors()) {
+      submit(tasks, "vectors", state -> {
+        int numMerged = mergeVectors(state);
+        assert numMerged == mergeState.segmentInfo.maxDoc();
+      });
     }
 
-    if (mergeState.mergeFieldInfos.hasVectors()) {
-      if (mergeState.infoStream.isEnabled("SM")) {
-        t0 = System.nanoTime();
+    Throwable th = null;
+    try {
+      if (mergeState.mergeFieldInfos.hasNorms()) {
+        mergeWithLogging("norms", mergeState, state -> mergeNorms(segmentWriteState, state));
       }
-      numMerged = mergeVectors();
-      if (mergeState.infoStream.isEnabled("SM")) {
-        long t1 = System.nanoTime();
-        mergeState.infoStream.message("SM", ((t1-t0)/1000000) + " msec to merge vectors [" + numMerged + " docs]");
+      mergeWithLogging("postings", mergeState, state -> {
+        try (NormsProducer norms = mergeState.mergeFieldInfos.hasNorms()
+            ? codec.normsFormat().normsProducer(segmentReadState)
+            : null) {
+          NormsProducer normsMergeInstance = null;
+          if (norms != null) {
+            // Use the merge instance in order to reuse the same IndexInput for all terms
+            normsMergeInstance = norms.getMergeInstance();
+          }
+          mergeTerms(segmentWriteState, state, normsMergeInstance);
+        }
+      });
+    } catch (Throwable t) {
+      th = t;
+    }
+
+    // Wait for all tasks even if one failed, so that no task is still
+    // writing files when the merge gets aborted and cleaned up:
+    for (FutureTask<Void> task : tasks) {
+      try {
+        task.get();
+      } catch (InterruptedException e) {
+        th = IOUtils.useOrSuppress(th, new ThreadInterruptedException(e));
+      } catch (ExecutionException e) {
+        th = IOUtils.useOrSuppress(th, e.getCause());
       }
-      assert numMerged == mergeState.segmentInfo.maxDoc();
     }
-    
+    if (th != null) {
+      throw IOUtils.rethrowAlways(th);
+    }
+
     // write the merged infos
+    mergeWithLogging("field infos", mergeState, state ->
+        codec.fieldInfosFormat().write(directory, mergeState.segmentInfo, "", mergeState.mergeFieldInfos, context));
+
+    return mergeState;
+  }
+
+  /** A part of a merge. */
+  @FunctionalInterface
+  private interface MergeTask {
+    void merge(MergeState mergeState) throws IOException;
+  }
+
+  private void submit(List<FutureTask<Void>> tasks, String formatName, MergeTask mergeTask) {
+    // Per-field formats restrict the fields of the state they merge in place,
+    // so each concurrent part gets its own copy:
+    final MergeState state = new MergeState(mergeState);
+    final FutureTask<Void> task = new FutureTask<>(() -> {
+      mergeWithLogging(formatName, state, mergeTask);
+      return null;
+    });
+    tasks.add(task);
+    intraMergeExecutor.execute(task);
+  }
+
+  private void mergeWithLogging(String formatName, MergeState state, MergeTask mergeTask) throws IOException {
+    long t0 = 0;
     if (mergeState.infoStream.isEnabled("SM")) {
       t0 = System.nanoTime();
     }
-    codec.fieldInfosFormat().write(directory, mergeState.segmentInfo, "", mergeState.mergeFieldInfos, context);
+    mergeTask.merge(state);
     if (mergeState.infoStream.isEnabled("SM")) {
       long t1 = System.nanoTime();
-      mergeState.infoStream.message("SM", ((t1-t0)/1000000) + " msec to write field infos [" + numMerged + " docs]");
+      mergeState.infoStream.message("SM", ((t1-t0)/1000000) + " msec to merge " + formatName + " [" + mergeState.segmentInfo.maxDoc() + " docs]");
     }
-
-    return mergeState;
   }
 
-  private void mergeDocValues(SegmentWriteState segmentWriteState) throws IOException {
+  private void mergeDocValues(SegmentWriteState segmentWriteState, MergeState mergeState) throws IOException {
     try (DocValuesConsumer consumer = codec.docValuesFormat().fieldsConsumer(segmentWriteState)) {
       consumer.merge(mergeState);
     }
   }
 
-  private void mergePoints(SegmentWriteState segmentWriteState) throws IOException {
+  private void mergePoints(SegmentWriteState segmentWriteState, MergeState mergeState) throws IOException {
     try (PointsWriter writer = codec.pointsFormat().fieldsWriter(segmentWriteState)) {
       writer.merge(mergeState);
     }
   }
 
-  private void mergeNorms(SegmentWriteState segmentWriteState) throws IOException {
+  private void mergeNorms(SegmentWriteState segmentWriteState, MergeState mergeState) throws IOException {
     try (NormsConsumer consumer = codec.normsFormat().normsConsumer(segmentWriteState)) {
       consumer.merge(mergeState);
     }
@@ -216,7 +233,7 @@ final class SegmentMerger {
    * @throws CorruptIndexException if the index is corrupt
    * @throws IOException if there is a low-level IO error
    */
-  private int mergeFields() throws IOException {
+  private int mergeFields(MergeState mergeState) throws IOException {
     try (StoredFieldsWriter fieldsWriter = codec.storedFieldsFormat().fieldsWriter(directory, mergeState.segmentInfo, context)) {
       return fieldsWriter.merge(mergeState);
     }
@@ -226,13 +243,13 @@ final class SegmentMerger {
    * Merge the TermVectors from each of the segments into the new one.
    * @throws IOException if there is a low-level IO error
    */
-  private int mergeVectors() throws IOException {
+  private int mergeVectors(MergeState mergeState) throws IOException {
     try (TermVectorsWriter termVectorsWriter = codec.termVectorsFormat().vectorsWriter(directory, mergeState.segmentInfo, context)) {
       return termVectorsWriter.merge(mergeState);
     }
   }
 
-  private void mergeTerms(SegmentWriteState segmentWriteState, NormsProducer norms) throws IOException {
+  private void mergeTerms(SegmentWriteState segmentWriteState, MergeState mergeState, NormsProducer norms) throws IOException {
     try (FieldsConsumer consumer = codec.postingsFormat().fieldsConsumer(segmentWriteState)) {
       consumer.merge(mergeState, norms);
     }
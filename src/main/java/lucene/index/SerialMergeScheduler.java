@@ -32,6 +32,10 @@ public class SerialMergeScheduler extends MergeScheduler {
    * multiple threads, only one merge may run at a time. */
   @Override
   synchronized public void merge(IndexWriter writer, MergeTrigger trigger, boolean newMergesFound) throws IOException {
+    if (trigger == MergeTrigger.GET_READER) {
+      // don't run merges on a thread that opens an NRT reader; the next call runs them
+      return;
+    }
     while(true) {
       MergePolicy.OneMerge merge = writer.getNextMerge();
       if (merge == null) {
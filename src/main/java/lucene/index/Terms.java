@@ -128,6 +128,14 @@ public abstract class Terms {
   /** Zero-length array of {@link Terms}. */
   public final static Terms[] EMPTY_ARRAY = new Terms[0];
 
+  /** Returns false if the given term is definitely not in this field, e.g.
+   *  because a membership filter rules it out, so that callers can skip
+   *  seeking the terms dictionary.  This is best-effort: the default
+   *  implementation always returns true. */
+  public boolean mayContain(BytesRef term) throws IOException {
+    return true;
+  }
+
   /** Returns the smallest term (in lexicographic order) in the field.
    *  Note that, just like other term measures, this measure does not
    *  take deleted documents into account.  This returns
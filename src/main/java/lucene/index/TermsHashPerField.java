@@ -20,12 +20,14 @@ package lucene.index;
 import lucene.analysis.tokenattributes.TermFrequencyAttribute;
 import lucene.analysis.tokenattributes.TermToBytesRefAttribute;
 import lucene.util.ByteBlockPool;
+import lucene.util.BytesRef;
 import lucene.util.BytesRefHash;
 import lucene.util.Counter;
 import lucene.util.IntBlockPool;
 import org.apache.lucene.util.BytesRefHash.BytesStartArray;
 
 import java.io.IOException;
+import java.util.Arrays;
 
 abstract class TermsHashPerField implements Comparable<TermsHashPerField> {
   private static final int HASH_INIT_SIZE = 4;
@@ -53,6 +55,11 @@ abstract class TermsHashPerField implements Comparable<TermsHashPerField> {
   ParallelPostingsArray postingsArray;
   private final Counter bytesUsed;
 
+  // Lazy init'd for untokenized fields:
+  private TermIDCache termIDCache;
+  // Set once the cache missed too often, until the next reset:
+  private boolean termIDCacheDisabled;
+
   /** streamCount: how many streams this field stores per term.
    * E.g. doc(+freq) is 1 stream, prox+offset is a second. */
 
@@ -74,6 +81,9 @@ abstract class TermsHashPerField implements Comparable<TermsHashPerField> {
 
   void reset() {
     bytesHash.clear(false);
+    // the cache is re-created, and its hit rate tracked again, when the field is next started
+    releaseTermIDCache();
+    termIDCacheDisabled = false;
     if (nextPerField != null) {
       nextPerField.reset();
     }
@@ -148,7 +158,25 @@ abstract class TermsHashPerField implements Comparable<TermsHashPerField> {
     // We are first in the chain so we must "intern" the
     // term text into textStart address
     // Get the text & hash of this term.
-    int termID = bytesHash.add(termAtt.getBytesRef());
+    final BytesRef termBytes = termAtt.getBytesRef();
+    int termID;
+    if (termIDCache != null) {
+      termID = termIDCache.get(termBytes);
+      if (termID == -1) {
+        termID = bytesHash.add(termBytes);
+        termIDCache.put(termBytes, termID >= 0 ? termID : (-termID)-1);
+      } else {
+        // Cache hit: encode as an already seen term
+        termID = (-termID)-1;
+      }
+      if (termIDCache.missesDominate()) {
+        // high-cardinality field: lookups only add overhead
+        releaseTermIDCache();
+        termIDCacheDisabled = true;
+      }
+    } else {
+      termID = bytesHash.add(termBytes);
+    }
 
     //System.out.println("add term=" + termBytesRef.utf8ToString() + " doc=" + docState.docID + " termID=" + termID);
 
@@ -190,6 +218,22 @@ abstract class TermsHashPerField implements Comparable<TermsHashPerField> {
     }
   }
 
+  /** Puts a {@link TermIDCache} in front of the hash for
+   *  the terms added through {@link #add()}.  Only useful
+   *  for the first TermsHash of the chain. */
+  void enableTermIDCache() {
+    if (termIDCache == null && termIDCacheDisabled == false) {
+      termIDCache = new TermIDCache(bytesHash, bytesUsed);
+    }
+  }
+
+  private void releaseTermIDCache() {
+    if (termIDCache != null) {
+      bytesUsed.addAndGet(-TermIDCache.SIZE * Integer.BYTES);
+      termIDCache = null;
+    }
+  }
+
   int[] intUptos;
   int intUptoStart;
 
@@ -224,6 +268,67 @@ abstract class TermsHashPerField implements Comparable<TermsHashPerField> {
     writeByte(stream, (byte) i);
   }
 
+  /** Small direct-mapped front cache from term bytes to
+   *  term ID, in front of {@link BytesRefHash}.  A hit costs
+   *  a cheap hash over the length and the first and last
+   *  bytes plus one byte comparison, instead of a murmur hash
+   *  over the whole term and a probe of the hash table.
+   *  Misses cost an extra probe, so the hit rate is checked
+   *  every {@link #CHECK_INTERVAL} lookups. */
+  static final class TermIDCache {
+    static final int SIZE = 64;
+    private static final int MASK = SIZE - 1;
+    static final int CHECK_INTERVAL = 1024;
+
+    private final BytesRefHash bytesHash;
+    private final int[] termIDs = new int[SIZE];
+    private final BytesRef scratch = new BytesRef();
+    // since the last check of the hit rate:
+    private int lookups, hits;
+
+    TermIDCache(BytesRefHash bytesHash, Counter bytesUsed) {
+      this.bytesHash = bytesHash;
+      Arrays.fill(termIDs, -1);
+      bytesUsed.addAndGet(SIZE * Integer.BYTES);
+    }
+
+    private static int slot(BytesRef term) {
+      int h = term.length;
+      if (term.length > 0) {
+        h = 31 * h + term.bytes[term.offset];
+        h = 31 * h + term.bytes[term.offset + term.length - 1];
+      }
+      return (h ^ (h >>> 7)) & MASK;
+    }
+
+    /** Returns the ID of the given term, or -1 if it is not
+     *  cached. */
+    int get(BytesRef term) {
+      lookups++;
+      final int termID = termIDs[slot(term)];
+      if (termID != -1 && bytesHash.get(termID, scratch).bytesEquals(term)) {
+        hits++;
+        return termID;
+      }
+      return -1;
+    }
+
+    /** Returns true if most of the last {@link #CHECK_INTERVAL}
+     *  lookups missed, once every {@link #CHECK_INTERVAL} lookups. */
+    boolean missesDominate() {
+      if (lookups < CHECK_INTERVAL) {
+        return false;
+      }
+      final boolean missesDominate = hits < lookups / 2;
+      lookups = hits = 0;
+      return missesDominate;
+    }
+
+    void put(BytesRef term, int termID) {
+      termIDs[slot(term)] = termID;
+    }
+  }
+
   private static final class PostingsBytesStartArray extends BytesStartArray {
 
     private final TermsHashPerField perField;
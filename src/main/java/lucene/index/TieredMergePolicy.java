@@ -42,6 +42,11 @@ import java.util.*;
  *  and those reclaiming more deletes, are
  *  favored.
  *
+ *  <p>Alternatively, candidate merges can be scored by a
+ *  {@link MergeCostModel} (see {@link #setMergeCostModel}),
+ *  which favors the merges that make searches cheapest per
+ *  byte written.
+ *
  *  <p>If a merge will produce a segment that's larger than
  *  {@link #setMaxMergedSegmentMB}, then the policy will
  *  merge fewer segments (down to 1 at once, if that one has
@@ -93,6 +98,7 @@ public class TieredMergePolicy extends MergePolicy {
   private double segsPerTier = 10.0;
   private double forceMergeDeletesPctAllowed = 10.0;
   private double deletesPctAllowed = 33.0;
+  private MergeCostModel costModel = null;
 
   /** Sole constructor, setting all settings to their
    *  defaults. */
@@ -241,6 +247,24 @@ public class TieredMergePolicy extends MergePolicy {
     return segsPerTier;
   }
 
+  /** Sets the {@link MergeCostModel} used to choose among candidate merges once
+   *  the index is over its segment budget: merges with the highest search-time
+   *  benefit per byte written are picked first, lopsided merges that don't reach
+   *  the max merged segment size are penalized like with the default scoring, and
+   *  merges that make searches no cheaper are never picked.  Default is <code>null</code>,
+   *  which scores merges by skew, size and reclaimed deletes. */
+  public TieredMergePolicy setMergeCostModel(MergeCostModel costModel) {
+    this.costModel = costModel;
+    return this;
+  }
+
+  /** Returns the current merge cost model, or <code>null</code> if none is set.
+   *
+   * @see #setMergeCostModel */
+  public MergeCostModel getMergeCostModel() {
+    return costModel;
+  }
+
   private static class SegmentSizeAndDocs {
     private final SegmentCommitInfo segInfo;
     private final long sizeInBytes;
@@ -520,6 +544,11 @@ public class TieredMergePolicy extends MergePolicy {
           message("  maybe=" + segString(mergeContext, candidate) + " score=" + score.getScore() + " " + score.getExplanation() + " tooLarge=" + hitTooLarge + " size=" + String.format(Locale.ROOT, "%.3f MB", totAfterMergeBytes/1024./1024.), mergeContext);
         }
 
+        if (costModel != null && score.getScore() == Double.POSITIVE_INFINITY) {
+          // the cost model says this merge makes searches no cheaper: never run it, even if it is the only candidate
+          continue;
+        }
+
         if ((bestScore == null || score.getScore() < bestScore.getScore()) && (!hitTooLarge || !maxMergeIsRunning)) {
           best = candidate;
           bestScore = score;
@@ -556,33 +585,18 @@ public class TieredMergePolicy extends MergePolicy {
 
   /** Expert: scores one merge; subclasses can override. */
   protected MergeScore score(List<SegmentCommitInfo> candidate, boolean hitTooLarge, Map<SegmentCommitInfo, SegmentSizeAndDocs> segmentsSizes) throws IOException {
+    if (costModel != null) {
+      return costModelScore(candidate, hitTooLarge, segmentsSizes);
+    }
+
     long totBeforeMergeBytes = 0;
     long totAfterMergeBytes = 0;
-    long totAfterMergeBytesFloored = 0;
     for(SegmentCommitInfo info : candidate) {
-      final long segBytes = segmentsSizes.get(info).sizeInBytes;
-      totAfterMergeBytes += segBytes;
-      totAfterMergeBytesFloored += floorSize(segBytes);
+      totAfterMergeBytes += segmentsSizes.get(info).sizeInBytes;
       totBeforeMergeBytes += info.sizeInBytes();
     }
 
-    // Roughly measure "skew" of the merge, i.e. how
-    // "balanced" the merge is (whether the segments are
-    // about the same size), which can range from
-    // 1.0/numSegsBeingMerged (good) to 1.0 (poor). Heavily
-    // lopsided merges (skew near 1.0) is no good; it means
-    // O(N^2) merge cost over time:
-    final double skew;
-    if (hitTooLarge) {
-      // Pretend the merge has perfect skew; skew doesn't
-      // matter in this case because this merge will not
-      // "cascade" and so it cannot lead to N^2 merge cost
-      // over time:
-      final int mergeFactor = (int) Math.min(maxMergeAtOnce, segsPerTier);
-      skew = 1.0/mergeFactor;
-    } else {
-      skew = ((double) floorSize(segmentsSizes.get(candidate.get(0)).sizeInBytes)) / totAfterMergeBytesFloored;
-    }
+    final double skew = skew(candidate, hitTooLarge, segmentsSizes);
 
     // Strongly favor merges with less skew (smaller
     // mergeScore is better):
@@ -615,6 +629,57 @@ public class TieredMergePolicy extends MergePolicy {
   }
 
 
+  /**
+   * Roughly measures the "skew" of a merge, i.e. how "balanced" the merge is
+   * (whether the segments are about the same size), which can range from
+   * 1.0/numSegsBeingMerged (good) to 1.0 (poor). Heavily lopsided merges
+   * (skew near 1.0) are no good; they mean O(N^2) merge cost over time.
+   */
+  private double skew(List<SegmentCommitInfo> candidate, boolean hitTooLarge, Map<SegmentCommitInfo, SegmentSizeAndDocs> segmentsSizes) {
+    if (hitTooLarge) {
+      // Pretend the merge has perfect skew; skew doesn't
+      // matter in this case because this merge will not
+      // "cascade" and so it cannot lead to N^2 merge cost
+      // over time:
+      final int mergeFactor = (int) Math.min(maxMergeAtOnce, segsPerTier);
+      return 1.0/mergeFactor;
+    }
+    long totAfterMergeBytesFloored = 0;
+    for(SegmentCommitInfo info : candidate) {
+      totAfterMergeBytesFloored += floorSize(segmentsSizes.get(info).sizeInBytes);
+    }
+    return ((double) floorSize(segmentsSizes.get(candidate.get(0)).sizeInBytes)) / totAfterMergeBytesFloored;
+  }
+
+  private MergeScore costModelScore(List<SegmentCommitInfo> candidate, boolean hitTooLarge, Map<SegmentCommitInfo, SegmentSizeAndDocs> segmentsSizes) throws IOException {
+    final List<MergeCostModel.SegmentStats> stats = new ArrayList<>(candidate.size());
+    for (SegmentCommitInfo info : candidate) {
+      final SegmentSizeAndDocs segSizeDocs = segmentsSizes.get(info);
+      stats.add(new MergeCostModel.SegmentStats(segSizeDocs.name, segSizeDocs.maxDoc, segSizeDocs.delCount, info.sizeInBytes()));
+    }
+
+    // The cost model only sees what this merge writes, not that the segment it
+    // produces will be rewritten by later merges, so keep penalizing lopsided
+    // merges unless they produce a max-sized segment. Lower scores are better,
+    // and merges that make searches no cheaper score +Infinity and are skipped:
+    final double value = costModel.mergeValue(stats);
+    final double skew = skew(candidate, hitTooLarge, segmentsSizes);
+    final double finalMergeScore = value > 0 ? skew / value : Double.POSITIVE_INFINITY;
+
+    return new MergeScore() {
+
+      @Override
+      public double getScore() {
+        return finalMergeScore;
+      }
+
+      @Override
+      public String getExplanation() {
+        return "benefitPerCost=" + String.format(Locale.ROOT, "%.3f", value) + " skew=" + String.format(Locale.ROOT, "%.3f", skew);
+      }
+    };
+  }
+
   @Override
   public MergeSpecification findForcedMerges(SegmentInfos infos, int maxSegmentCount, Map<SegmentCommitInfo,Boolean> segmentsToMerge, MergeContext mergeContext) throws IOException {
     if (verbose(mergeContext)) {
@@ -760,6 +825,41 @@ public class TieredMergePolicy extends MergePolicy {
 
   }
 
+  /**
+   * Merges up to {@link #getMaxMergeAtOnce} of the smallest segments that are below
+   * {@link #getFloorSegmentMB} and not merging yet into one segment, if there are at
+   * least two such segments.  Such segments are typically the ones that were just
+   * flushed by an NRT reopen.
+   */
+  @Override
+  public MergeSpecification findFullFlushMerges(MergeTrigger mergeTrigger, SegmentInfos infos, MergeContext mergeContext) throws IOException {
+    final Set<SegmentCommitInfo> merging = mergeContext.getMergingSegments();
+    List<SegmentSizeAndDocs> sortedInfos = getSortedBySegmentSize(infos, mergeContext);
+
+    List<SegmentCommitInfo> candidate = new ArrayList<>();
+    // Walk from the smallest segment up:
+    for (int i = sortedInfos.size() - 1; i >= 0 && candidate.size() < maxMergeAtOnce; i--) {
+      SegmentSizeAndDocs segSizeDocs = sortedInfos.get(i);
+      if (segSizeDocs.sizeInBytes >= floorSegmentBytes) {
+        break;
+      }
+      if (merging.contains(segSizeDocs.segInfo) == false) {
+        candidate.add(segSizeDocs.segInfo);
+      }
+    }
+
+    if (candidate.size() < 2) {
+      return null;
+    }
+
+    if (verbose(mergeContext)) {
+      message("findFullFlushMerges: trigger=" + mergeTrigger + " merge=" + segString(mergeContext, candidate), mergeContext);
+    }
+    MergeSpecification spec = new MergeSpecification();
+    spec.add(new OneMerge(candidate));
+    return spec;
+  }
+
   private long floorSize(long bytes) {
     return Math.max(floorSegmentBytes, bytes);
   }
@@ -776,6 +876,9 @@ public class TieredMergePolicy extends MergePolicy {
     sb.append("maxCFSSegmentSizeMB=").append(getMaxCFSSegmentSizeMB()).append(", ");
     sb.append("noCFSRatio=").append(noCFSRatio).append(", ");
     sb.append("deletesPctAllowed=").append(deletesPctAllowed);
+    if (costModel != null) {
+      sb.append(", costModel=").append(costModel);
+    }
     return sb.toString();
   }
 }
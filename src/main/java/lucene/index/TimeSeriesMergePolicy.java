@@ -0,0 +1,612 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package lucene.index;
+
+
+import lucene.codecs.Codec;
+import lucene.codecs.FilterCodec;
+import lucene.codecs.PointsFormat;
+import lucene.codecs.PointsReader;
+import lucene.codecs.PointsWriter;
+import lucene.codecs.SegmentInfoFormat;
+import lucene.document.LongPoint;
+import lucene.store.Directory;
+import lucene.store.IOContext;
+import lucene.util.IOUtils;
+import lucene.util.StringHelper;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A merge policy for time-ordered data, such as logs or metrics, that keeps
+ * segments aligned on time ranges so that time-range queries touch as few
+ * segments as possible.
+ * <p>
+ * Every document is expected to have a timestamp indexed as a one-dimension
+ * {@link LongPoint} in the field given to the constructor, typically in
+ * milliseconds since the epoch.  The time range of a segment is the min and
+ * max value of its points for this field.  Segments are ordered by time
+ * range and this policy only merges runs of segments that are adjacent in
+ * this order, in time order, so the merged segment covers a time range that
+ * no other segment overlaps more than its sources did.  Within a run, merges
+ * are picked like a log merge policy: at least {@link #setMinMergeAtOnce}
+ * and at most {@link #setMaxMergeAtOnce} segments, up to
+ * {@link #setMaxMergedSegmentMB}, and never when a single segment would
+ * make up most of the merge, so that large segments are not rewritten over
+ * and over for small additions.
+ * <p>
+ * Segments whose newest timestamp is older than {@link #setMaxAgeMillis}
+ * are not merged anymore by natural merges, so that data that is not
+ * written to anymore stops being rewritten.  Segments that have no
+ * timestamps are merged among themselves.
+ * <p>
+ * Segments should be written with a codec returned by {@link #wrapCodec},
+ * which records the time range of each segment in its attributes as it is
+ * flushed or merged, so that finding merges doesn't need to read any file.
+ * The time range of other segments, eg. segments written before this policy
+ * was configured, is read from their points index the first time they are
+ * seen.  Either way, time ranges are cached for as long as the segment exists.
+ * A timestamp field that is not indexed as a one-dimension {@link LongPoint}
+ * is ignored, so that segments are merged as if they had no timestamps.
+ *
+ * @lucene.experimental
+ */
+public class TimeSeriesMergePolicy extends MergePolicy {
+
+  /** Default noCFSRatio.  If a merge's size is {@code >= 10%} of
+   *  the index, then we disable compound file for it.
+   *  @see MergePolicy#setNoCFSRatio */
+  public static final double DEFAULT_NO_CFS_RATIO = 0.1;
+
+  private final String timestampField;
+  private int minMergeAtOnce = 4;
+  private int maxMergeAtOnce = 10;
+  private long maxMergedSegmentBytes = 5*1024*1024*1024L;
+  private long maxAgeMillis = Long.MAX_VALUE;
+  private double forceMergeDeletesPctAllowed = 10.0;
+
+  /** Time ranges by segment ID, pruned to the segments of the last call. */
+  private final Map<String,TimeRange> timeRanges = new HashMap<>();
+
+  /** Prefix of the segment attribute that holds the time range of a segment,
+   *  followed by the name of the timestamp field. */
+  private static final String TIME_RANGE_KEY_PREFIX = TimeSeriesMergePolicy.class.getSimpleName() + ".timeRange.";
+  /** Value of the time range attribute of segments without timestamps. */
+  private static final String NO_TIME_RANGE = "none";
+
+  /** Creates a policy that orders segments by the timestamps of the given field. */
+  public TimeSeriesMergePolicy(String timestampField) {
+    super(DEFAULT_NO_CFS_RATIO, MergePolicy.DEFAULT_MAX_CFS_SEGMENT_SIZE);
+    if (timestampField == null) {
+      throw new NullPointerException("timestampField must not be null");
+    }
+    this.timestampField = timestampField;
+  }
+
+  /** Returns the field that holds timestamps. */
+  public String getTimestampField() {
+    return timestampField;
+  }
+
+  /**
+   * Returns a codec that writes the same files as the given codec, and also
+   * records the time range of each segment it writes in the segment's
+   * attributes, so that this policy doesn't need to read the points of new
+   * segments.  The returned codec has the same name as the given codec, so
+   * that indices it writes are read with the given codec.  The time range of
+   * a merged segment is that of its sources, which may be wider than that of
+   * its live documents.
+   */
+  public Codec wrapCodec(Codec codec) {
+    final String timeRangeKey = TIME_RANGE_KEY_PREFIX + timestampField;
+    final PointsFormat pointsFormat = new TimeRangePointsFormat(codec.pointsFormat(), timestampField, timeRangeKey);
+    final SegmentInfoFormat segmentInfoFormat = new TimeRangeSegmentInfoFormat(codec.segmentInfoFormat(), timeRangeKey);
+    return new FilterCodec(codec.getName(), codec) {
+      @Override
+      public PointsFormat pointsFormat() {
+        return pointsFormat;
+      }
+
+      @Override
+      public SegmentInfoFormat segmentInfoFormat() {
+        return segmentInfoFormat;
+      }
+    };
+  }
+
+  /** Returns whether the given field is indexed as a one-dimension {@link LongPoint}. */
+  private static boolean isTimestampField(FieldInfo fieldInfo) {
+    return fieldInfo.getPointDataDimensionCount() == 1 && fieldInfo.getPointNumBytes() == Long.BYTES;
+  }
+
+  /** Records the min and max timestamps of the segment being written in its attributes. */
+  private static class TimeRangePointsFormat extends PointsFormat {
+    private final PointsFormat in;
+    private final String timestampField;
+    private final String timeRangeKey;
+
+    TimeRangePointsFormat(PointsFormat in, String timestampField, String timeRangeKey) {
+      this.in = in;
+      this.timestampField = timestampField;
+      this.timeRangeKey = timeRangeKey;
+    }
+
+    @Override
+    public PointsWriter fieldsWriter(SegmentWriteState state) throws IOException {
+      final PointsWriter writer = in.fieldsWriter(state);
+      return new PointsWriter() {
+        private long min = Long.MAX_VALUE, max = Long.MIN_VALUE;
+
+        private void collect(long value) {
+          min = Math.min(min, value);
+          max = Math.max(max, value);
+        }
+
+        @Override
+        public void writeField(FieldInfo fieldInfo, PointsReader values) throws IOException {
+          if (fieldInfo.name.equals(timestampField) && isTimestampField(fieldInfo)) {
+            // the values of a flushed segment don't know their min and max, visit them all:
+            values.getValues(fieldInfo.name).intersect(new PointValues.IntersectVisitor() {
+              @Override
+              public void visit(int docID) {
+                throw new IllegalStateException();
+              }
+
+              @Override
+              public void visit(int docID, byte[] packedValue) {
+                collect(LongPoint.decodeDimension(packedValue, 0));
+              }
+
+              @Override
+              public PointValues.Relation compare(byte[] minPackedValue, byte[] maxPackedValue) {
+                return PointValues.Relation.CELL_CROSSES_QUERY;
+              }
+            });
+          }
+          writer.writeField(fieldInfo, values);
+        }
+
+        @Override
+        public void merge(MergeState mergeState) throws IOException {
+          final FieldInfo mergeFieldInfo = mergeState.mergeFieldInfos.fieldInfo(timestampField);
+          if (mergeFieldInfo != null && isTimestampField(mergeFieldInfo)) {
+            for (int i = 0; i < mergeState.pointsReaders.length; i++) {
+              final FieldInfo fieldInfo = mergeState.fieldInfos[i].fieldInfo(timestampField);
+              if (mergeState.pointsReaders[i] != null && fieldInfo != null && isTimestampField(fieldInfo)) {
+                final PointValues values = mergeState.pointsReaders[i].getValues(timestampField);
+                if (values != null) {
+                  collect(LongPoint.decodeDimension(values.getMinPackedValue(), 0));
+                  collect(LongPoint.decodeDimension(values.getMaxPackedValue(), 0));
+                }
+              }
+            }
+          }
+          // let the wrapped writer use its own, possibly faster, merge:
+          writer.merge(mergeState);
+        }
+
+        @Override
+        public void finish() throws IOException {
+          writer.finish();
+          if (min <= max) {
+            state.segmentInfo.putAttribute(timeRangeKey, min + "," + max);
+          }
+        }
+
+        @Override
+        public void close() throws IOException {
+          writer.close();
+        }
+      };
+    }
+
+    @Override
+    public PointsReader fieldsReader(SegmentReadState state) throws IOException {
+      return in.fieldsReader(state);
+    }
+  }
+
+  /** Records that segments whose points didn't record a time range have no timestamps. */
+  private static class TimeRangeSegmentInfoFormat extends SegmentInfoFormat {
+    private final SegmentInfoFormat in;
+    private final String timeRangeKey;
+
+    TimeRangeSegmentInfoFormat(SegmentInfoFormat in, String timeRangeKey) {
+      this.in = in;
+      this.timeRangeKey = timeRangeKey;
+    }
+
+    @Override
+    public SegmentInfo read(Directory directory, String segmentName, byte[] segmentID, IOContext context) throws IOException {
+      return in.read(directory, segmentName, segmentID, context);
+    }
+
+    @Override
+    public void write(Directory dir, SegmentInfo info, IOContext ioContext) throws IOException {
+      // points are written before the segment info, if the segment has any:
+      if (info.getAttribute(timeRangeKey) == null) {
+        info.putAttribute(timeRangeKey, NO_TIME_RANGE);
+      }
+      in.write(dir, info, ioContext);
+    }
+  }
+
+  /** Minimum number of adjacent segments to merge at once during natural
+   *  merging.  Default is 4. */
+  public TimeSeriesMergePolicy setMinMergeAtOnce(int v) {
+    if (v < 2) {
+      throw new IllegalArgumentException("minMergeAtOnce must be > 1 (got " + v + ")");
+    }
+    minMergeAtOnce = v;
+    return this;
+  }
+
+  /** Returns the current minMergeAtOnce setting.
+   *
+   * @see #setMinMergeAtOnce */
+  public int getMinMergeAtOnce() {
+    return minMergeAtOnce;
+  }
+
+  /** Maximum number of segments to be merged at a time.  Default is 10. */
+  public TimeSeriesMergePolicy setMaxMergeAtOnce(int v) {
+    if (v < 2) {
+      throw new IllegalArgumentException("maxMergeAtOnce must be > 1 (got " + v + ")");
+    }
+    maxMergeAtOnce = v;
+    return this;
+  }
+
+  /** Returns the current maxMergeAtOnce setting.
+   *
+   * @see #setMaxMergeAtOnce */
+  public int getMaxMergeAtOnce() {
+    return maxMergeAtOnce;
+  }
+
+  /** Maximum sized segment to produce during normal merging, estimated by
+   *  summing sizes of to-be-merged segments, compensating for percent
+   *  deleted docs.  Default is 5 GB. */
+  public TimeSeriesMergePolicy setMaxMergedSegmentMB(double v) {
+    if (v < 0.0) {
+      throw new IllegalArgumentException("maxMergedSegmentMB must be >=0 (got " + v + ")");
+    }
+    v *= 1024 * 1024;
+    maxMergedSegmentBytes = v > Long.MAX_VALUE ? Long.MAX_VALUE : (long) v;
+    return this;
+  }
+
+  /** Returns the current maxMergedSegmentMB setting.
+   *
+   * @see #setMaxMergedSegmentMB */
+  public double getMaxMergedSegmentMB() {
+    return maxMergedSegmentBytes/1024.0/1024.0;
+  }
+
+  /** Segments whose newest timestamp is older than this many milliseconds
+   *  before {@link #currentTimeMillis()} are not merged anymore by natural
+   *  merges.  Default is {@link Long#MAX_VALUE}, ie. segments never age. */
+  public TimeSeriesMergePolicy setMaxAgeMillis(long v) {
+    if (v < 0) {
+      throw new IllegalArgumentException("maxAgeMillis must be >= 0 (got " + v + ")");
+    }
+    maxAgeMillis = v;
+    return this;
+  }
+
+  /** Returns the current maxAgeMillis setting.
+   *
+   * @see #setMaxAgeMillis */
+  public long getMaxAgeMillis() {
+    return maxAgeMillis;
+  }
+
+  /** When forceMergeDeletes is called, we only merge away a
+   *  segment if its delete percentage is over this
+   *  threshold.  Default is 10%. */
+  public TimeSeriesMergePolicy setForceMergeDeletesPctAllowed(double v) {
+    if (v < 0.0 || v > 100.0) {
+      throw new IllegalArgumentException("forceMergeDeletesPctAllowed must be between 0.0 and 100.0 inclusive (got " + v + ")");
+    }
+    forceMergeDeletesPctAllowed = v;
+    return this;
+  }
+
+  /** Returns the current forceMergeDeletesPctAllowed setting.
+   *
+   * @see #setForceMergeDeletesPctAllowed */
+  public double getForceMergeDeletesPctAllowed() {
+    return forceMergeDeletesPctAllowed;
+  }
+
+  /** Returns the current time, in the unit of timestamps, against which the
+   *  age of segments is computed.  Defaults to {@link System#currentTimeMillis()}. */
+  protected long currentTimeMillis() {
+    return System.currentTimeMillis();
+  }
+
+  /** Time range of a segment; a segment without timestamps has a null range. */
+  private static class TimeRange {
+    final long min, max;
+
+    TimeRange(long min, long max) {
+      this.min = min;
+      this.max = max;
+    }
+  }
+
+  /** A segment with its time range and size. */
+  private static class Candidate {
+    final SegmentCommitInfo info;
+    final TimeRange range;
+    final long sizeInBytes;
+
+    Candidate(SegmentCommitInfo info, TimeRange range, long sizeInBytes) {
+      this.info = info;
+      this.range = range;
+      this.sizeInBytes = sizeInBytes;
+    }
+
+    @Override
+    public String toString() {
+      return info.info.name + (range == null ? "[no timestamps]" : "[" + range.min + " TO " + range.max + "]") + "(" + sizeInBytes + " bytes)";
+    }
+  }
+
+  /** Orders segments without timestamps first, then by min and max timestamp. */
+  private static final Comparator<Candidate> TIME_ORDER = (a, b) -> {
+    if (a.range == null || b.range == null) {
+      return Boolean.compare(a.range != null, b.range != null);
+    }
+    int cmp = Long.compare(a.range.min, b.range.min);
+    return cmp != 0 ? cmp : Long.compare(a.range.max, b.range.max);
+  };
+
+  /** Returns all segments with their time range, in time order. */
+  private List<Candidate> getSortedByTime(SegmentInfos infos, MergeContext mergeContext) throws IOException {
+    final List<Candidate> candidates = new ArrayList<>();
+    final Set<String> ids = new HashSet<>();
+    for (SegmentCommitInfo info : infos) {
+      final String id = StringHelper.idToString(info.info.getId());
+      ids.add(id);
+      final TimeRange range;
+      synchronized (timeRanges) {
+        if (timeRanges.containsKey(id)) {
+          range = timeRanges.get(id);
+        } else {
+          range = getTimeRange(info.info, mergeContext);
+          timeRanges.put(id, range);
+        }
+      }
+      candidates.add(new Candidate(info, range, size(info, mergeContext)));
+    }
+    synchronized (timeRanges) {
+      timeRanges.keySet().retainAll(ids);
+    }
+    candidates.sort(TIME_ORDER);
+    return candidates;
+  }
+
+  /** Returns the time range that {@link #wrapCodec} recorded for a segment, or
+   *  reads it from the segment's points if it was written by another codec. */
+  private TimeRange getTimeRange(SegmentInfo si, MergeContext mergeContext) throws IOException {
+    final String timeRange = si.getAttribute(TIME_RANGE_KEY_PREFIX + timestampField);
+    if (timeRange == null) {
+      if (verbose(mergeContext)) {
+        message("  segment " + si.name + " has no recorded time range, reading its points", mergeContext);
+      }
+      return readTimeRange(si);
+    } else if (timeRange.equals(NO_TIME_RANGE)) {
+      return null;
+    }
+    final int comma = timeRange.indexOf(',');
+    return new TimeRange(Long.parseLong(timeRange.substring(0, comma)), Long.parseLong(timeRange.substring(comma + 1)));
+  }
+
+  /** Reads the min and max timestamps of a segment from its points. */
+  private TimeRange readTimeRange(SegmentInfo si) throws IOException {
+    final Codec codec = si.getCodec();
+    Directory cfsDir = null;
+    try {
+      Directory dir = si.dir;
+      if (si.getUseCompoundFile()) {
+        dir = cfsDir = codec.compoundFormat().getCompoundReader(si.dir, si, IOContext.READONCE);
+      }
+      final FieldInfos fieldInfos = codec.fieldInfosFormat().read(dir, si, "", IOContext.READONCE);
+      final FieldInfo fieldInfo = fieldInfos.fieldInfo(timestampField);
+      if (fieldInfo == null || isTimestampField(fieldInfo) == false) {
+        return null;
+      }
+      try (PointsReader pointsReader = codec.pointsFormat().fieldsReader(new SegmentReadState(dir, si, fieldInfos, IOContext.READONCE))) {
+        final PointValues values = pointsReader.getValues(timestampField);
+        if (values == null) {
+          return null;
+        }
+        return new TimeRange(LongPoint.decodeDimension(values.getMinPackedValue(), 0),
+                             LongPoint.decodeDimension(values.getMaxPackedValue(), 0));
+      }
+    } finally {
+      IOUtils.close(cfsDir);
+    }
+  }
+
+  @Override
+  public MergeSpecification findMerges(MergeTrigger mergeTrigger, SegmentInfos infos, MergeContext mergeContext) throws IOException {
+    final Set<SegmentCommitInfo> merging = mergeContext.getMergingSegments();
+    final long minTimestamp = currentTimeMillis() - maxAgeMillis;
+    final List<Candidate> sorted = getSortedByTime(infos, mergeContext);
+    if (verbose(mergeContext)) {
+      message("findMerges: " + sorted.size() + " segments in time order: " + sorted, mergeContext);
+    }
+
+    // Split into runs of adjacent eligible segments: a segment that is
+    // merging, too large or too old breaks a run, since merging across it
+    // would create a segment that overlaps it.
+    MergeSpecification spec = null;
+    List<Candidate> run = new ArrayList<>();
+    for (Candidate candidate : sorted) {
+      final boolean eligible = merging.contains(candidate.info) == false
+          && candidate.sizeInBytes < maxMergedSegmentBytes / 2
+          && (candidate.range == null || maxAgeMillis == Long.MAX_VALUE || candidate.range.max >= minTimestamp);
+      final boolean sameGroup = run.isEmpty() || (run.get(0).range == null) == (candidate.range == null);
+      if (eligible == false || sameGroup == false) {
+        spec = findMergesInRun(run, spec, mergeContext);
+        run = new ArrayList<>();
+      }
+      if (eligible) {
+        run.add(candidate);
+      }
+    }
+    return findMergesInRun(run, spec, mergeContext);
+  }
+
+  private MergeSpecification findMergesInRun(List<Candidate> run, MergeSpecification spec, MergeContext mergeContext) {
+    int start = 0;
+    while (run.size() - start >= minMergeAtOnce) {
+      int end = start;
+      long totalBytes = 0;
+      long maxBytes = 0;
+      while (end < run.size() && end - start < maxMergeAtOnce
+          && totalBytes + run.get(end).sizeInBytes <= maxMergedSegmentBytes) {
+        totalBytes += run.get(end).sizeInBytes;
+        maxBytes = Math.max(maxBytes, run.get(end).sizeInBytes);
+        end++;
+      }
+      // don't rewrite a segment that makes up most of the merge:
+      if (end - start >= minMergeAtOnce && maxBytes * 2 <= totalBytes) {
+        final List<SegmentCommitInfo> segments = new ArrayList<>();
+        for (Candidate candidate : run.subList(start, end)) {
+          segments.add(candidate.info);
+        }
+        if (verbose(mergeContext)) {
+          message("  add merge of adjacent segments " + run.subList(start, end), mergeContext);
+        }
+        if (spec == null) {
+          spec = new MergeSpecification();
+        }
+        spec.add(new OneMerge(segments));
+        start = end;
+      } else {
+        start++;
+      }
+    }
+    return spec;
+  }
+
+  @Override
+  public MergeSpecification findForcedMerges(SegmentInfos infos, int maxSegmentCount, Map<SegmentCommitInfo,Boolean> segmentsToMerge, MergeContext mergeContext) throws IOException {
+    if (verbose(mergeContext)) {
+      message("findForcedMerges maxSegmentCount=" + maxSegmentCount + " infos=" + segString(mergeContext, infos) +
+          " segmentsToMerge=" + segmentsToMerge, mergeContext);
+    }
+    final Set<SegmentCommitInfo> merging = mergeContext.getMergingSegments();
+    final List<Candidate> eligible = new ArrayList<>();
+    long totalBytes = 0;
+    for (Candidate candidate : getSortedByTime(infos, mergeContext)) {
+      if (segmentsToMerge.containsKey(candidate.info)) {
+        if (merging.contains(candidate.info)) {
+          // wait for running merges to finish, to keep segments in time order
+          return null;
+        }
+        eligible.add(candidate);
+        totalBytes += candidate.sizeInBytes;
+      }
+    }
+    if (eligible.size() <= maxSegmentCount && (eligible.size() != 1 || isMerged(infos, eligible.get(0).info, mergeContext))) {
+      return null;
+    }
+
+    // Cut the time-ordered segments into maxSegmentCount runs of similar size:
+    MergeSpecification spec = null;
+    final double targetBytes = (double) totalBytes / maxSegmentCount;
+    List<SegmentCommitInfo> segments = new ArrayList<>();
+    long runBytes = 0;
+    int runsLeft = maxSegmentCount;
+    for (int i = 0; i < eligible.size(); i++) {
+      final Candidate candidate = eligible.get(i);
+      segments.add(candidate.info);
+      runBytes += candidate.sizeInBytes;
+      final int segmentsLeft = eligible.size() - i - 1;
+      if (runsLeft > 1 && (runBytes >= targetBytes || segmentsLeft < runsLeft)) {
+        spec = addForcedMerge(spec, segments, infos, mergeContext);
+        segments = new ArrayList<>();
+        runBytes = 0;
+        runsLeft--;
+      }
+    }
+    return addForcedMerge(spec, segments, infos, mergeContext);
+  }
+
+  private MergeSpecification addForcedMerge(MergeSpecification spec, List<SegmentCommitInfo> segments, SegmentInfos infos, MergeContext mergeContext) throws IOException {
+    if (segments.isEmpty() || (segments.size() == 1 && isMerged(infos, segments.get(0), mergeContext))) {
+      return spec;
+    }
+    if (spec == null) {
+      spec = new MergeSpecification();
+    }
+    if (verbose(mergeContext)) {
+      message("  add forced merge " + segString(mergeContext, segments), mergeContext);
+    }
+    spec.add(new OneMerge(segments));
+    return spec;
+  }
+
+  /** Rewrites each segment that has too many deletes on its own, which
+   *  leaves time ranges untouched. */
+  @Override
+  public MergeSpecification findForcedDeletesMerges(SegmentInfos infos, MergeContext mergeContext) throws IOException {
+    if (verbose(mergeContext)) {
+      message("findForcedDeletesMerges infos=" + segString(mergeContext, infos) + " forceMergeDeletesPctAllowed=" + forceMergeDeletesPctAllowed, mergeContext);
+    }
+    final Set<SegmentCommitInfo> merging = mergeContext.getMergingSegments();
+    MergeSpecification spec = null;
+    for (SegmentCommitInfo info : infos) {
+      int delCount = mergeContext.numDeletesToMerge(info);
+      assert assertDelCount(delCount, info);
+      double pctDeletes = 100.*((double) delCount)/info.info.maxDoc();
+      if (pctDeletes > forceMergeDeletesPctAllowed && !merging.contains(info)) {
+        if (spec == null) {
+          spec = new MergeSpecification();
+        }
+        spec.add(new OneMerge(Collections.singletonList(info)));
+      }
+    }
+    return spec;
+  }
+
+  @Override
+  public String toString() {
+    StringBuilder sb = new StringBuilder("[" + getClass().getSimpleName() + ": ");
+    sb.append("timestampField=").append(timestampField).append(", ");
+    sb.append("minMergeAtOnce=").append(minMergeAtOnce).append(", ");
+    sb.append("maxMergeAtOnce=").append(maxMergeAtOnce).append(", ");
+    sb.append("maxMergedSegmentMB=").append(maxMergedSegmentBytes/1024/1024.).append(", ");
+    sb.append("maxAgeMillis=").append(maxAgeMillis).append(", ");
+    sb.append("forceMergeDeletesPctAllowed=").append(forceMergeDeletesPctAllowed).append(", ");
+    sb.append("maxCFSSegmentSizeMB=").append(getMaxCFSSegmentSizeMB()).append(", ");
+    sb.append("noCFSRatio=").append(noCFSRatio);
+    return sb.toString();
+  }
+}
@@ -293,6 +293,23 @@ public class IndexSearcher {
     return reader.document(docID, fieldsToLoad);
   }
 
+  /**
+   * Sugar for <code>.getIndexReader().documents(docIDs)</code>.  Prefer this
+   * over calling {@link #doc(int)} for each hit when loading a page of hits.
+   * @see IndexReader#documents(int[])
+   */
+  public Document[] docs(int[] docIDs) throws IOException {
+    return reader.documents(docIDs);
+  }
+
+  /**
+   * Sugar for <code>.getIndexReader().documents(docIDs, fieldsToLoad)</code>
+   * @see IndexReader#documents(int[], Set)
+   */
+  public Document[] docs(int[] docIDs, Set<String> fieldsToLoad) throws IOException {
+    return reader.documents(docIDs, fieldsToLoad);
+  }
+
   /** Expert: Set the Similarity implementation used by this IndexSearcher.
    *
    */
@@ -40,7 +40,27 @@ public abstract class BufferedIndexInput extends IndexInput implements RandomAcc
    */
   public static final int MERGE_BUFFER_SIZE = 4096;
 
+  /**
+   * The size that the buffer of searches grows to on sequential reads, set to
+   * {@value #MAX_BUFFER_SIZE}.
+   * @see #maxBufferSize(IOContext)
+   */
+  public static final int MAX_BUFFER_SIZE = 16384;
+
+  /**
+   * The size that the buffer of merges and read-once inputs grows to on sequential
+   * reads, set to {@value #MAX_MERGE_BUFFER_SIZE}.
+   * @see #maxBufferSize(IOContext)
+   */
+  public static final int MAX_MERGE_BUFFER_SIZE = 65536;
+
+  // the buffer grows once that many refills in a row were sequential
+  private static final int SEQUENTIAL_REFILLS_BEFORE_GROWTH = 2;
+
   private int bufferSize = BUFFER_SIZE;
+  private int maxBufferSize = BUFFER_SIZE;
+  private int readSize = BUFFER_SIZE;     // number of bytes the next refill reads
+  private int sequentialRefills = 0;
 
   protected byte[] buffer;
 
@@ -59,23 +79,43 @@ public abstract class BufferedIndexInput extends IndexInput implements RandomAcc
     this(resourceDesc, BUFFER_SIZE);
   }
 
+  /** Inits BufferedIndexInput with the buffer sizes for the given {@link IOContext}.
+   *  @see #bufferSize(IOContext)
+   *  @see #maxBufferSize(IOContext) */
   public BufferedIndexInput(String resourceDesc, IOContext context) {
-    this(resourceDesc, bufferSize(context));
+    this(resourceDesc, bufferSize(context), maxBufferSize(context));
   }
 
   /** Inits BufferedIndexInput with a specific bufferSize */
   public BufferedIndexInput(String resourceDesc, int bufferSize) {
+    this(resourceDesc, bufferSize, bufferSize);
+  }
+
+  /**
+   * Inits BufferedIndexInput with a specific bufferSize, and lets the buffer grow
+   * up to {@code maxBufferSize} while the input is read sequentially, so that long
+   * scans need fewer reads.  Random reads still only read {@code bufferSize} bytes.
+   */
+  public BufferedIndexInput(String resourceDesc, int bufferSize, int maxBufferSize) {
     super(resourceDesc);
     checkBufferSize(bufferSize);
+    if (maxBufferSize < bufferSize) {
+      throw new IllegalArgumentException("maxBufferSize must be at least bufferSize (got " + maxBufferSize + " < " + bufferSize + ")");
+    }
     this.bufferSize = bufferSize;
+    this.maxBufferSize = maxBufferSize;
+    this.readSize = bufferSize;
   }
 
   /** Change the buffer size used by this IndexInput */
   public final void setBufferSize(int newSize) {
-    assert buffer == null || bufferSize == buffer.length: "buffer=" + buffer + " bufferSize=" + bufferSize + " buffer.length=" + (buffer != null ? buffer.length : 0);
+    assert buffer == null || bufferSize <= buffer.length: "buffer=" + buffer + " bufferSize=" + bufferSize + " buffer.length=" + (buffer != null ? buffer.length : 0);
     if (newSize != bufferSize) {
       checkBufferSize(newSize);
       bufferSize = newSize;
+      maxBufferSize = Math.max(maxBufferSize, newSize);
+      readSize = newSize;
+      sequentialRefills = 0;
       if (buffer != null) {
         // Resize the existing buffer and carefully save as
         // many bytes as possible starting from the current
@@ -106,6 +146,11 @@ public abstract class BufferedIndexInput extends IndexInput implements RandomAcc
     return bufferSize;
   }
 
+  /** Returns the size that the buffer may grow to on sequential reads. */
+  public final int getMaxBufferSize() {
+    return maxBufferSize;
+  }
+
   private void checkBufferSize(int bufferSize) {
     if (bufferSize < MIN_BUFFER_SIZE)
       throw new IllegalArgumentException("bufferSize must be at least MIN_BUFFER_SIZE (got " + bufferSize + ")");
@@ -328,7 +373,16 @@ public abstract class BufferedIndexInput extends IndexInput implements RandomAcc
 
   private void refill() throws IOException {
     long start = bufferStart + bufferPosition;
-    long end = start + bufferSize;
+    if (bufferLength > 0 && bufferPosition == bufferLength) {
+      // the whole buffer was consumed: sequential access, read more at once
+      if (++sequentialRefills >= SEQUENTIAL_REFILLS_BEFORE_GROWTH && readSize < maxBufferSize) {
+        readSize = Math.min(readSize << 1, maxBufferSize);
+      }
+    } else {
+      sequentialRefills = 0;
+      readSize = bufferSize;
+    }
+    long end = start + readSize;
     if (end > length())  // don't read past EOF
       end = length();
     int newLength = (int)(end - start);
@@ -336,8 +390,12 @@ public abstract class BufferedIndexInput extends IndexInput implements RandomAcc
       throw new EOFException("read past EOF: " + this);
 
     if (buffer == null) {
-      newBuffer(new byte[bufferSize]);  // allocate buffer lazily
+      newBuffer(new byte[readSize]);  // allocate buffer lazily
       seekInternal(bufferStart);
+    } else if (buffer.length < readSize) {
+      // the buffer is consumed, so it can be replaced; it is kept when the
+      // access pattern becomes random again, to avoid reallocating it:
+      newBuffer(new byte[readSize]);
     }
     readInternal(buffer, 0, newLength);
     bufferLength = newLength;
@@ -383,6 +441,8 @@ public abstract class BufferedIndexInput extends IndexInput implements RandomAcc
     clone.bufferLength = 0;
     clone.bufferPosition = 0;
     clone.bufferStart = getFilePointer();
+    clone.readSize = bufferSize;
+    clone.sequentialRefills = 0;
 
     return clone;
   }
@@ -421,7 +481,21 @@ public abstract class BufferedIndexInput extends IndexInput implements RandomAcc
     case MERGE:
       return MERGE_BUFFER_SIZE;
     default:
-      return BUFFER_SIZE;
+      return context.readOnce ? MERGE_BUFFER_SIZE : BUFFER_SIZE;
+    }
+  }
+
+  /**
+   * Returns the sizes that buffers grow to on sequential reads for the given
+   * {@link IOContext}: merges and read-once inputs are scanned from start to end,
+   * so they read larger blocks than searches.
+   */
+  public static int maxBufferSize(IOContext context) {
+    switch (context.context) {
+    case MERGE:
+      return MAX_MERGE_BUFFER_SIZE;
+    default:
+      return context.readOnce ? MAX_MERGE_BUFFER_SIZE : MAX_BUFFER_SIZE;
     }
   }
 
@@ -19,6 +19,7 @@ package lucene.store;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.CRC32;
 
 /**
  * A guard that is created for every {@link ByteBufferIndexInput} that tries on best effort
@@ -39,29 +40,74 @@ final class ByteBufferGuard {
   static interface BufferCleaner {
     void freeBuffer(String resourceDescription, ByteBuffer b) throws IOException;
   }
+
+  /**
+   * Pass in an implementation of this interface to prefetch ranges of ByteBuffers.
+   * MMapDirectory implements this to load pages ahead of reads.
+   */
+  @FunctionalInterface
+  static interface BufferPrefetcher {
+    void prefetch(ByteBufferGuard guard, ByteBuffer b, int offset, int length) throws IOException;
+  }
+
+  /**
+   * Pass in an implementation of this interface to be told about the named slices
+   * that are taken of the original input, eg. the sub-files of a compound file.
+   * MMapDirectory implements this to apply the read advice of each sub-file.
+   */
+  @FunctionalInterface
+  static interface SliceListener {
+    void sliced(String sliceDescription, ByteBuffer b, int offset, int length);
+  }
   
   private final String resourceDescription;
   private final BufferCleaner cleaner;
+  private final BufferPrefetcher prefetcher;
+  private final SliceListener sliceListener;
   
   /** Not volatile; see comments on visibility below! */
   private boolean invalidated = false;
   
   /** Used as a store-store barrier; see comments below! */
   private final AtomicInteger barrier = new AtomicInteger();
+
+  /** Number of in-flight background reads; the sign bit is set once the buffers are about to be unmapped. */
+  private final AtomicInteger backgroundReads = new AtomicInteger();
   
   /**
    * Creates an instance to be used for a single {@link ByteBufferIndexInput} which
    * must be shared by all of its clones.
    */
   public ByteBufferGuard(String resourceDescription, BufferCleaner cleaner) {
+    this(resourceDescription, cleaner, null);
+  }
+
+  /**
+   * Creates an instance to be used for a single {@link ByteBufferIndexInput} which
+   * must be shared by all of its clones, with a prefetcher that may be {@code null}.
+   */
+  public ByteBufferGuard(String resourceDescription, BufferCleaner cleaner, BufferPrefetcher prefetcher) {
+    this(resourceDescription, cleaner, prefetcher, null);
+  }
+
+  /**
+   * Creates an instance to be used for a single {@link ByteBufferIndexInput} which
+   * must be shared by all of its clones, with a prefetcher and a slice listener that
+   * may be {@code null}.
+   */
+  public ByteBufferGuard(String resourceDescription, BufferCleaner cleaner, BufferPrefetcher prefetcher, SliceListener sliceListener) {
     this.resourceDescription = resourceDescription;
     this.cleaner = cleaner;
+    this.prefetcher = prefetcher;
+    this.sliceListener = sliceListener;
   }
   
   /**
    * Invalidates this guard and unmaps (if supported).
    */
   public void invalidateAndUnmap(ByteBuffer... bufs) throws IOException {
+    // reject new background reads:
+    backgroundReads.getAndUpdate(reads -> reads | Integer.MIN_VALUE);
     if (cleaner != null) {
       invalidated = true;
       // This call should hopefully flush any CPU caches and as a result make
@@ -74,6 +120,10 @@ final class ByteBufferGuard {
       barrier.lazySet(0);
       // we give other threads a bit of time to finish reads on their ByteBuffer...:
       Thread.yield();
+      // ...but background reads, which we have no control over, must be done:
+      while (backgroundReads.get() != Integer.MIN_VALUE) {
+        Thread.yield();
+      }
       // finally unmap the ByteBuffers:
       for (ByteBuffer b : bufs) {
         cleaner.freeBuffer(resourceDescription, b);
@@ -81,6 +131,27 @@ final class ByteBufferGuard {
     }
   }
   
+  /**
+   * Registers a read from a thread that does not own the input, e.g. to load pages in
+   * the background, and returns false if the buffers are unmapped or about to be.
+   * Unlike the best-effort check of other reads, this is safe: buffers are not unmapped
+   * until {@link #endBackgroundRead} is called.  Background reads should be short, since
+   * closing the input waits for them.
+   */
+  boolean beginBackgroundRead() {
+    for (int reads = backgroundReads.get(); reads >= 0; reads = backgroundReads.get()) {
+      if (backgroundReads.compareAndSet(reads, reads + 1)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /** Ends a read that {@link #beginBackgroundRead} allowed. */
+  void endBackgroundRead() {
+    backgroundReads.decrementAndGet();
+  }
+
   private void ensureValid() {
     if (invalidated) {
       // this triggers an AlreadyClosedException in ByteBufferIndexInput:
@@ -88,6 +159,34 @@ final class ByteBufferGuard {
     }
   }
   
+  public void prefetch(ByteBuffer receiver, int offset, int length) throws IOException {
+    ensureValid();
+    if (prefetcher != null) {
+      prefetcher.prefetch(this, receiver, offset, length);
+    }
+  }
+
+  /** Returns whether named slices of the original input should be passed to {@link #sliced}. */
+  boolean hasSliceListener() {
+    return sliceListener != null;
+  }
+
+  /** Tells the slice listener that a range of {@code b} is part of a slice with the given description. */
+  void sliced(String sliceDescription, ByteBuffer b, int offset, int length) {
+    ensureValid();
+    sliceListener.sliced(sliceDescription, b, offset, length);
+  }
+
+  /** Passes the next {@code length} bytes of {@code receiver} to the given checksum,
+   *  without copying them, and advances its position. */
+  public void updateChecksum(ByteBuffer receiver, CRC32 checksum, int length) {
+    ensureValid();
+    final ByteBuffer bytes = receiver.duplicate();
+    bytes.limit(bytes.position() + length);
+    checksum.update(bytes);
+    receiver.position(bytes.position());
+  }
+
   public void getBytes(ByteBuffer receiver, byte[] dst, int offset, int length) {
     ensureValid();
     receiver.get(dst, offset, length);
@@ -21,6 +21,7 @@ import java.io.EOFException;
 import java.io.IOException;
 import java.nio.BufferUnderflowException;
 import java.nio.ByteBuffer;
+import java.util.zip.CRC32;
 
 /**
  * Base IndexInput implementation that uses an array
@@ -107,6 +108,28 @@ public abstract class ByteBufferIndexInput extends IndexInput implements RandomA
     }
   }
 
+  @Override
+  public void updateChecksum(CRC32 checksum, long length) throws IOException {
+    if (length < 0 || getFilePointer() + length > length()) {
+      throw new EOFException("read past EOF: " + this);
+    }
+    try {
+      while (length > 0) {
+        while (!curBuf.hasRemaining()) {
+          curBufIndex++;
+          curBuf = buffers[curBufIndex];
+          curBuf.position(0);
+        }
+        // hand the mapped bytes to the checksum directly, which avoids copying them:
+        final int chunk = (int) Math.min(curBuf.remaining(), length);
+        guard.updateChecksum(curBuf, checksum, chunk);
+        length -= chunk;
+      }
+    } catch (NullPointerException npe) {
+      throw new AlreadyClosedException("Already closed: " + this);
+    }
+  }
+
   @Override
   public final short readShort() throws IOException {
     try {
@@ -244,6 +267,48 @@ public abstract class ByteBufferIndexInput extends IndexInput implements RandomA
     return length;
   }
 
+  @Override
+  public final void prefetch(long offset, long length) throws IOException {
+    if (offset < 0 || length < 0 || offset + length > this.length) {
+      throw new IllegalArgumentException("prefetch() out of bounds: offset=" + offset + ",length=" + length + ",fileLength=" + this.length + ": " + this);
+    }
+    prefetchBuffers(offset, length);
+  }
+
+  /** Passes the given range on to the guard, one buffer at a time. */
+  void prefetchBuffers(long pos, long length) throws IOException {
+    final long end = pos + length;
+    try {
+      while (pos < end) {
+        final ByteBuffer b = buffers[(int) (pos >> chunkSizePower)];
+        final int bufPos = (int) (pos & chunkSizeMask);
+        final int len = (int) Math.min(end - pos, b.limit() - bufPos);
+        if (len <= 0) {
+          break;
+        }
+        guard.prefetch(b, bufPos, len);
+        pos += len;
+      }
+    } catch (NullPointerException npe) {
+      throw new AlreadyClosedException("Already closed: " + this);
+    }
+  }
+
+  /** Passes the given slice on to the guard's slice listener, one buffer at a time. */
+  private void slicedBuffers(String sliceDescription, long pos, long length) {
+    final long end = pos + length;
+    while (pos < end) {
+      final ByteBuffer b = buffers[(int) (pos >> chunkSizePower)];
+      final int bufPos = (int) (pos & chunkSizeMask);
+      final int len = (int) Math.min(end - pos, b.limit() - bufPos);
+      if (len <= 0) {
+        break;
+      }
+      guard.sliced(sliceDescription, b, bufPos, len);
+      pos += len;
+    }
+  }
+
   @Override
   public final ByteBufferIndexInput clone() {
     final ByteBufferIndexInput clone = buildSlice((String) null, 0L, this.length);
@@ -274,6 +339,11 @@ public abstract class ByteBufferIndexInput extends IndexInput implements RandomA
       throw new AlreadyClosedException("Already closed: " + this);
     }
 
+    if (isClone == false && sliceDescription != null && guard.hasSliceListener()) {
+      // a named slice of the original input, eg. a sub-file of a compound file:
+      slicedBuffers(sliceDescription, offset, length);
+    }
+
     final ByteBuffer newBuffers[] = buildSlice(buffers, offset, length);
     final int ofs = (int) (offset & chunkSizeMask);
 
@@ -486,6 +556,11 @@ public abstract class ByteBufferIndexInput extends IndexInput implements RandomA
       return super.readLong(pos + offset);
     }
 
+    @Override
+    void prefetchBuffers(long pos, long length) throws IOException {
+      super.prefetchBuffers(pos + offset, length);
+    }
+
     @Override
     protected ByteBufferIndexInput buildSlice(String sliceDescription, long ofs, long length) {
       return super.buildSlice(sliceDescription, this.offset + ofs, length);
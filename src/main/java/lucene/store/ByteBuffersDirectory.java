@@ -20,6 +20,7 @@ import lucene.index.IndexFileNames;
 import lucene.util.BitUtil;
 
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.nio.ByteBuffer;
 import java.nio.file.AccessDeniedException;
 import java.nio.file.FileAlreadyExistsException;
@@ -89,6 +90,62 @@ public final class ByteBuffersDirectory extends BaseDirectory {
             output.size(), chunkSizePower, guard);
       };
 
+  /** Default size of the pages of {@link #outputAsCompressedPages(CompressedPageCache)}. */
+  public static final int DEFAULT_COMPRESSED_PAGE_SIZE = 16 * 1024;
+
+  /**
+   * Returns a conversion that stores the content of every file as LZ4-compressed
+   * pages in a single off-heap buffer, with pages of {@link #DEFAULT_COMPRESSED_PAGE_SIZE} bytes.
+   * @see #outputAsCompressedPages(CompressedPageCache, int)
+   */
+  public static BiFunction<String, ByteBuffersDataOutput, IndexInput> outputAsCompressedPages(CompressedPageCache cache) {
+    return outputAsCompressedPages(cache, DEFAULT_COMPRESSED_PAGE_SIZE);
+  }
+
+  /**
+   * Returns a conversion that stores the content of every file as LZ4-compressed
+   * pages of {@code pageSize} bytes in a single off-heap buffer, which typically
+   * takes several times less memory than {@link #OUTPUT_AS_MANY_BUFFERS} for
+   * index files.  Reads decompress the pages they need, and keep them in the given
+   * cache, which can be shared across directories to bound the memory used for
+   * decompressed pages, e.g. when hosting many small indices in memory:
+   *
+   * <pre class="prettyprint">
+   *   CompressedPageCache cache = new CompressedPageCache(64 * 1024 * 1024);
+   *   Directory dir = new ByteBuffersDirectory(new SingleInstanceLockFactory(),
+   *       ByteBuffersDataOutput::new, ByteBuffersDirectory.outputAsCompressedPages(cache));
+   * </pre>
+   *
+   * Smaller pages make random reads cheaper but compress less.  Files are only
+   * compressed once they are closed, so writing is not slower, and files of 2 GB
+   * or more are kept uncompressed.
+   *
+   * @param pageSize the size of the pages, a power of two
+   */
+  public static BiFunction<String, ByteBuffersDataOutput, IndexInput> outputAsCompressedPages(CompressedPageCache cache, int pageSize) {
+    Objects.requireNonNull(cache);
+    if (pageSize < 512 || Integer.bitCount(pageSize) != 1) {
+      throw new IllegalArgumentException("pageSize must be a power of two >= 512 (got " + pageSize + ")");
+    }
+    final int pageShift = Integer.numberOfTrailingZeros(pageSize);
+    return (fileName, output) -> {
+      if (output.size() >= Integer.MAX_VALUE) {
+        return OUTPUT_AS_MANY_BUFFERS.apply(fileName, output);
+      }
+      final CompressedPagesIndexInput.CompressedFile file;
+      try {
+        file = CompressedPagesIndexInput.CompressedFile.compress(output, pageShift);
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+      String inputName = String.format(Locale.ROOT, "%s (file=%s, compressed=%d)",
+          CompressedPagesIndexInput.class.getSimpleName(),
+          fileName,
+          file.compressedLength());
+      return new CompressedPagesIndexInput(inputName, file, cache);
+    };
+  }
+
   private final Function<String, String> tempFileName = new Function<String, String>() {
     private final AtomicLong counter = new AtomicLong();
 
@@ -141,6 +198,7 @@ public final class ByteBuffersDirectory extends BaseDirectory {
     if (removed == null) {
       throw new NoSuchFileException(name);
     }
+    removed.deleted();
   }
 
   @Override
@@ -216,6 +274,9 @@ public final class ByteBuffersDirectory extends BaseDirectory {
   @Override
   public void close() throws IOException {
     isOpen = false;
+    for (FileEntry file : files.values()) {
+      file.deleted();
+    }
     files.clear();
   }
 
@@ -243,6 +304,13 @@ public final class ByteBuffersDirectory extends BaseDirectory {
       return local.clone();
     }
 
+    /** Releases what the content holds outside of this directory, once the file is deleted. */
+    void deleted() {
+      if (content instanceof CompressedPagesIndexInput) {
+        ((CompressedPagesIndexInput) content).evictCachedPages();
+      }
+    }
+
     final IndexOutput createOutput(BiFunction<String, ByteBuffersDataOutput, IndexInput> outputToInput) throws IOException {
       if (content != null) {
         throw new IOException("Can only write to a file once: " + fileName);
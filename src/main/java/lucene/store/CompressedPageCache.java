@@ -0,0 +1,114 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package lucene.store;
+
+
+import lucene.util.Accountable;
+import lucene.util.RamBoundedLRUCache;
+import lucene.util.RamUsageEstimator;
+
+/**
+ * A size-bounded, least-recently-used cache of decompressed pages of the files
+ * of {@link ByteBuffersDirectory}s that store their files compressed, see
+ * {@link ByteBuffersDirectory#outputAsCompressedPages}.  A single cache can be
+ * shared by many directories, so that the memory used for decompressed pages
+ * is bounded across all of them.  The pages of a file are evicted when it is
+ * deleted.
+ * <p>
+ * Pages are held by a {@link RamBoundedLRUCache}, whose statistics this
+ * cache exposes.
+ *
+ * @lucene.experimental
+ */
+public final class CompressedPageCache implements Accountable {
+
+  // keyed by file and page index
+  private final RamBoundedLRUCache<byte[]> pages;
+
+  /** Create a new instance that will use at most {@code maxRamBytesUsed} bytes
+   *  of memory for decompressed pages. */
+  public CompressedPageCache(long maxRamBytesUsed) {
+    pages = new RamBoundedLRUCache<>(maxRamBytesUsed);
+  }
+
+  /** Returns the decompressed page of the file with the given key, or {@code null}. */
+  byte[] get(Object fileKey, int page) {
+    return pages.get(fileKey, page);
+  }
+
+  /** Caches a decompressed page, evicting the least recently used pages if needed. */
+  void put(Object fileKey, int page, byte[] bytes) {
+    pages.put(fileKey, page, bytes, RamUsageEstimator.sizeOf(bytes));
+  }
+
+  /** Removes all pages of the file with the given key. */
+  void clearFile(Object fileKey) {
+    pages.clear(fileKey);
+  }
+
+  /** Removes all cached pages. */
+  public void clear() {
+    pages.clear();
+  }
+
+  @Override
+  public long ramBytesUsed() {
+    return pages.ramBytesUsed();
+  }
+
+  /** Return the number of times that a page has been looked up in this cache.
+   *  @see RamBoundedLRUCache#getTotalCount() */
+  public long getTotalCount() {
+    return pages.getTotalCount();
+  }
+
+  /** Return the number of lookups that found a decompressed page.
+   *  @see RamBoundedLRUCache#getHitCount() */
+  public long getHitCount() {
+    return pages.getHitCount();
+  }
+
+  /** Return the number of lookups that had to decompress the page.
+   *  @see RamBoundedLRUCache#getMissCount() */
+  public long getMissCount() {
+    return pages.getMissCount();
+  }
+
+  /** Return the number of pages which are currently stored in the cache.
+   *  @see RamBoundedLRUCache#getCacheSize() */
+  public long getCacheSize() {
+    return pages.getCacheSize();
+  }
+
+  /** Return the total number of pages that have ever been put in the cache.
+   *  @see RamBoundedLRUCache#getCacheCount() */
+  public long getCacheCount() {
+    return pages.getCacheCount();
+  }
+
+  /** Return the number of pages that have been removed from the cache, either
+   *  to stay under the maximum ram usage, or because their file was deleted.
+   *  @see RamBoundedLRUCache#getEvictionCount() */
+  public long getEvictionCount() {
+    return pages.getEvictionCount();
+  }
+
+  @Override
+  public String toString() {
+    return getClass().getSimpleName() + "(maxRamBytesUsed=" + pages.getMaxRamBytesUsed() + ")";
+  }
+}
@@ -0,0 +1,224 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package lucene.store;
+
+
+import lucene.codecs.compressing.CompressionMode;
+import lucene.codecs.compressing.Compressor;
+import lucene.codecs.compressing.Decompressor;
+import lucene.util.BytesRef;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Collections;
+
+/**
+ * An {@link IndexInput} over an immutable file that is stored as LZ4-compressed
+ * pages in a single off-heap buffer.  Pages are decompressed on demand, and
+ * kept in a {@link CompressedPageCache} that is shared by all inputs.
+ *
+ * @see ByteBuffersDirectory#outputAsCompressedPages
+ */
+final class CompressedPagesIndexInput extends IndexInput {
+
+  /** The compressed content of a file, shared by all its inputs. */
+  static final class CompressedFile {
+    // a key rather than the file itself, so that cached pages don't keep deleted files alive
+    final Object cacheKey = new Object();
+    final long length;
+    final int pageShift;
+    final ByteBuffer data;
+    // page i is stored at [offsets[i], offsets[i+1]) of data; pages that don't
+    // compress are stored as-is, and have their uncompressed length
+    final int[] offsets;
+    final Decompressor decompressor = CompressionMode.FAST.newDecompressor();
+
+    private CompressedFile(long length, int pageShift, ByteBuffer data, int[] offsets) {
+      this.length = length;
+      this.pageShift = pageShift;
+      this.data = data;
+      this.offsets = offsets;
+    }
+
+    /** Compresses the content of the given output into pages of {@code 1 << pageShift} bytes. */
+    static CompressedFile compress(ByteBuffersDataOutput output, int pageShift) throws IOException {
+      final long length = output.size();
+      final int pageSize = 1 << pageShift;
+      final int numPages = Math.toIntExact((length + pageSize - 1) >>> pageShift);
+      final ByteBuffersDataInput in = output.toDataInput();
+      final int[] offsets = new int[numPages + 1];
+      final byte[] page = new byte[pageSize];
+      final GrowableByteArrayDataOutput scratch = new GrowableByteArrayDataOutput(pageSize);
+      final GrowableByteArrayDataOutput compressed = new GrowableByteArrayDataOutput((int) Math.min(length, pageSize));
+      try (Compressor compressor = CompressionMode.FAST.newCompressor()) {
+        for (int i = 0; i < numPages; ++i) {
+          final int pageLength = (int) Math.min(pageSize, length - ((long) i << pageShift));
+          in.readBytes(page, 0, pageLength);
+          scratch.reset();
+          compressor.compress(page, 0, pageLength, scratch);
+          if (scratch.getPosition() < pageLength) {
+            compressed.writeBytes(scratch.getBytes(), 0, scratch.getPosition());
+          } else {
+            compressed.writeBytes(page, 0, pageLength);
+          }
+          offsets[i + 1] = compressed.getPosition();
+        }
+      }
+      final ByteBuffer data = ByteBuffer.allocateDirect(compressed.getPosition());
+      data.put(compressed.getBytes(), 0, compressed.getPosition());
+      data.flip();
+      return new CompressedFile(length, pageShift, data.asReadOnlyBuffer(), offsets);
+    }
+
+    /** Returns the number of bytes the compressed pages take. */
+    long compressedLength() {
+      return data.capacity();
+    }
+
+    /** Returns the decompressed page; the array may be larger than the page. */
+    byte[] page(int index, CompressedPageCache cache) throws IOException {
+      byte[] bytes = cache.get(cacheKey, index);
+      if (bytes == null) {
+        final int pageLength = (int) Math.min(1 << pageShift, length - ((long) index << pageShift));
+        final ByteBuffer bb = data.duplicate();
+        bb.limit(offsets[index + 1]).position(offsets[index]);
+        if (bb.remaining() == pageLength) {
+          bytes = new byte[pageLength];
+          bb.get(bytes);
+        } else {
+          final BytesRef ref = new BytesRef();
+          decompressor.clone().decompress(new ByteBuffersDataInput(Collections.singletonList(bb)), pageLength, 0, pageLength, ref);
+          assert ref.offset == 0;
+          bytes = ref.bytes;
+        }
+        cache.put(cacheKey, index, bytes);
+      }
+      return bytes;
+    }
+  }
+
+  private final CompressedFile file;
+  private final CompressedPageCache cache;
+  private final long offset; // non-zero for slices
+  private final long length;
+
+  private long pos;
+  private byte[] page;
+  private long pageStart, pageEnd; // absolute bounds of the current page, empty until a page is loaded
+
+  CompressedPagesIndexInput(String resourceDescription, CompressedFile file, CompressedPageCache cache) {
+    this(resourceDescription, file, cache, 0L, file.length);
+  }
+
+  private CompressedPagesIndexInput(String resourceDescription, CompressedFile file, CompressedPageCache cache, long offset, long length) {
+    super(resourceDescription);
+    this.file = file;
+    this.cache = cache;
+    this.offset = offset;
+    this.length = length;
+  }
+
+  /** Makes the page that holds the given absolute position the current page. */
+  private void loadPage(long absolutePos) throws IOException {
+    final int index = (int) (absolutePos >>> file.pageShift);
+    page = file.page(index, cache);
+    pageStart = (long) index << file.pageShift;
+    pageEnd = Math.min(pageStart + (1 << file.pageShift), file.length);
+  }
+
+  @Override
+  public byte readByte() throws IOException {
+    if (pos >= length) {
+      throw new EOFException("read past EOF: " + this);
+    }
+    final long absolutePos = offset + pos;
+    if (absolutePos < pageStart || absolutePos >= pageEnd) {
+      loadPage(absolutePos);
+    }
+    pos++;
+    return page[(int) (absolutePos - pageStart)];
+  }
+
+  @Override
+  public void readBytes(byte[] b, int off, int len) throws IOException {
+    if (len > length - pos) {
+      throw new EOFException("read past EOF: " + this);
+    }
+    while (len > 0) {
+      final long absolutePos = offset + pos;
+      if (absolutePos < pageStart || absolutePos >= pageEnd) {
+        loadPage(absolutePos);
+      }
+      final int chunk = (int) Math.min(len, pageEnd - absolutePos);
+      System.arraycopy(page, (int) (absolutePos - pageStart), b, off, chunk);
+      pos += chunk;
+      off += chunk;
+      len -= chunk;
+    }
+  }
+
+  @Override
+  public void skipBytes(long numBytes) throws IOException {
+    if (numBytes < 0) {
+      throw new IllegalArgumentException("numBytes must be >= 0, got " + numBytes);
+    }
+    seek(pos + numBytes);
+  }
+
+  @Override
+  public long getFilePointer() {
+    return pos;
+  }
+
+  @Override
+  public void seek(long pos) throws IOException {
+    if (pos < 0 || pos > length) {
+      throw new EOFException("seek past EOF: pos=" + pos + " vs length=" + length + ": " + this);
+    }
+    this.pos = pos;
+  }
+
+  @Override
+  public long length() {
+    return length;
+  }
+
+  @Override
+  public IndexInput slice(String sliceDescription, long offset, long length) throws IOException {
+    if (offset < 0 || length < 0 || offset + length > this.length) {
+      throw new IllegalArgumentException("slice() " + sliceDescription + " out of bounds: offset=" + offset + ",length=" + length + ",fileLength="  + this.length + ": "  + this);
+    }
+    return new CompressedPagesIndexInput(getFullSliceDescription(sliceDescription), file, cache, this.offset + offset, length);
+  }
+
+  @Override
+  public CompressedPagesIndexInput clone() {
+    // the current page is immutable, so clones may keep reading it
+    return (CompressedPagesIndexInput) super.clone();
+  }
+
+  /** Evicts the cached pages of the file, which is being deleted. */
+  void evictCachedPages() {
+    cache.clearFile(file.cacheKey);
+  }
+
+  @Override
+  public void close() throws IOException {
+    // the file is released once it is deleted and all its inputs are unreachable
+  }
+}
@@ -0,0 +1,450 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package lucene.store;
+
+
+import lucene.util.IOUtils;
+import lucene.util.SuppressForbidden;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.FileStore;
+import java.nio.file.Files;
+import java.nio.file.OpenOption;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.OptionalLong;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.zip.CRC32;
+import java.util.zip.Checksum;
+
+/**
+ * A {@link Directory} wrapper that reads and writes the files of large merges
+ * with direct I/O ({@code O_DIRECT}), bypassing the operating system's page
+ * cache, while all other files go through the wrapped {@link FSDirectory},
+ * e.g. an {@link MMapDirectory}.  Merges read and write large amounts of data
+ * once; going through the page cache would evict the hot parts of the index
+ * that searches need, and cause latency spikes while merges run.
+ * <p>
+ * Direct I/O requires reads and writes to be aligned to the block size of the
+ * file system, so this class reads and writes through aligned direct buffers
+ * of {@link #getMergeBufferSize} bytes, which it pools.  See {@link #useDirectIO}
+ * for which files use direct I/O.
+ * <p>
+ * Direct I/O requires support by the JVM (Java 10 or later) and by the
+ * operating system and file system; otherwise the constructor throws an
+ * {@link UnsupportedOperationException}.
+ *
+ * @lucene.experimental
+ */
+public class DirectIODirectory extends FilterDirectory {
+
+  /** Default size of the buffers used for direct I/O. */
+  public static final int DEFAULT_MERGE_BUFFER_SIZE = 256 * 1024;
+
+  /** Default minimum estimated merge size for direct I/O. */
+  public static final long DEFAULT_MIN_BYTES_DIRECT = 10 * 1024 * 1024;
+
+  private static final OpenOption DIRECT_OPEN_OPTION = getDirectOpenOption();
+  // FileStore#getBlockSize and ByteBuffer#alignedSlice, which only exist as of Java 10 and 9
+  private static final MethodHandle GET_BLOCK_SIZE = findVirtual(FileStore.class, "getBlockSize", MethodType.methodType(long.class));
+  private static final MethodHandle ALIGNED_SLICE = findVirtual(ByteBuffer.class, "alignedSlice", MethodType.methodType(ByteBuffer.class, int.class));
+
+  private final FSDirectory delegate;
+  private final int blockSize;
+  private final int mergeBufferSize;
+  private final long minBytesDirect;
+  private final Queue<ByteBuffer> bufferPool = new ConcurrentLinkedQueue<>();
+  private volatile boolean isOpen = true;
+
+  /**
+   * Create a new DirectIODirectory for the given delegate, with the default
+   * buffer size and minimum merge size.
+   */
+  public DirectIODirectory(FSDirectory delegate) throws IOException {
+    this(delegate, DEFAULT_MERGE_BUFFER_SIZE, DEFAULT_MIN_BYTES_DIRECT);
+  }
+
+  /**
+   * Create a new DirectIODirectory for the given delegate.
+   *
+   * @param delegate directory for all files that are not read or written with direct I/O
+   * @param mergeBufferSize size of the buffers used for direct I/O, rounded up to a
+   *        multiple of the file system's block size
+   * @param minBytesDirect merges that are estimated to be smaller than this use the delegate
+   * @throws UnsupportedOperationException if direct I/O is not supported
+   */
+  public DirectIODirectory(FSDirectory delegate, int mergeBufferSize, long minBytesDirect) throws IOException {
+    super(delegate);
+    if (DIRECT_OPEN_OPTION == null || GET_BLOCK_SIZE == null || ALIGNED_SLICE == null) {
+      throw new UnsupportedOperationException("O_DIRECT is not supported by this JVM");
+    }
+    if (mergeBufferSize <= 0) {
+      throw new IllegalArgumentException("mergeBufferSize must be > 0 (got " + mergeBufferSize + ")");
+    }
+    this.delegate = delegate;
+    this.blockSize = Math.toIntExact(getBlockSize(Files.getFileStore(delegate.getDirectory())));
+    this.mergeBufferSize = Math.multiplyExact(blockSize, (mergeBufferSize + blockSize - 1) / blockSize);
+    this.minBytesDirect = minBytesDirect;
+  }
+
+  /** Returns the size of the buffers used for direct I/O. */
+  public int getMergeBufferSize() {
+    return mergeBufferSize;
+  }
+
+  /** Returns the minimum estimated merge size for direct I/O. */
+  public long getMinBytesDirect() {
+    return minBytesDirect;
+  }
+
+  /**
+   * Returns true if the given file should be read or written with direct I/O.
+   * By default, these are the files of merges that are estimated to be at least
+   * {@link #getMinBytesDirect} bytes large, and, when opening an existing file,
+   * that are at least that large themselves.
+   *
+   * @param fileLength the length of the file to read, or empty when the file is
+   *        about to be written
+   */
+  protected boolean useDirectIO(String name, IOContext context, OptionalLong fileLength) {
+    return context.context == IOContext.Context.MERGE
+        && context.mergeInfo.estimatedMergeBytes >= minBytesDirect
+        && fileLength.orElse(minBytesDirect) >= minBytesDirect;
+  }
+
+  @Override
+  public IndexInput openInput(String name, IOContext context) throws IOException {
+    ensureOpen();
+    if (useDirectIO(name, context, OptionalLong.of(fileLength(name)))) {
+      delegate.ensureCanRead(name);
+      return new DirectIOIndexInput(delegate.getDirectory().resolve(name), acquireBuffer(), true);
+    } else {
+      return in.openInput(name, context);
+    }
+  }
+
+  @Override
+  public IndexOutput createOutput(String name, IOContext context) throws IOException {
+    ensureOpen();
+    if (useDirectIO(name, context, OptionalLong.empty())) {
+      return new DirectIOIndexOutput(delegate.getDirectory().resolve(name), name, acquireBuffer());
+    } else {
+      return in.createOutput(name, context);
+    }
+  }
+
+  @Override
+  public synchronized void close() throws IOException {
+    isOpen = false;
+    bufferPool.clear();
+    super.close();
+  }
+
+  @Override
+  protected void ensureOpen() throws AlreadyClosedException {
+    if (isOpen == false) {
+      throw new AlreadyClosedException("this Directory is closed");
+    }
+  }
+
+  /** Returns a pooled aligned buffer, or allocates a new one. */
+  private ByteBuffer acquireBuffer() throws IOException {
+    final ByteBuffer buffer = bufferPool.poll();
+    if (buffer != null) {
+      buffer.clear();
+      return buffer;
+    }
+    return allocateBuffer();
+  }
+
+  /** Allocates a new direct buffer of {@link #getMergeBufferSize} bytes that is aligned to the block size. */
+  private ByteBuffer allocateBuffer() throws IOException {
+    try {
+      return (ByteBuffer) ALIGNED_SLICE.invokeExact(ByteBuffer.allocateDirect(mergeBufferSize + blockSize - 1), blockSize);
+    } catch (Throwable t) {
+      throw IOUtils.rethrowAlways(t);
+    }
+  }
+
+  private static long getBlockSize(FileStore fileStore) throws IOException {
+    try {
+      return (long) GET_BLOCK_SIZE.invokeExact(fileStore);
+    } catch (Throwable t) {
+      throw IOUtils.rethrowAlways(t);
+    }
+  }
+
+  private static MethodHandle findVirtual(Class<?> clazz, String name, MethodType type) {
+    try {
+      return MethodHandles.publicLookup().findVirtual(clazz, name, type);
+    } catch (ReflectiveOperationException | RuntimeException e) {
+      return null;
+    }
+  }
+
+  /** Returns a buffer to the pool, unless this directory is closed. */
+  private void releaseBuffer(ByteBuffer buffer) {
+    if (isOpen) {
+      bufferPool.offer(buffer);
+    }
+  }
+
+  @SuppressForbidden(reason = "com.sun.nio.file.ExtendedOpenOption: Direct I/O with FileChannel requires the use of internal proprietary API")
+  private static OpenOption getDirectOpenOption() {
+    try {
+      final Class<?> clazz = Class.forName("com.sun.nio.file.ExtendedOpenOption").asSubclass(OpenOption.class);
+      return Arrays.stream(clazz.getEnumConstants())
+          .map(OpenOption.class::cast)
+          .filter(e -> e.toString().equalsIgnoreCase("DIRECT"))
+          .findFirst()
+          .orElse(null);
+    } catch (ReflectiveOperationException | RuntimeException e) {
+      return null;
+    }
+  }
+
+  /** Writes full aligned buffers, and truncates the file to its actual length on close. */
+  private final class DirectIOIndexOutput extends IndexOutput {
+    private final ByteBuffer buffer;
+    private final FileChannel channel;
+    private final Checksum digest = new BufferedChecksum(new CRC32());
+
+    private long filePos;
+    private boolean isOpen;
+
+    DirectIOIndexOutput(Path path, String name, ByteBuffer buffer) throws IOException {
+      super("DirectIOIndexOutput(path=\"" + path.toString() + "\")", name);
+      this.buffer = buffer;
+      boolean success = false;
+      try {
+        channel = FileChannel.open(path, StandardOpenOption.WRITE, StandardOpenOption.CREATE_NEW, DIRECT_OPEN_OPTION);
+        success = true;
+      } finally {
+        if (success == false) {
+          releaseBuffer(buffer);
+        }
+      }
+      isOpen = true;
+    }
+
+    @Override
+    public void writeByte(byte b) throws IOException {
+      buffer.put(b);
+      digest.update(b);
+      if (buffer.hasRemaining() == false) {
+        dump();
+      }
+    }
+
+    @Override
+    public void writeBytes(byte[] src, int offset, int len) throws IOException {
+      digest.update(src, offset, len);
+      while (len > 0) {
+        final int chunk = Math.min(len, buffer.remaining());
+        buffer.put(src, offset, chunk);
+        offset += chunk;
+        len -= chunk;
+        if (buffer.hasRemaining() == false) {
+          dump();
+        }
+      }
+    }
+
+    private void dump() throws IOException {
+      final int size = buffer.position();
+      // direct I/O only writes full blocks; the trailing garbage is truncated on close:
+      buffer.rewind();
+      while (buffer.hasRemaining()) {
+        channel.write(buffer, filePos + buffer.position());
+      }
+      filePos += size;
+      buffer.clear();
+    }
+
+    @Override
+    public long getFilePointer() {
+      return filePos + buffer.position();
+    }
+
+    @Override
+    public long getChecksum() {
+      return digest.getValue();
+    }
+
+    @Override
+    public void close() throws IOException {
+      if (isOpen) {
+        isOpen = false;
+        try {
+          dump();
+        } finally {
+          try (FileChannel ch = channel) {
+            ch.truncate(getFilePointer());
+          } finally {
+            releaseBuffer(buffer);
+          }
+        }
+      }
+    }
+  }
+
+  /** Reads aligned blocks into its own buffer.  Clones get their own buffers, which are
+   *  not pooled, since Lucene never closes clones. */
+  private final class DirectIOIndexInput extends IndexInput {
+    private final ByteBuffer buffer;
+    private final FileChannel channel;
+    private final boolean isClosable; // clones share the channel, but only the original closes it
+    private boolean isOpen;
+    private long filePos;
+
+    DirectIOIndexInput(Path path, ByteBuffer buffer, boolean isClosable) throws IOException {
+      super("DirectIOIndexInput(path=\"" + path + "\")");
+      this.buffer = buffer;
+      boolean success = false;
+      try {
+        this.channel = FileChannel.open(path, StandardOpenOption.READ, DIRECT_OPEN_OPTION);
+        success = true;
+      } finally {
+        if (success == false) {
+          releaseBuffer(buffer);
+        }
+      }
+      this.isClosable = isClosable;
+      this.isOpen = true;
+      this.filePos = -buffer.capacity();
+      buffer.limit(0);
+    }
+
+    // for clone
+    private DirectIOIndexInput(DirectIOIndexInput other) throws IOException {
+      super(other.toString());
+      this.buffer = allocateBuffer();
+      this.channel = other.channel;
+      this.isClosable = false;
+      this.isOpen = true;
+      this.filePos = -buffer.capacity();
+      buffer.limit(0);
+      seek(other.getFilePointer());
+    }
+
+    @Override
+    public void close() throws IOException {
+      if (isOpen && isClosable) {
+        isOpen = false;
+        try {
+          channel.close();
+        } finally {
+          releaseBuffer(buffer);
+        }
+      }
+    }
+
+    @Override
+    public long getFilePointer() {
+      long filePointer = filePos + buffer.position();
+      // opening the input and immediately calling getFilePointer without calling readX (and
+      // thus refill) first will result in a negative value
+      return Math.max(filePointer, 0);
+    }
+
+    @Override
+    public void seek(long pos) throws IOException {
+      if (pos != getFilePointer()) {
+        final long alignedPos = pos - (pos % blockSize);
+        filePos = alignedPos - buffer.capacity();
+        final int delta = (int) (pos - alignedPos);
+        refill(delta);
+        buffer.position(delta);
+      }
+    }
+
+    @Override
+    public long length() {
+      try {
+        return channel.size();
+      } catch (IOException ioe) {
+        throw new UncheckedIOException(ioe);
+      }
+    }
+
+    @Override
+    public byte readByte() throws IOException {
+      if (buffer.hasRemaining() == false) {
+        refill(1);
+      }
+      return buffer.get();
+    }
+
+    private void refill(int bytesToRead) throws IOException {
+      filePos += buffer.capacity();
+      // BaseDirectoryTestCase#testSeekPastEOF test for consecutive read past EOF,
+      // hence throwing EOFException early to maintain buffer state (position in particular)
+      if (filePos > channel.size() || (channel.size() - filePos < bytesToRead)) {
+        throw new EOFException("read past EOF: " + this);
+      }
+      buffer.clear();
+      try {
+        // read may return -1 here iff filePos == channel.size(), but that's ok as it just reaches EOF
+        // when filePos > channel.size(), an EOFException will be thrown from above
+        channel.read(buffer, filePos);
+      } catch (IOException ioe) {
+        throw new IOException(ioe.getMessage() + ": " + this, ioe);
+      }
+      buffer.flip();
+    }
+
+    @Override
+    public void readBytes(byte[] dst, int offset, int len) throws IOException {
+      int toRead = len;
+      while (true) {
+        final int left = buffer.remaining();
+        if (left < toRead) {
+          buffer.get(dst, offset, left);
+          toRead -= left;
+          offset += left;
+          refill(toRead);
+        } else {
+          buffer.get(dst, offset, toRead);
+          break;
+        }
+      }
+    }
+
+    @Override
+    public DirectIOIndexInput clone() {
+      try {
+        return new DirectIOIndexInput(this);
+      } catch (IOException ioe) {
+        throw new UncheckedIOException(ioe);
+      }
+    }
+
+    @Override
+    public IndexInput slice(String sliceDescription, long offset, long length) throws IOException {
+      return BufferedIndexInput.wrap(sliceDescription, this, offset, length);
+    }
+  }
+}
@@ -19,6 +19,7 @@ package lucene.store;
 
 import java.io.Closeable;
 import java.io.IOException;
+import java.util.zip.CRC32;
 
 /** 
  * Abstract base class for input from a file in a {@link Directory}.  A
@@ -74,6 +75,75 @@ public abstract class IndexInput extends DataInput implements Cloneable,Closeabl
   /** The number of bytes in the file. */
   public abstract long length();
 
+  /**
+   * Hints that the given range of bytes, relative to the start of this input, is going
+   * to be read soon, so that the implementation can start loading it in the background,
+   * e.g. to overlap the I/O of several blocks that a reader needs at once.  This is
+   * best-effort: it does not change the file pointer, and may do nothing, which is
+   * what the default implementation does.
+   *
+   * @throws IllegalArgumentException if the range is out of the bounds of this input
+   */
+  public void prefetch(long offset, long length) throws IOException {
+    if (offset < 0 || length < 0 || offset + length > length()) {
+      throw new IllegalArgumentException("prefetch() out of bounds: offset=" + offset + ",length=" + length + ",fileLength=" + length() + ": " + this);
+    }
+  }
+
+  /**
+   * Reads several ranges of bytes at once: {@code buffers[i]} is filled with the
+   * bytes that start at {@code offsets[i]}, relative to the start of this input.
+   * Offsets must be in increasing order.  This does not change the file pointer.
+   * Implementations may read nearby ranges with a single I/O operation; the default
+   * implementation seeks to and reads every range in turn.
+   *
+   * @throws IllegalArgumentException if the offsets are not sorted, or a range is
+   *         out of the bounds of this input
+   */
+  public void readRanges(long[] offsets, byte[][] buffers) throws IOException {
+    checkRanges(offsets, buffers);
+    final long fp = getFilePointer();
+    for (int i = 0; i < offsets.length; ++i) {
+      seek(offsets[i]);
+      readBytes(buffers[i], 0, buffers[i].length);
+    }
+    seek(fp);
+  }
+
+  /**
+   * Reads the next {@code length} bytes and passes them to the given CRC32, which
+   * is how whole files are verified, see {@code CodecUtil#checksumEntireFile}.  The
+   * default implementation reads through a heap buffer of up to 64 KB; memory-mapped
+   * inputs pass their buffers to the checksum directly, without copying the bytes.
+   */
+  public void updateChecksum(CRC32 checksum, long length) throws IOException {
+    final byte[] buffer = new byte[(int) Math.min(CHECKSUM_BUFFER_SIZE, length)];
+    while (length > 0) {
+      final int chunk = (int) Math.min(buffer.length, length);
+      readBytes(buffer, 0, chunk);
+      checksum.update(buffer, 0, chunk);
+      length -= chunk;
+    }
+  }
+
+  /** Size of the chunks {@link #updateChecksum} reads. */
+  private static final int CHECKSUM_BUFFER_SIZE = 1 << 16;
+
+  /** Validates the arguments of {@link #readRanges}. */
+  protected final void checkRanges(long[] offsets, byte[][] buffers) {
+    if (offsets.length != buffers.length) {
+      throw new IllegalArgumentException("offsets and buffers must have the same length (got " + offsets.length + " != " + buffers.length + ")");
+    }
+    for (int i = 0; i < offsets.length; ++i) {
+      if (offsets[i] < 0 || offsets[i] + buffers[i].length > length()) {
+        throw new IllegalArgumentException("readRanges() out of bounds: offset=" + offsets[i] + ",length=" + buffers[i].length + ",fileLength=" + length() + ": " + this);
+      }
+      if (i > 0 && offsets[i] < offsets[i - 1]) {
+        throw new IllegalArgumentException("offsets must be in increasing order (got " + offsets[i] + " after " + offsets[i - 1] + ")");
+      }
+    }
+  }
+
   @Override
   public String toString() {
     return resourceDescription;
@@ -22,6 +22,7 @@ import lucene.util.SuppressForbidden;
 import org.apache.lucene.store.ByteBufferGuard.BufferCleaner;
 
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.lang.invoke.MethodHandle;
 import java.lang.reflect.Field;
 import java.lang.reflect.Method;
@@ -36,7 +37,12 @@ import java.security.AccessController;
 import java.security.PrivilegedAction;
 import java.util.Locale;
 import java.util.Objects;
+import java.util.concurrent.Executor;
 import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiFunction;
+import java.util.function.BiPredicate;
 
 import static java.lang.invoke.MethodHandles.*;
 import static java.lang.invoke.MethodType.methodType;
@@ -88,11 +94,75 @@ import static java.lang.invoke.MethodType.methodType;
  * {@link Future#cancel(boolean)} you should use the legacy {@code RAFDirectory}
  * from the Lucene {@code misc} module in favor of {@link MMapDirectory}.
  * </p>
+ * <p>
+ * The {@link #setReadAdvice read advice} tells the operating system how each
+ * file is going to be accessed, so that the page cache holds hot index structures
+ * rather than the pages that merges stream through.  Java has no API for
+ * {@code madvise}, so out of the box only {@link ReadAdvice#WILLNEED} has an
+ * effect; subclasses with native access can implement the rest by overriding
+ * {@link #advise}.
  * @see <a href="http://blog.thetaphi.de/2012/07/use-lucenes-mmapdirectory-on-64bit.html">Blog post about MMapDirectory</a>
  */
 public class MMapDirectory extends FSDirectory {
   private boolean useUnmapHack = UNMAP_SUPPORTED;
-  private boolean preload;
+  private BiPredicate<String, IOContext> preload = NO_FILES;
+  private Executor preloadExecutor;
+  private final AtomicLong pendingPreloadBytes = new AtomicLong();
+  private final AtomicInteger pendingPrefetches = new AtomicInteger();
+  private final AtomicLong preloadedBytes = new AtomicLong();
+  private BiFunction<String, IOContext, ReadAdvice> readAdvice = DEFAULT_READ_ADVICE;
+
+  /** Preload predicate that preloads all files. */
+  public static final BiPredicate<String, IOContext> ALL_FILES = (name, context) -> true;
+
+  /** Preload predicate that preloads no files. */
+  public static final BiPredicate<String, IOContext> NO_FILES = (name, context) -> false;
+
+  /**
+   * Preload predicate that only preloads the small index structures that searches
+   * look up first, and otherwise fault in one page at a time on a cold page cache:
+   * terms indexes, points indexes, doc values and norms metadata, and stored fields
+   * and term vectors indexes.  Files opened for merging or read once are not preloaded.
+   */
+  public static final BiPredicate<String, IOContext> HOT_FILES = (name, context) -> {
+    if (context.readOnce || context.context == IOContext.Context.MERGE) {
+      return false;
+    }
+    switch (FileSwitchDirectory.getExtension(name)) {
+      case "tip":
+      case "dii":
+      case "dvm":
+      case "nvm":
+      case "fdx":
+      case "tvx":
+        return true;
+      default:
+        return false;
+    }
+  };
+
+  /**
+   * Default read advice: files that are merged or read once are read sequentially, while
+   * terms dictionaries, doc values, norms, points, stored fields and term vectors are
+   * accessed randomly.  Other files get the operating system's defaults.
+   * @see #setReadAdvice
+   */
+  public static final BiFunction<String, IOContext, ReadAdvice> DEFAULT_READ_ADVICE = (name, context) -> {
+    if (context.readOnce || context.context == IOContext.Context.MERGE) {
+      return ReadAdvice.SEQUENTIAL;
+    }
+    switch (FileSwitchDirectory.getExtension(name)) {
+      case "tim":
+      case "dvd":
+      case "nvd":
+      case "dim":
+      case "fdt":
+      case "tvd":
+        return ReadAdvice.RANDOM;
+      default:
+        return ReadAdvice.NORMAL;
+    }
+  };
 
   /**
    * Default max chunk size.
@@ -208,19 +278,99 @@ public class MMapDirectory extends FSDirectory {
    * into physical memory on init. The behavior is best-effort 
    * and operating system dependent.
    * @see MappedByteBuffer#load
+   * @see #setPreload(BiPredicate)
    */
   public void setPreload(boolean preload) {
-    this.preload = preload;
+    setPreload(preload ? ALL_FILES : NO_FILES);
+  }
+
+  /**
+   * Configures which files to preload, given their name and the {@link IOContext}
+   * they are opened with, e.g. {@link #HOT_FILES}.  Pages of these files are loaded
+   * into physical memory on init, or in the background if a {@link
+   * #setPreloadExecutor preload executor} is set.  The behavior is best-effort 
+   * and operating system dependent.  Default is {@link #NO_FILES}.
+   */
+  public void setPreload(BiPredicate<String, IOContext> preload) {
+    this.preload = Objects.requireNonNull(preload);
   }
   
   /**
-   * Returns {@code true} if mapped pages should be loaded.
+   * Returns {@code true} if mapped pages of some files should be loaded.
    * @see #setPreload
    */
   public boolean getPreload() {
+    return preload != NO_FILES;
+  }
+
+  /**
+   * Returns the predicate that selects the files to preload.
+   * @see #setPreload(BiPredicate)
+   */
+  public BiPredicate<String, IOContext> getPreloadFiles() {
     return preload;
   }
+
+  /**
+   * Sets the executor that preloads files in the background, so that opening a
+   * reader does not wait for its files to be loaded.  It also loads the ranges that
+   * are passed to {@link IndexInput#prefetch}.  Searches that run before a
+   * file is loaded fault its pages in as usual.  Default is {@code null}, meaning
+   * that files are preloaded synchronously when they are opened, and that
+   * prefetching is left to {@link #prefetch(MappedByteBuffer, int, int)}.
+   * @see #getPendingPreloadBytes
+   */
+  public void setPreloadExecutor(Executor preloadExecutor) {
+    this.preloadExecutor = preloadExecutor;
+  }
+
+  /**
+   * Returns the executor that preloads files in the background, or {@code null}.
+   * @see #setPreloadExecutor
+   */
+  public Executor getPreloadExecutor() {
+    return preloadExecutor;
+  }
+
+  /**
+   * Returns the number of bytes that were scheduled for background preloading but
+   * are not loaded yet, which drops to 0 once warming is done.
+   * @see #setPreloadExecutor
+   */
+  public long getPendingPreloadBytes() {
+    return pendingPreloadBytes.get();
+  }
+
+  /**
+   * Returns the number of bytes that were preloaded in the background so far.
+   * @see #setPreloadExecutor
+   */
+  public long getPreloadedBytes() {
+    return preloadedBytes.get();
+  }
   
+  /**
+   * Sets the function that returns the {@link ReadAdvice} for a file, given its name and
+   * the {@link IOContext} it is opened with.  The advice is applied to the mapped pages when
+   * the file is opened; synchronous {@link #setPreload preloading} takes precedence.  The sub-files
+   * of compound files are advised by their own name, with the context the compound file was
+   * opened with, as the compound reader opens them.  In addition, pages
+   * of files opened for merging are advised as {@link ReadAdvice#DONTNEED} when the file is
+   * closed, so that merge traffic does not evict hot index structures from the page cache.
+   * Default is {@link #DEFAULT_READ_ADVICE}.
+   */
+  public void setReadAdvice(BiFunction<String, IOContext, ReadAdvice> readAdvice) {
+    this.readAdvice = Objects.requireNonNull(readAdvice);
+  }
+
+  /**
+   * Returns the current read advice function.
+   * @see #setReadAdvice
+   */
+  public BiFunction<String, IOContext, ReadAdvice> getReadAdvice() {
+    return readAdvice;
+  }
+
   /**
    * Returns the current mmap chunk size.
    * @see #MMapDirectory(Path, LockFactory, int)
@@ -238,14 +388,177 @@ public class MMapDirectory extends FSDirectory {
     try (FileChannel c = FileChannel.open(path, StandardOpenOption.READ)) {
       final String resourceDescription = "MMapIndexInput(path=\"" + path.toString() + "\")";
       final boolean useUnmap = getUseUnmap();
-      return ByteBufferIndexInput.newInstance(resourceDescription,
-          map(resourceDescription, c, 0, c.size()), 
-          c.size(), chunkSizePower, new ByteBufferGuard(resourceDescription, useUnmap ? CLEANER : null));
+      ByteBufferGuard.BufferCleaner cleaner = useUnmap ? CLEANER : null;
+      if (context.context == IOContext.Context.MERGE) {
+        final ByteBufferGuard.BufferCleaner unmapper = cleaner;
+        cleaner = (desc, buffer) -> {
+          advise((MappedByteBuffer) buffer, 0, buffer.capacity(), ReadAdvice.DONTNEED);
+          if (unmapper != null) {
+            unmapper.freeBuffer(desc, buffer);
+          }
+        };
+      }
+      final boolean preloadFile = preload.test(name, context);
+      final Executor executor = preloadExecutor;
+      final ReadAdvice advice = readAdvice.apply(name, context);
+      ByteBufferGuard.SliceListener sliceListener = null;
+      if ((preloadFile == false || executor != null) && "cfs".equals(FileSwitchDirectory.getExtension(name))) {
+        // the advice of a compound file doesn't fit all of its sub-files, advise each one when it is opened:
+        final BiFunction<String, IOContext, ReadAdvice> subFileReadAdvice = readAdvice;
+        sliceListener = (subFileName, buffer, offset, length) -> {
+          final ReadAdvice subFileAdvice = subFileReadAdvice.apply(subFileName, context);
+          if (subFileAdvice != advice) {
+            try {
+              advise((MappedByteBuffer) buffer, offset, length, subFileAdvice);
+            } catch (IOException e) {
+              throw new UncheckedIOException(e);
+            }
+          }
+        };
+      }
+      final ByteBufferIndexInput in = ByteBufferIndexInput.newInstance(resourceDescription,
+          map(resourceDescription, c, 0, c.size(), preloadFile && executor == null, advice), 
+          c.size(), chunkSizePower, new ByteBufferGuard(resourceDescription, cleaner, this::prefetch, sliceListener));
+      if (preloadFile && executor != null) {
+        preloadInBackground(executor, in.clone());
+      }
+      return in;
     }
   }
 
+  /** Touches every page of the given clone on the executor.  Pages are read in batches,
+   *  each registered as a {@link ByteBufferGuard#beginBackgroundRead background read}, so
+   *  that the file is not unmapped under the warmer, and this stops once it is closed. */
+  private void preloadInBackground(Executor executor, ByteBufferIndexInput clone) {
+    final long length = clone.length();
+    pendingPreloadBytes.addAndGet(length);
+    boolean success = false;
+    try {
+      executor.execute(() -> {
+        final ByteBufferGuard guard = clone.guard;
+        long done = 0;
+        try {
+          while (done < length && guard.beginBackgroundRead()) {
+            try {
+              final long end = Math.min(length, done + PRELOAD_BATCH_SIZE);
+              for (long pos = done; pos < end; pos += PAGE_SIZE) {
+                clone.readByte(pos);
+              }
+              preloadedBytes.addAndGet(end - done);
+              pendingPreloadBytes.addAndGet(done - end);
+              done = end;
+            } finally {
+              guard.endBackgroundRead();
+            }
+          }
+        } catch (AlreadyClosedException | IOException e) {
+          // the file was closed before we could load it; nothing to do
+        } finally {
+          // bytes we did not get to are no longer pending either:
+          pendingPreloadBytes.addAndGet(done - length);
+        }
+      });
+      success = true;
+    } finally {
+      if (success == false) {
+        pendingPreloadBytes.addAndGet(-length);
+      }
+    }
+  }
+
+  /** Implements {@link IndexInput#prefetch}: touches the pages of the range on the
+   *  {@link #setPreloadExecutor preload executor} if there is one, and otherwise
+   *  delegates to {@link #prefetch(MappedByteBuffer, int, int)}.  The calling thread
+   *  never waits for pages to be loaded.  Since these are only hints, ranges are dropped
+   *  while {@link #MAX_PENDING_PREFETCHES} are already waiting for the executor. */
+  private void prefetch(ByteBufferGuard guard, ByteBuffer buffer, int offset, int length) throws IOException {
+    final Executor executor = preloadExecutor;
+    if (executor == null) {
+      if (buffer instanceof MappedByteBuffer) {
+        prefetch((MappedByteBuffer) buffer, offset, length);
+      }
+      return;
+    }
+    if (length == 0 || pendingPrefetches.incrementAndGet() > MAX_PENDING_PREFETCHES) {
+      pendingPrefetches.decrementAndGet();
+      return;
+    }
+    boolean success = false;
+    try {
+      executor.execute(() -> {
+        pendingPrefetches.decrementAndGet();
+        // the search that asked for this may be done, and the file closed:
+        if (guard.beginBackgroundRead()) {
+          try {
+            int x = 0;
+            final int end = offset + length;
+            for (int i = offset; i < end; i += PAGE_SIZE) {
+              x ^= buffer.get(i);
+            }
+            touchSink = x;
+          } finally {
+            guard.endBackgroundRead();
+          }
+        }
+      });
+      success = true;
+    } finally {
+      if (success == false) {
+        pendingPrefetches.decrementAndGet();
+      }
+    }
+  }
+
+  /**
+   * Called by {@link IndexInput#prefetch} when there is no {@link #setPreloadExecutor
+   * preload executor}, for {@code length} bytes of a mapped buffer, starting at
+   * {@code offset}.  This must not wait for the pages to be loaded, since callers
+   * prefetch on the search thread.  The default implementation does nothing; subclasses
+   * that have native access can override this to call {@code posix_madvise} with
+   * {@code POSIX_MADV_WILLNEED}, which loads the pages asynchronously.
+   */
+  protected void prefetch(MappedByteBuffer buffer, int offset, int length) throws IOException {
+  }
+
+  /**
+   * Applies the given advice to {@code length} bytes of a mapped buffer, starting at
+   * {@code offset}.  The default implementation only honors {@link ReadAdvice#WILLNEED},
+   * by loading the pages of the region into physical memory, and ignores other advice.
+   * Subclasses that have native access can override this to call {@code posix_madvise}.
+   * The behavior is best-effort and operating system dependent.
+   */
+  protected void advise(MappedByteBuffer buffer, int offset, int length, ReadAdvice advice) throws IOException {
+    if (advice != ReadAdvice.WILLNEED || length == 0) {
+      return;
+    }
+    if (offset == 0 && length == buffer.capacity()) {
+      buffer.load();
+    } else {
+      // touch one byte per page, like MappedByteBuffer#load does:
+      int x = 0;
+      final int end = offset + length;
+      for (int i = offset; i < end; i += PAGE_SIZE) {
+        x ^= buffer.get(i);
+      }
+      x ^= buffer.get(end - 1);
+      touchSink = x;
+    }
+  }
+
+  /** Assumed page size when touching pages of a region. */
+  private static final int PAGE_SIZE = 4096;
+
+  /** Max number of {@link IndexInput#prefetch prefetched} ranges that wait for the preload executor. */
+  private static final int MAX_PENDING_PREFETCHES = 256;
+
+  /** Number of bytes that background preloading loads before letting the file be closed. */
+  private static final int PRELOAD_BATCH_SIZE = 64 * PAGE_SIZE;
+
+  /** Prevents the JIT from eliminating page touches as dead code. */
+  private static int touchSink;
+
   /** Maps a file into a set of buffers */
-  final ByteBuffer[] map(String resourceDescription, FileChannel fc, long offset, long length) throws IOException {
+  final ByteBuffer[] map(String resourceDescription, FileChannel fc, long offset, long length, boolean preload, ReadAdvice advice) throws IOException {
     if ((length >>> chunkSizePower) >= Integer.MAX_VALUE)
       throw new IllegalArgumentException("RandomAccessFile too big for chunk size: " + resourceDescription);
     
@@ -270,6 +583,8 @@ public class MMapDirectory extends FSDirectory {
       }
       if (preload) {
         buffer.load();
+      } else if (advice != ReadAdvice.NORMAL) {
+        advise(buffer, 0, bufSize, advice);
       }
       buffers[bufNr] = buffer;
       bufferStart += bufSize;
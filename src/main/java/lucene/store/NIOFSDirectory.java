@@ -23,6 +23,7 @@ import java.nio.channels.ClosedChannelException;
 import java.nio.channels.FileChannel;
 import java.nio.file.Path;
 import java.nio.file.StandardOpenOption;
+import java.util.concurrent.Executor;
 import java.util.concurrent.Future;
 
 /**
@@ -52,6 +53,8 @@ import java.util.concurrent.Future;
  */
 public class NIOFSDirectory extends FSDirectory {
 
+  private volatile Executor prefetchExecutor;
+
   /** Create a new NIOFSDirectory for the named location.
    *  The directory is created at the named location if it does not yet exist.
    *
@@ -73,13 +76,32 @@ public class NIOFSDirectory extends FSDirectory {
     this(path, FSLockFactory.getDefault());
   }
 
+  /**
+   * Sets the executor that reads the ranges passed to {@link IndexInput#prefetch} in the
+   * background, so that they are in the operating system's page cache when they are
+   * actually read.  The executor must not interrupt its threads, since that would close
+   * the file channel, see above.  Default is {@code null}, meaning that prefetching
+   * does nothing.  This only applies to files that are opened afterwards.
+   */
+  public void setPrefetchExecutor(Executor prefetchExecutor) {
+    this.prefetchExecutor = prefetchExecutor;
+  }
+
+  /**
+   * Returns the executor that reads prefetched ranges, or {@code null}.
+   * @see #setPrefetchExecutor
+   */
+  public Executor getPrefetchExecutor() {
+    return prefetchExecutor;
+  }
+
   @Override
   public IndexInput openInput(String name, IOContext context) throws IOException {
     ensureOpen();
     ensureCanRead(name);
     Path path = getDirectory().resolve(name);
     FileChannel fc = FileChannel.open(path, StandardOpenOption.READ);
-    return new NIOFSIndexInput("NIOFSIndexInput(path=\"" + path + "\")", fc, context);
+    return new NIOFSIndexInput("NIOFSIndexInput(path=\"" + path + "\")", fc, context, prefetchExecutor);
   }
   
   /**
@@ -87,9 +109,20 @@ public class NIOFSDirectory extends FSDirectory {
    */
   static final class NIOFSIndexInput extends BufferedIndexInput {
     /**
-     * The maximum chunk size for reads of 16384 bytes.
+     * The maximum chunk size for reads of 65536 bytes, which matches
+     * {@link BufferedIndexInput#MAX_MERGE_BUFFER_SIZE} so that a refill of a
+     * fully grown buffer is a single read.
      */
-    private static final int CHUNK_SIZE = 16384;
+    private static final int CHUNK_SIZE = 65536;
+
+    /**
+     * {@link #readRanges} reads ranges that are at most that many bytes apart
+     * with a single read, since reading the gap is cheaper than another syscall.
+     */
+    private static final int MAX_RANGE_GAP = 4096;
+
+    /** The maximum number of bytes {@link #readRanges} reads at once. */
+    private static final int MAX_COALESCED_READ = 4 * CHUNK_SIZE;
     
     /** the file channel we will read from */
     protected final FileChannel channel;
@@ -99,22 +132,38 @@ public class NIOFSDirectory extends FSDirectory {
     protected final long off;
     /** end offset (start+length) */
     protected final long end;
+    /** reads prefetched ranges, or null */
+    private final Executor prefetchExecutor;
     
     private ByteBuffer byteBuf; // wraps the buffer for NIO
 
     public NIOFSIndexInput(String resourceDesc, FileChannel fc, IOContext context) throws IOException {
+      this(resourceDesc, fc, context, null);
+    }
+
+    public NIOFSIndexInput(String resourceDesc, FileChannel fc, IOContext context, Executor prefetchExecutor) throws IOException {
       super(resourceDesc, context);
       this.channel = fc; 
       this.off = 0L;
       this.end = fc.size();
+      this.prefetchExecutor = prefetchExecutor;
     }
     
     public NIOFSIndexInput(String resourceDesc, FileChannel fc, long off, long length, int bufferSize) {
-      super(resourceDesc, bufferSize);
+      this(resourceDesc, fc, off, length, bufferSize, null);
+    }
+
+    public NIOFSIndexInput(String resourceDesc, FileChannel fc, long off, long length, int bufferSize, Executor prefetchExecutor) {
+      this(resourceDesc, fc, off, length, bufferSize, bufferSize, prefetchExecutor);
+    }
+
+    public NIOFSIndexInput(String resourceDesc, FileChannel fc, long off, long length, int bufferSize, int maxBufferSize, Executor prefetchExecutor) {
+      super(resourceDesc, bufferSize, maxBufferSize);
       this.channel = fc;
       this.off = off;
       this.end = off + length;
       this.isClone = true;
+      this.prefetchExecutor = prefetchExecutor;
     }
     
     @Override
@@ -136,7 +185,62 @@ public class NIOFSDirectory extends FSDirectory {
       if (offset < 0 || length < 0 || offset + length > this.length()) {
         throw new IllegalArgumentException("slice() " + sliceDescription + " out of bounds: offset=" + offset + ",length=" + length + ",fileLength="  + this.length() + ": "  + this);
       }
-      return new NIOFSIndexInput(getFullSliceDescription(sliceDescription), channel, off + offset, length, getBufferSize());
+      return new NIOFSIndexInput(getFullSliceDescription(sliceDescription), channel, off + offset, length, getBufferSize(), getMaxBufferSize(), prefetchExecutor);
+    }
+
+    @Override
+    public void prefetch(long offset, long length) throws IOException {
+      super.prefetch(offset, length);
+      if (prefetchExecutor == null || length == 0) {
+        return;
+      }
+      final long start = off + offset;
+      prefetchExecutor.execute(() -> {
+        // read into a throw-away buffer, which pulls the range into the page cache:
+        final ByteBuffer bb = ByteBuffer.allocate((int) Math.min(CHUNK_SIZE, length));
+        try {
+          long pos = start;
+          final long stop = start + length;
+          while (pos < stop) {
+            bb.clear();
+            bb.limit((int) Math.min(bb.capacity(), stop - pos));
+            final int i = channel.read(bb, pos);
+            if (i <= 0) {
+              break;
+            }
+            pos += i;
+          }
+        } catch (IOException e) {
+          // the file was closed in the meantime; prefetching is best-effort
+        }
+      });
+    }
+
+    @Override
+    public void readRanges(long[] offsets, byte[][] buffers) throws IOException {
+      checkRanges(offsets, buffers);
+      int i = 0;
+      while (i < offsets.length) {
+        // coalesce the following ranges that are close enough into a single read:
+        final long start = offsets[i];
+        long stop = start + buffers[i].length;
+        int j = i + 1;
+        while (j < offsets.length && offsets[j] - stop <= MAX_RANGE_GAP
+            && Math.max(stop, offsets[j] + buffers[j].length) - start <= MAX_COALESCED_READ) {
+          stop = Math.max(stop, offsets[j] + buffers[j].length);
+          j++;
+        }
+        if (j == i + 1) {
+          read(ByteBuffer.wrap(buffers[i]), off + start);
+        } else {
+          final byte[] bytes = new byte[(int) (stop - start)];
+          read(ByteBuffer.wrap(bytes), off + start);
+          for (int k = i; k < j; ++k) {
+            System.arraycopy(bytes, (int) (offsets[k] - start), buffers[k], 0, buffers[k].length);
+          }
+        }
+        i = j;
+      }
     }
 
     @Override
@@ -170,6 +274,13 @@ public class NIOFSDirectory extends FSDirectory {
         throw new EOFException("read past EOF: " + this);
       }
 
+      bb.limit(bb.position() + len);
+      read(bb, pos);
+    }
+
+    /** Fills the remaining bytes of {@code bb} with the bytes at absolute position {@code pos}. */
+    private void read(ByteBuffer bb, long pos) throws IOException {
+      final int len = bb.remaining();
       try {
         int readLength = len;
         while (readLength > 0) {
@@ -178,7 +289,7 @@ public class NIOFSDirectory extends FSDirectory {
           assert bb.remaining() == toRead;
           final int i = channel.read(bb, pos);
           if (i < 0) { // be defensive here, even though we checked before hand, something could have changed
-            throw new EOFException("read past EOF: " + this + " off: " + offset + " len: " + len + " pos: " + pos + " chunkLen: " + toRead + " end: " + end);
+            throw new EOFException("read past EOF: " + this + " len: " + len + " pos: " + pos + " chunkLen: " + toRead + " end: " + end);
           }
           assert i > 0 : "FileChannel.read with non zero-length bb.remaining() must always read at least one byte (FileChannel is in blocking mode, see spec of ReadableByteChannel)";
           pos += i;
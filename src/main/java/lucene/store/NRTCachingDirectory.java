@@ -20,11 +20,19 @@ package lucene.store;
 import lucene.util.Accountable;
 import lucene.util.Accountables;
 import lucene.util.IOUtils;
+import lucene.util.NamedThreadFactory;
 
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.nio.file.NoSuchFileException;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 
 // TODO
 //   - let subclass dictate policy...?
@@ -54,10 +62,18 @@ import java.util.*;
  *   IndexWriter writer = new IndexWriter(cachedFSDir, conf);
  * </pre>
  *
- * <p>This will cache all newly flushed segments, all merges
- * whose expected segment size is {@code <= 5 MB}, unless the net
- * cached bytes exceeds 60 MB at which point all writes will
- * not be cached (until the net bytes falls below 60 MB).</p>
+ * <p>This will cache all newly flushed segments and all merges
+ * whose expected segment size is {@code <= 5 MB}.  Whenever the net
+ * cached bytes exceed 60 MB, the least recently used cached files are
+ * written to the delegate and dropped from the cache, until the net
+ * cached bytes fall below 60 MB again.  This eviction runs on the
+ * {@link #setEvictionExecutor eviction executor}.  Files that fail to be
+ * evicted stay cached, and are written again, reporting any error, when
+ * they are {@link #sync sync'd} or when this directory is closed.</p>
+ *
+ * <p>Reads, deletes and listings do not lock, so that threads that
+ * open files for searching do not contend with each other, nor with
+ * threads that write or evict files.</p>
  *
  * @lucene.experimental
  */
@@ -70,28 +86,72 @@ public class NRTCachingDirectory extends FilterDirectory implements Accountable
   private final long maxMergeSizeBytes;
   private final long maxCachedBytes;
 
+  // last access time of the cached files, to evict the least recently used ones first
+  private final Map<String,Long> lastAccess = new ConcurrentHashMap<>();
+  // cached files that are still being written, which can't be evicted yet
+  private final Set<String> pendingOutputs = ConcurrentHashMap.newKeySet();
+  private final AtomicBoolean evicting = new AtomicBoolean();
+  private final AtomicLong evictionCount = new AtomicLong();
+  // cached files that could not be evicted, which eviction does not retry
+  private final Map<String,IOException> evictionFailures = new ConcurrentHashMap<>();
+  private final ThreadPoolExecutor defaultEvictionExecutor;
+  private volatile Executor evictionExecutor;
+
   private static final boolean VERBOSE = false;
 
   /**
-   *  We will cache a newly created output if 1) it's a
+   *  We will cache a newly created output if it's a
    *  flush or a merge and the estimated size of the merged segment is
-   *  {@code <= maxMergeSizeMB}, and 2) the total cached bytes is
-   *  {@code <= maxCachedMB} */
+   *  {@code <= maxMergeSizeMB}.  When the total cached bytes exceed
+   *  {@code maxCachedMB}, the least recently used files are uncached. */
   public NRTCachingDirectory(Directory delegate, double maxMergeSizeMB, double maxCachedMB) {
     super(delegate);
     maxMergeSizeBytes = (long) (maxMergeSizeMB*1024*1024);
     maxCachedBytes = (long) (maxCachedMB*1024*1024);
+    defaultEvictionExecutor = new ThreadPoolExecutor(1, 1, 10, TimeUnit.SECONDS,
+        new LinkedBlockingQueue<>(), new NamedThreadFactory("NRTCachingDirectory Eviction"));
+    defaultEvictionExecutor.allowCoreThreadTimeOut(true);
+    evictionExecutor = defaultEvictionExecutor;
   }
 
 
+  /**
+   * Sets the executor that writes the least recently used files to the delegate
+   * when the cache exceeds {@code maxCachedMB}.  Default is a single thread owned
+   * by this directory, which is started on demand and stopped on close.  {@code null}
+   * means that the thread that closes the output that exceeded the budget evicts
+   * files.  Either way, eviction failures are never thrown to that thread.
+   */
+  public void setEvictionExecutor(Executor evictionExecutor) {
+    this.evictionExecutor = evictionExecutor;
+  }
+
+  /**
+   * Returns the executor that evicts files, or {@code null}.
+   * @see #setEvictionExecutor
+   */
+  public Executor getEvictionExecutor() {
+    return evictionExecutor;
+  }
+
+  /**
+   * Returns the number of files that have been evicted from the cache to stay
+   * under {@code maxCachedMB}.
+   */
+  public long getEvictionCount() {
+    return evictionCount.get();
+  }
+
   @Override
   public String toString() {
     return "NRTCachingDirectory(" + in + "; maxCacheMB=" + (maxCachedBytes/1024/1024.) + " maxMergeSizeMB=" + (maxMergeSizeBytes/1024/1024.) + ")";
   }
 
   @Override
-  public synchronized String[] listAll() throws IOException {
+  public String[] listAll() throws IOException {
     final Set<String> files = new HashSet<>();
+    // list the cache first: files are written to the delegate before they are
+    // removed from the cache, so a concurrently uncached file is not missed
     for(String f : cache.listAll()) {
       files.add(f);
     }
@@ -104,24 +164,34 @@ public class NRTCachingDirectory extends FilterDirectory implements Accountable
   }
 
   @Override
-  public synchronized void deleteFile(String name) throws IOException {
+  public void deleteFile(String name) throws IOException {
     if (VERBOSE) {
       System.out.println("nrtdir.deleteFile name=" + name);
     }
     if (cache.fileNameExists(name)) {
-      cache.deleteFile(name);
-    } else {
-      in.deleteFile(name);
+      try {
+        cache.deleteFile(name);
+        lastAccess.remove(name);
+        pendingOutputs.remove(name);
+        evictionFailures.remove(name);
+        return;
+      } catch (FileNotFoundException e) {
+        // uncached concurrently: it is in the delegate now
+      }
     }
+    in.deleteFile(name);
   }
 
   @Override
-  public synchronized long fileLength(String name) throws IOException {
+  public long fileLength(String name) throws IOException {
     if (cache.fileNameExists(name)) {
-      return cache.fileLength(name);
-    } else {
-      return in.fileLength(name);
+      try {
+        return cache.fileLength(name);
+      } catch (FileNotFoundException e) {
+        // uncached concurrently: it is in the delegate now
+      }
     }
+    return in.fileLength(name);
   }
 
   public String[] listCachedFiles() {
@@ -137,7 +207,7 @@ public class NRTCachingDirectory extends FilterDirectory implements Accountable
       if (VERBOSE) {
         System.out.println("  to cache");
       }
-      return cache.createOutput(name, context);
+      return new CachedIndexOutput(cache.createOutput(name, context));
     } else {
       return in.createOutput(name, context);
     }
@@ -149,7 +219,15 @@ public class NRTCachingDirectory extends FilterDirectory implements Accountable
       System.out.println("nrtdir.sync files=" + fileNames);
     }
     for(String fileName : fileNames) {
-      unCache(fileName);
+      try {
+        unCache(fileName);
+      } catch (IOException e) {
+        final IOException evictionFailure = evictionFailures.get(fileName);
+        if (evictionFailure != null && evictionFailure != e) {
+          e.addSuppressed(evictionFailure);
+        }
+        throw e;
+      }
     }
     in.sync(fileNames);
   }
@@ -164,7 +242,7 @@ public class NRTCachingDirectory extends FilterDirectory implements Accountable
   }
 
   @Override
-  public synchronized IndexInput openInput(String name, IOContext context) throws IOException {
+  public IndexInput openInput(String name, IOContext context) throws IOException {
     if (VERBOSE) {
       System.out.println("nrtdir.openInput name=" + name);
     }
@@ -172,10 +250,15 @@ public class NRTCachingDirectory extends FilterDirectory implements Accountable
       if (VERBOSE) {
         System.out.println("  from cache");
       }
-      return cache.openInput(name, context);
-    } else {
-      return in.openInput(name, context);
+      try {
+        final IndexInput input = cache.openInput(name, context);
+        lastAccess.replace(name, System.nanoTime());
+        return input;
+      } catch (FileNotFoundException e) {
+        // uncached concurrently: it is in the delegate now
+      }
     }
+    return in.openInput(name, context);
   }
 
   /** Close this directory, which flushes any cached files
@@ -196,6 +279,7 @@ public class NRTCachingDirectory extends FilterDirectory implements Accountable
       }
       success = true;
     } finally {
+      defaultEvictionExecutor.shutdown();
       if (success) {
         IOUtils.close(cache, in);
       } else {
@@ -205,7 +289,8 @@ public class NRTCachingDirectory extends FilterDirectory implements Accountable
   }
 
   /** Subclass can override this to customize logic; return
-   *  true if this file should be written to the RAMDirectory. */
+   *  true if this file should be written to the RAMDirectory.  The
+   *  total size of the cache is bounded by eviction, not by this method. */
   protected boolean doCacheWrite(String name, IOContext context) {
     //System.out.println(Thread.currentThread().getName() + ": CACHE check merge=" + merge + " size=" + (merge==null ? 0 : merge.estimatedMergeBytes));
 
@@ -216,7 +301,7 @@ public class NRTCachingDirectory extends FilterDirectory implements Accountable
       bytes = context.flushInfo.estimatedSegmentSize;
     }
 
-    return (bytes <= maxMergeSizeBytes) && (bytes + cache.ramBytesUsed()) <= maxCachedBytes;
+    return (bytes <= maxMergeSizeBytes) && bytes <= maxCachedBytes;
   }
 
   @Override
@@ -262,7 +347,7 @@ public class NRTCachingDirectory extends FilterDirectory implements Accountable
       }
     }
 
-    return out;
+    return first == cache ? new CachedIndexOutput(out) : out;
   }
 
   /** Returns true if the file exists
@@ -280,35 +365,165 @@ public class NRTCachingDirectory extends FilterDirectory implements Accountable
 
   private final Object uncacheLock = new Object();
 
-  private void unCache(String fileName) throws IOException {
-    // Only let one thread uncache at a time; this only
-    // happens during commit() or close():
+  /** Writes a cached file to the delegate and removes it from the cache.
+   *  Returns false if the file was not cached (anymore). */
+  private boolean unCache(String fileName) throws IOException {
+    // Only let one thread uncache at a time; this
+    // happens during commit(), close() or eviction:
     synchronized(uncacheLock) {
       if (VERBOSE) {
         System.out.println("nrtdir.unCache name=" + fileName);
       }
-      if (!cache.fileNameExists(fileName)) {
+      if (!cache.isOpen || !cache.fileNameExists(fileName)) {
         // Another thread beat us...
-        return;
+        evictionFailures.remove(fileName);
+        return false;
       }
       assert slowFileExists(in, fileName) == false: "fileName=" + fileName + " exists both in cache and in delegate";
 
       final IOContext context = IOContext.DEFAULT;
-      final IndexOutput out = in.createOutput(fileName, context);
-      IndexInput in = null;
+      final IndexInput input;
       try {
-        in = cache.openInput(fileName, context);
-        out.copyBytes(in, in.length());
+        input = cache.openInput(fileName, context);
+      } catch (FileNotFoundException e) {
+        // deleted concurrently
+        evictionFailures.remove(fileName);
+        return false;
+      }
+      IndexOutput out = null;
+      boolean success = false;
+      try {
+        out = in.createOutput(fileName, context);
+        out.copyBytes(input, input.length());
+        success = true;
       } finally {
-        IOUtils.close(in, out);
+        if (success) {
+          IOUtils.close(input, out);
+        } else {
+          IOUtils.closeWhileHandlingException(input, out);
+          if (out != null) {
+            // the file stays cached, remove the partial copy
+            IOUtils.deleteFilesIgnoringExceptions(in, fileName);
+          }
+        }
       }
 
-      // Lock order: uncacheLock -> this
-      synchronized(this) {
-        // Must sync here because other sync methods have
-        // if (cache.fileNameExists(name)) { ... } else { ... }:
+      // Readers that find the file missing from the cache fall back to the
+      // delegate, which has a complete copy by now:
+      try {
         cache.deleteFile(fileName);
+      } catch (FileNotFoundException e) {
+        // deleted concurrently while we were copying it
+        in.deleteFile(fileName);
+      }
+      lastAccess.remove(fileName);
+      evictionFailures.remove(fileName);
+      return true;
+    }
+  }
+
+  /** Uncaches least recently used files, if the cache exceeds its budget. */
+  private void maybeEvict() {
+    if (cache.isOpen && cache.ramBytesUsed() > maxCachedBytes && evicting.compareAndSet(false, true)) {
+      final Executor executor = evictionExecutor;
+      if (executor == null) {
+        evict();
+      } else {
+        boolean success = false;
+        try {
+          executor.execute(this::evict);
+          success = true;
+        } finally {
+          if (success == false) {
+            evicting.set(false);
+          }
+        }
+      }
+    }
+  }
+
+  /** Never throws: a file that fails to be evicted stays cached, and its error is
+   *  recorded so that {@link #sync} and {@link #close} retry it and report it. */
+  private void evict() {
+    try {
+      while (cache.isOpen && cache.ramBytesUsed() > maxCachedBytes) {
+        String lru = null;
+        long lruTime = Long.MAX_VALUE;
+        for (Map.Entry<String,Long> entry : lastAccess.entrySet()) {
+          if (entry.getValue() < lruTime && pendingOutputs.contains(entry.getKey()) == false
+              && evictionFailures.containsKey(entry.getKey()) == false) {
+            lru = entry.getKey();
+            lruTime = entry.getValue();
+          }
+        }
+        if (lru == null) {
+          // all cached files are still being written
+          break;
+        }
+        if (VERBOSE) {
+          System.out.println("nrtdir.evict name=" + lru);
+        }
+        try {
+          if (unCache(lru)) {
+            evictionCount.incrementAndGet();
+          }
+        } catch (IOException e) {
+          // likely a problem with the delegate, so don't try other files until the next eviction
+          evictionFailures.put(lru, e);
+          break;
+        }
+        lastAccess.remove(lru);
+      }
+    } finally {
+      evicting.set(false);
+    }
+  }
+
+  /** Tracks cached files that are still being written, and evicts files
+   *  once a file is complete. */
+  private final class CachedIndexOutput extends IndexOutput {
+    private final IndexOutput delegate;
+    private boolean closed;
+
+    CachedIndexOutput(IndexOutput delegate) {
+      super("CachedIndexOutput(" + delegate + ")", delegate.getName());
+      this.delegate = delegate;
+      pendingOutputs.add(delegate.getName());
+      lastAccess.put(delegate.getName(), System.nanoTime());
+    }
+
+    @Override
+    public void close() throws IOException {
+      if (closed) {
+        return;
+      }
+      closed = true;
+      try {
+        delegate.close();
+      } finally {
+        pendingOutputs.remove(getName());
       }
+      maybeEvict();
+    }
+
+    @Override
+    public long getFilePointer() {
+      return delegate.getFilePointer();
+    }
+
+    @Override
+    public long getChecksum() throws IOException {
+      return delegate.getChecksum();
+    }
+
+    @Override
+    public void writeByte(byte b) throws IOException {
+      delegate.writeByte(b);
+    }
+
+    @Override
+    public void writeBytes(byte[] b, int offset, int length) throws IOException {
+      delegate.writeBytes(b, offset, length);
     }
   }
 
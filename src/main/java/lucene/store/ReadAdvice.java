@@ -0,0 +1,39 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package lucene.store;
+
+
+/**
+ * Advice about how the bytes of a file are going to be accessed, which a
+ * {@link Directory} may pass on to the operating system, e.g. through
+ * {@code madvise}, to tune read-ahead and page cache usage.
+ *
+ * @see MMapDirectory#setReadAdvice
+ * @lucene.experimental
+ */
+public enum ReadAdvice {
+  /** No particular access pattern; the operating system's defaults apply. */
+  NORMAL,
+  /** Bytes are accessed in random order, so read-ahead is wasted. */
+  RANDOM,
+  /** Bytes are accessed sequentially, so aggressive read-ahead pays off. */
+  SEQUENTIAL,
+  /** Bytes will be accessed soon and should be loaded ahead of time. */
+  WILLNEED,
+  /** Bytes will not be accessed again soon, so their pages can be evicted. */
+  DONTNEED
+}
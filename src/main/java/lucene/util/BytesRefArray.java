@@ -122,6 +122,54 @@ public final class BytesRefArray implements SortableBytesRefArray {
     for (int i = 0; i < orderedEntries.length; i++) {
       orderedEntries[i] = i;
     }
+
+    if (comp == Comparator.<BytesRef>naturalOrder()) {
+      // binary order: radix sort on the raw bytes, reading them straight from the pool
+      new MSBRadixSorter(Integer.MAX_VALUE) {
+        @Override
+        protected void swap(int i, int j) {
+          final int o = orderedEntries[i];
+          orderedEntries[i] = orderedEntries[j];
+          orderedEntries[j] = o;
+        }
+
+        @Override
+        protected int byteAt(int i, int k) {
+          final int index = orderedEntries[i];
+          final int offset = offsets[index];
+          final int length = index == lastElement - 1 ? currentOffset - offset
+              : offsets[index + 1] - offset;
+          if (k >= length) {
+            return -1;
+          }
+          return pool.readByte(offset + k) & 0xff;
+        }
+      }.sort(0, size());
+      return orderedEntries;
+    }
+
+    if (comp instanceof BytesRefComparator) {
+      final BytesRefComparator bComp = (BytesRefComparator) comp;
+      new MSBRadixSorter(bComp.comparedBytesCount) {
+        @Override
+        protected void swap(int i, int j) {
+          final int o = orderedEntries[i];
+          orderedEntries[i] = orderedEntries[j];
+          orderedEntries[j] = o;
+        }
+
+        @Override
+        protected int byteAt(int i, int k) {
+          setBytesRef(scratch, scratchBytes, orderedEntries[i]);
+          return bComp.byteAt(scratchBytes, k);
+        }
+
+        private final BytesRef scratchBytes = new BytesRef();
+        private final BytesRefBuilder scratch = new BytesRefBuilder();
+      }.sort(0, size());
+      return orderedEntries;
+    }
+
     new IntroSorter() {
       @Override
       protected void swap(int i, int j) {
@@ -19,8 +19,8 @@ package lucene.util;
 import java.util.Comparator;
 
 /** Specialized {@link BytesRef} comparator that
- * {@link FixedLengthBytesRefArray#iterator(Comparator)} has optimizations
- * for.
+ * {@link FixedLengthBytesRefArray#iterator(Comparator)} and
+ * {@link BytesRefArray#iterator(Comparator)} have optimizations for.
  * @lucene.internal */
 public abstract class BytesRefComparator implements Comparator<BytesRef> {
 
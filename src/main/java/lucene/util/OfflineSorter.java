@@ -37,6 +37,11 @@ import java.util.concurrent.atomic.AtomicLong;
  *   <li>(two bytes) length of the following byte array,
  *   <li>exactly the above count of bytes for the sequence to be sorted.
  * </ul>
+ * <p>
+ * If an {@link ExecutorService} is provided, the input keeps streaming into the next
+ * in-memory partition while earlier partitions are sorted and written by the executor, and
+ * independent merges of the sorted partitions run concurrently.  Partitions are radix-sorted
+ * when the comparator is {@link #DEFAULT_COMPARATOR} or a {@link BytesRefComparator}.
  * 
  * @see #sort(String)
  * @lucene.experimental
@@ -298,8 +303,21 @@ public class OfflineSorter {
       // TODO: we shouldn't have to do this?  Can't we return a merged reader to
       // the caller, who often consumes the result just once, instead?
 
-      // Merge all partitions down to 1 (basically a forceMerge(1)):
-      while (segments.size() > 1) {
+      // Merge all partitions down to 1 (basically a forceMerge(1)).  Disjoint groups of
+      // partitions are merged concurrently until a single merge can handle the rest:
+      while (segments.size() > maxTempFiles) {
+        List<Future<Partition>> merged = new ArrayList<>();
+        for (int start = 0; start < segments.size(); start += maxTempFiles) {
+          List<Future<Partition>> group = segments.subList(start, Math.min(segments.size(), start + maxTempFiles));
+          if (group.size() == 1) {
+            merged.add(group.get(0));
+          } else {
+            merged.add(submitMerge(trackingDir, new ArrayList<>(group)));
+          }
+        }
+        segments = merged;
+      }
+      if (segments.size() > 1) {
         mergePartitions(trackingDir, segments);
       }
 
@@ -344,7 +362,6 @@ public class OfflineSorter {
 
   /** Merge the most recent {@code maxTempFile} partitions into a new partition. */
   void mergePartitions(Directory trackingDir, List<Future<Partition>> segments) throws IOException {
-    long start = System.currentTimeMillis();
     List<Future<Partition>> segmentsToMerge;
     if (segments.size() > maxTempFiles) {
       segmentsToMerge = segments.subList(segments.size() - maxTempFiles, segments.size());
@@ -352,14 +369,18 @@ public class OfflineSorter {
       segmentsToMerge = segments;
     }
 
-    sortInfo.mergeRounds++;
-
-    MergePartitionsTask task = new MergePartitionsTask(trackingDir, new ArrayList<>(segmentsToMerge));
+    Future<Partition> merged = submitMerge(trackingDir, new ArrayList<>(segmentsToMerge));
 
     segmentsToMerge.clear();
-    segments.add(exec.submit(task));
+    segments.add(merged);
+  }
 
+  /** Submits the merge of the given partitions to the executor.  Merge tasks only wait on
+   *  tasks that were submitted before them, so they cannot deadlock a FIFO executor. */
+  private Future<Partition> submitMerge(Directory trackingDir, List<Future<Partition>> segmentsToMerge) {
+    sortInfo.mergeRounds++;
     sortInfo.tempMergeFiles++;
+    return exec.submit(new MergePartitionsTask(trackingDir, segmentsToMerge));
   }
 
   /** Holds one partition of items, either loaded into memory or based on a file. */
@@ -0,0 +1,222 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package lucene.util;
+
+
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A size-bounded, least-recently-used cache of immutable values that are keyed
+ * by an owner, eg. a segment or a file, and a position within that owner.
+ * Owners are compared by identity, and all values of an owner can be removed in
+ * time that is linear with their number, eg. when the owner is closed or deleted.
+ * This class is thread-safe.
+ * <p>
+ * This cache exposes some statistics ({@link #getHitCount() hit count},
+ * {@link #getMissCount() miss count}, {@link #getCacheSize() number of cache
+ * entries}, {@link #getCacheCount() total number of values that have ever
+ * been cached}, {@link #getEvictionCount() number of evicted entries}).
+ *
+ * @lucene.internal
+ */
+public final class RamBoundedLRUCache<V> implements Accountable {
+
+  private static final long KEY_RAM_BYTES_USED = RamUsageEstimator.shallowSizeOfInstance(Key.class);
+  private static final long VALUE_RAM_BYTES_USED = RamUsageEstimator.shallowSizeOfInstance(Value.class);
+  // a LinkedHashMap entry and its slot in the table, plus the HashMap entry and slot of the per-owner set
+  private static final long ENTRY_RAM_BYTES_USED = 3 * RamUsageEstimator.NUM_BYTES_OBJECT_HEADER
+      + 12 * RamUsageEstimator.NUM_BYTES_OBJECT_REF + 2 * Integer.BYTES;
+
+  private static final class Key {
+    final Object owner;
+    final long position;
+
+    Key(Object owner, long position) {
+      this.owner = owner;
+      this.position = position;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (obj == null || obj.getClass() != Key.class) {
+        return false;
+      }
+      final Key that = (Key) obj;
+      return owner == that.owner && position == that.position;
+    }
+
+    @Override
+    public int hashCode() {
+      return 31 * System.identityHashCode(owner) + Long.hashCode(position);
+    }
+  }
+
+  private static final class Value<V> {
+    final V value;
+    final long ramBytesUsed; // including the overhead of the entry
+
+    Value(V value, long ramBytesUsed) {
+      this.value = value;
+      this.ramBytesUsed = ramBytesUsed;
+    }
+  }
+
+  private final long maxRamBytesUsed;
+  // access-ordered, so that iteration starts with the least recently used value
+  private final Map<Key, Value<V>> values = new LinkedHashMap<>(16, 0.75f, true);
+  // the keys of each owner, so that removing an owner's values doesn't scan all values
+  private final Map<Object, Set<Key>> keysByOwner = new IdentityHashMap<>();
+  private long ramBytesUsed;
+  private long hitCount, missCount, cacheCount;
+
+  /** Create a new instance that will use at most {@code maxRamBytesUsed} bytes
+   *  of memory. */
+  public RamBoundedLRUCache(long maxRamBytesUsed) {
+    if (maxRamBytesUsed <= 0) {
+      throw new IllegalArgumentException("maxRamBytesUsed must be > 0 (got " + maxRamBytesUsed + ")");
+    }
+    this.maxRamBytesUsed = maxRamBytesUsed;
+  }
+
+  /** Returns the max number of bytes of memory that this cache may use. */
+  public long getMaxRamBytesUsed() {
+    return maxRamBytesUsed;
+  }
+
+  /** Returns the value at the given position of the given owner, or {@code null}. */
+  public synchronized V get(Object owner, long position) {
+    final Value<V> value = values.get(new Key(owner, position));
+    if (value == null) {
+      missCount++;
+      return null;
+    }
+    hitCount++;
+    return value.value;
+  }
+
+  /**
+   * Caches a value, evicting the least recently used values if needed.  Values
+   * that would take more than half of the cache are not cached.
+   * @param valueRamBytesUsed the memory usage of the value
+   */
+  public synchronized void put(Object owner, long position, V value, long valueRamBytesUsed) {
+    final long entryRamBytesUsed = ENTRY_RAM_BYTES_USED + KEY_RAM_BYTES_USED + VALUE_RAM_BYTES_USED + valueRamBytesUsed;
+    if (entryRamBytesUsed > maxRamBytesUsed / 2) {
+      // don't let a single value flush the whole cache
+      return;
+    }
+    final Key key = new Key(owner, position);
+    final Value<V> previous = values.put(key, new Value<>(value, entryRamBytesUsed));
+    if (previous != null) {
+      // another thread cached the same value concurrently
+      ramBytesUsed -= previous.ramBytesUsed;
+    } else {
+      keysByOwner.computeIfAbsent(owner, k -> new HashSet<>()).add(key);
+      cacheCount++;
+    }
+    ramBytesUsed += entryRamBytesUsed;
+    for (Iterator<Map.Entry<Key, Value<V>>> it = values.entrySet().iterator(); ramBytesUsed > maxRamBytesUsed && it.hasNext(); ) {
+      final Map.Entry<Key, Value<V>> evicted = it.next();
+      it.remove();
+      final Set<Key> keys = keysByOwner.get(evicted.getKey().owner);
+      keys.remove(evicted.getKey());
+      if (keys.isEmpty()) {
+        keysByOwner.remove(evicted.getKey().owner);
+      }
+      ramBytesUsed -= evicted.getValue().ramBytesUsed;
+    }
+  }
+
+  /** Removes all values of the given owner, in time that is linear with their number. */
+  public synchronized void clear(Object owner) {
+    final Set<Key> keys = keysByOwner.remove(owner);
+    if (keys != null) {
+      for (Key key : keys) {
+        ramBytesUsed -= values.remove(key).ramBytesUsed;
+      }
+    }
+  }
+
+  /** Removes all cached values. */
+  public synchronized void clear() {
+    values.clear();
+    keysByOwner.clear();
+    ramBytesUsed = 0;
+  }
+
+  @Override
+  public synchronized long ramBytesUsed() {
+    return ramBytesUsed;
+  }
+
+  /**
+   * Return the number of times that a value has been looked up in this cache.
+   * This is the sum of {@link #getHitCount()} and {@link #getMissCount()}.
+   */
+  public synchronized long getTotalCount() {
+    return hitCount + missCount;
+  }
+
+  /**
+   * Return the number of lookups that found a cached value.
+   * @see #getTotalCount()
+   */
+  public synchronized long getHitCount() {
+    return hitCount;
+  }
+
+  /**
+   * Return the number of lookups that did not find a cached value.
+   * @see #getTotalCount()
+   */
+  public synchronized long getMissCount() {
+    return missCount;
+  }
+
+  /**
+   * Return the number of values which are currently stored in the cache.
+   * @see #getCacheCount()
+   * @see #getEvictionCount()
+   */
+  public synchronized long getCacheSize() {
+    return values.size();
+  }
+
+  /**
+   * Return the total number of values that have ever been put in the cache.
+   * @see #getCacheSize()
+   * @see #getEvictionCount()
+   */
+  public synchronized long getCacheCount() {
+    return cacheCount;
+  }
+
+  /**
+   * Return the number of values that have been removed from the cache, either
+   * to stay under the maximum ram usage, or because their owner was cleared.
+   * @see #getCacheCount()
+   * @see #getCacheSize()
+   */
+  public synchronized long getEvictionCount() {
+    return cacheCount - values.size();
+  }
+}
@@ -396,6 +396,32 @@ public final class BKDReader extends PointValues implements Accountable {
     }
   }
 
+  /** Tells the input that the leaf blocks under the current node are about to be read.  Leaf blocks
+   *  are written in order, so the blocks of a sub-tree are contiguous: this covers all of them but the
+   *  right-most one, whose length is unknown, and which is read last anyway. */
+  private void prefetchLeaves(IntersectState state) throws IOException {
+    if (state.index.isLeafNode()) {
+      return;
+    }
+    final IndexTree left = state.index.clone();
+    while (left.isLeafNode() == false) {
+      left.pushLeft();
+    }
+    final IndexTree right = state.index.clone();
+    while (right.isLeafNode() == false) {
+      right.pushRight();
+    }
+    if (right.nodeExists() == false) {
+      // unbalanced tree: we don't know where the sub-tree ends
+      return;
+    }
+    final long startFP = left.getLeafBlockFP();
+    final long endFP = right.getLeafBlockFP();
+    if (endFP > startFP && endFP <= state.in.length()) {
+      state.in.prefetch(startFP, endFP - startFP);
+    }
+  }
+
   /** Create a new {@link IntersectState} */
   public IntersectState getIntersectState(IntersectVisitor visitor) {
     IndexTree index = new IndexTree();
@@ -562,6 +588,7 @@ public final class BKDReader extends PointValues implements Accountable {
       // This cell is fully outside of the query shape: stop recursing
     } else if (r == Relation.CELL_INSIDE_QUERY) {
       // This cell is fully inside of the query shape: recursively add all points in this cell without filtering
+      prefetchLeaves(state);
       addAll(state, false);
       // The cell crosses the shape boundary, or the cell fully contains the query, so we fall through and do full filtering:
     } else if (state.index.isLeafNode()) {